@@ -0,0 +1,85 @@
+package com.agenarisk.benchmark;
+
+import com.agenarisk.api.model.Model;
+import com.agenarisk.api.model.Network;
+import com.agenarisk.api.model.Node;
+import com.agenarisk.test.TestHelper;
+import org.json.JSONObject;
+
+/**
+ * Representative models shared by benchmarks.
+ * <br>
+ * Models come from test resources, or are built in code where no resource fits, so that benchmarks run without external files.
+ *
+ * @author Eugene Dementiev
+ */
+public class BenchmarkModels {
+
+	/**
+	 * Static model with discrete nodes only
+	 */
+	public static final String STATIC_CMP = "/load/ar7-asia.cmp";
+
+	/**
+	 * Static model in XML format
+	 */
+	public static final String STATIC_XML = "/load/Simple.xml";
+
+	/**
+	 * Model with multiple networks connected by cross network links
+	 */
+	public static final String MULTI_NETWORK_JSON = "/calc/ok/crossNetworkLinkTest.json";
+
+	/**
+	 * Returns a path to a temporary copy of the resource, for benchmarks of loading from disk.
+	 *
+	 * @param resource resource path
+	 *
+	 * @return file path
+	 */
+	public static String path(String resource) {
+		return TestHelper.tempFileCopyOfResource(resource).toString();
+	}
+
+	/**
+	 * Creates a model from a JSON resource.
+	 *
+	 * @param resource resource path
+	 *
+	 * @return new model
+	 *
+	 * @throws Exception if the model fails to be created
+	 */
+	public static Model fromJson(String resource) throws Exception {
+		return Model.createModel(new JSONObject(TestHelper.readResourceContent(resource)));
+	}
+
+	/**
+	 * Creates a model with a simulated node summing the provided number of simulated parents.
+	 * <br>
+	 * With more than 2 parents the model requires binary factorisation.
+	 *
+	 * @param parents number of parents
+	 *
+	 * @return new model
+	 *
+	 * @throws Exception if the model fails to be created
+	 */
+	public static Model simulation(int parents) throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node sum = net.createNode("sum", Node.Type.ContinuousInterval);
+		sum.convertToSimulated();
+		StringBuilder expression = new StringBuilder();
+		for (int i = 0; i < parents; i++) {
+			Node parent = net.createNode("p" + i, Node.Type.ContinuousInterval);
+			parent.convertToSimulated();
+			parent.setTableFunction("Normal(" + i + ",1)");
+			Node.linkNodes(parent, sum);
+			expression.append(i == 0 ? "" : "+").append("p").append(i);
+		}
+		sum.setTableFunction("Arithmetic(" + expression + ")");
+		model.createDataSet("ds");
+		return model;
+	}
+}
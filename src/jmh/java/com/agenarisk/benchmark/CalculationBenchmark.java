@@ -0,0 +1,66 @@
+package com.agenarisk.benchmark;
+
+import com.agenarisk.api.model.CalculationResult;
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Model;
+import com.agenarisk.test.TestHelper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model.calculate on static, simulation and multi-network models, and DataSet.getCalculationResults on the calculated model.
+ *
+ * @author Eugene Dementiev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculationBenchmark {
+
+	@Param({"static", "simulation", "multiNetwork"})
+	public String kind;
+
+	private Model model;
+	private DataSet dataSet;
+
+	@Setup
+	public void setup() throws Exception {
+		switch(kind){
+			case "static":
+				model = TestHelper.loadModelFromResource(BenchmarkModels.STATIC_CMP);
+				break;
+			case "simulation":
+				model = BenchmarkModels.simulation(2);
+				break;
+			default:
+				model = BenchmarkModels.fromJson(BenchmarkModels.MULTI_NETWORK_JSON);
+		}
+		model.calculate();
+		dataSet = model.getDataSetList().get(0);
+	}
+
+	@Benchmark
+	public Model calculate() throws Exception {
+		model.calculate();
+		return model;
+	}
+
+	@Benchmark
+	public List<CalculationResult> getCalculationResults() {
+		return dataSet.getCalculationResults();
+	}
+}
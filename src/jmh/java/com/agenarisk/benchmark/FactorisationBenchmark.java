@@ -0,0 +1,60 @@
+package com.agenarisk.benchmark;
+
+import com.agenarisk.api.model.FactorisationCache;
+import com.agenarisk.api.model.Model;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model.factorize on a simulation model that requires factorisation, with and without FactorisationCache.
+ * <br>
+ * Each invocation factorises a freshly built model; building it is excluded from measurement.
+ *
+ * @author Eugene Dementiev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactorisationBenchmark {
+
+	@Param({"4", "8"})
+	public int parents;
+
+	@Param({"false", "true"})
+	public boolean cached;
+
+	private Model model;
+
+	@Setup(Level.Invocation)
+	public void setup() throws Exception {
+		if (!cached){
+			FactorisationCache.clear();
+		}
+		model = BenchmarkModels.simulation(parents);
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() {
+		model.getLogicModel().destroy();
+	}
+
+	@Benchmark
+	public boolean factorize() throws Exception {
+		return model.factorize();
+	}
+}
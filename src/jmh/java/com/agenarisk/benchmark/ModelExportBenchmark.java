@@ -0,0 +1,52 @@
+package com.agenarisk.benchmark;
+
+import com.agenarisk.api.model.Model;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model.export and Model.toJson on a calculated multi-network model.
+ *
+ * @author Eugene Dementiev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelExportBenchmark {
+
+	private Model model;
+
+	@Setup
+	public void setup() throws Exception {
+		model = BenchmarkModels.fromJson(BenchmarkModels.MULTI_NETWORK_JSON);
+		model.calculate();
+	}
+
+	@Benchmark
+	public JSONObject export() throws Exception {
+		return model.export();
+	}
+
+	@Benchmark
+	public JSONObject exportWithResults() throws Exception {
+		return model.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS);
+	}
+
+	@Benchmark
+	public JSONObject toJson() throws Exception {
+		return model.toJson();
+	}
+}
@@ -0,0 +1,46 @@
+package com.agenarisk.benchmark;
+
+import com.agenarisk.api.model.Model;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model.loadModel from JSON, XML and CMP files.
+ *
+ * @author Eugene Dementiev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelLoadBenchmark {
+
+	@Param({BenchmarkModels.MULTI_NETWORK_JSON, BenchmarkModels.STATIC_XML, BenchmarkModels.STATIC_CMP})
+	public String resource;
+
+	private String path;
+
+	@Setup
+	public void setup() {
+		path = BenchmarkModels.path(resource);
+	}
+
+	@Benchmark
+	public Model loadModel() throws Exception {
+		Model model = Model.loadModel(path);
+		model.getLogicModel().destroy();
+		return model;
+	}
+}
@@ -0,0 +1,26 @@
+package com.agenarisk.api.exception;
+
+/**
+ * Thrown when a calculation was cancelled or ran past its deadline.
+ * 
+ * @author Eugene Dementiev
+ */
+public class CalculationCancelledException extends CalculationException {
+
+	private final boolean timedOut;
+
+	public CalculationCancelledException(String message, boolean timedOut) {
+		super(message);
+		this.timedOut = timedOut;
+	}
+
+	/**
+	 * Returns whether the calculation was stopped because it ran past its deadline, rather than cancelled.
+	 * 
+	 * @return true if timed out
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	
+}
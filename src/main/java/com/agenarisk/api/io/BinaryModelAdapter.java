@@ -0,0 +1,505 @@
+package com.agenarisk.api.io;
+
+import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.model.CalculationResult;
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Network;
+import com.agenarisk.api.model.Node;
+import com.agenarisk.api.model.NodeConfiguration;
+import com.agenarisk.api.model.ResultValue;
+import com.agenarisk.api.util.JSONUtils;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * BinaryModelAdapter reads and writes models in a compact binary container.
+ * <br>
+ * The container holds the model structure and expressions as compact UTF-8 JSON, while compiled NPTs and DataSet result values are stored as raw little-endian blocks of floats and doubles that are read back without decimal parsing.
+ * <br>
+ * Layout:
+ * <br>
+ * ∙ magic bytes {@code AGNB}
+ * <br>
+ * ∙ format version, 4 byte little-endian int
+ * <br>
+ * ∙ header length, 4 byte little-endian int, followed by the header JSON
+ * <br>
+ * ∙ padding to an 8 byte boundary, followed by the data blocks
+ * <br>
+ * In the header, a table's probabilities are replaced by a probabilitiesBlock object with offset, rows and columns of a float block; and a result's resultValues are replaced by resultLabels and a resultValuesBlock object with offset and count of a double block. Offsets are in bytes from the start of the data blocks.
+ *
+ * @author Eugene Dementiev
+ */
+public class BinaryModelAdapter {
+
+	/**
+	 * File extension of the binary model format
+	 */
+	public static final String EXTENSION = ".cmpb";
+
+	/**
+	 * Current format version
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = "AGNB".getBytes(StandardCharsets.US_ASCII);
+
+	private static final String PROBABILITIES_BLOCK = "probabilitiesBlock";
+	private static final String RESULT_LABELS = "resultLabels";
+	private static final String RESULT_VALUES_BLOCK = "resultValuesBlock";
+	private static final String OFFSET = "offset";
+	private static final String ROWS = "rows";
+	private static final String COLUMNS = "columns";
+	private static final String COUNT = "count";
+
+	/**
+	 * Returns whether the path has the binary model format extension.
+	 *
+	 * @param path file path
+	 *
+	 * @return true if the path ends with {@link #EXTENSION}, ignoring case
+	 */
+	public static boolean isBinary(String path) {
+		return path.toLowerCase().endsWith(EXTENSION);
+	}
+
+	/**
+	 * Writes model JSON to a file in the binary format.
+	 * <br>
+	 * The provided JSON is not modified.
+	 *
+	 * @param json model JSON as produced by {@link com.agenarisk.api.model.Model#toJson()}
+	 * @param path file path
+	 *
+	 * @throws AdapterException if the file can not be written
+	 */
+	public static void write(JSONObject json, Path path) throws AdapterException {
+		try (OutputStream stream = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			write(json, stream);
+		}
+		catch (IOException ex){
+			throw new AdapterException("Failed to write binary model", ex);
+		}
+	}
+
+	/**
+	 * Writes model JSON to a stream in the binary format.
+	 * <br>
+	 * The provided JSON is not modified and the stream is not closed.
+	 *
+	 * @param json model JSON as produced by {@link com.agenarisk.api.model.Model#toJson()}
+	 * @param stream output stream
+	 *
+	 * @throws AdapterException if the stream can not be written
+	 */
+	public static void write(JSONObject json, OutputStream stream) throws AdapterException {
+		JSONObject header = JSONUtils.copy(json);
+		Blocks blocks = new Blocks();
+
+		try {
+			JSONObject jsonModel = header.optJSONObject(com.agenarisk.api.model.Model.Field.model.toString());
+			if (jsonModel == null){
+				jsonModel = header;
+			}
+			extractTables(jsonModel, blocks);
+			extractResults(jsonModel, blocks);
+		}
+		catch (JSONException ex){
+			throw new AdapterException("Model JSON is invalid", ex);
+		}
+
+		byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+			out.write(MAGIC);
+			out.writeInt(Integer.reverseBytes(VERSION));
+			out.writeInt(Integer.reverseBytes(headerBytes.length));
+			out.write(headerBytes);
+			out.write(new byte[padding(MAGIC.length + 8 + headerBytes.length)]);
+			blocks.writeTo(out);
+			out.flush();
+		}
+		catch (IOException ex){
+			throw new AdapterException("Failed to write binary model", ex);
+		}
+	}
+
+	/**
+	 * Reads model JSON from a file in the binary format.
+	 * <br>
+	 * The file is read into memory and closed before returning, so it can be overwritten straight away, e.g. when saving the model back to the same path.
+	 *
+	 * @param path file path
+	 *
+	 * @return model JSON with tables and results restored
+	 *
+	 * @throws AdapterException if the file can not be read, is not in the binary format or its version is not supported
+	 */
+	public static JSONObject read(Path path) throws AdapterException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			if (channel.size() > Integer.MAX_VALUE){
+				throw new AdapterException("Binary model is too large: " + channel.size() + " bytes");
+			}
+			// A mapped buffer would keep the file locked on some platforms until it is garbage collected
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0){
+				// Read until full or end of file
+			}
+			buffer.flip();
+		}
+		catch (IOException ex){
+			throw new AdapterException("Failed to read binary model", ex);
+		}
+		return read(buffer);
+	}
+
+	/**
+	 * Reads model JSON from a stream in the binary format, e.g. when the model is compressed.
+	 * <br>
+	 * The stream is read to the end and is not closed.
+	 *
+	 * @param stream input stream
+	 *
+	 * @return model JSON with tables and results restored
+	 *
+	 * @throws AdapterException if the stream can not be read, is not in the binary format or its version is not supported
+	 */
+	public static JSONObject read(InputStream stream) throws AdapterException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[65536];
+		try {
+			int read;
+			while((read = stream.read(buffer)) >= 0){
+				bytes.write(buffer, 0, read);
+			}
+		}
+		catch (IOException ex){
+			throw new AdapterException("Failed to read binary model", ex);
+		}
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Reads model JSON from a buffer holding a model in the binary format.
+	 *
+	 * @param buffer buffer positioned at the start of the model
+	 *
+	 * @return model JSON with tables and results restored
+	 *
+	 * @throws AdapterException if the content is not in the binary format or its version is not supported
+	 */
+	public static JSONObject read(ByteBuffer buffer) throws AdapterException {
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			data.get(magic);
+			if (!Arrays.equals(MAGIC, magic)){
+				throw new AdapterException("Not a binary model");
+			}
+
+			int version = data.getInt();
+			if (version < 1 || version > VERSION){
+				throw new AdapterException("Unsupported binary model version " + version + ", supported up to " + VERSION);
+			}
+
+			int headerLength = data.getInt();
+			byte[] headerBytes = new byte[headerLength];
+			data.get(headerBytes);
+			JSONObject json = new JSONObject(new String(headerBytes, StandardCharsets.UTF_8));
+
+			data.position(data.position() + padding(data.position()));
+			ByteBuffer blocks = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+			JSONObject jsonModel = json.optJSONObject(com.agenarisk.api.model.Model.Field.model.toString());
+			if (jsonModel == null){
+				jsonModel = json;
+			}
+			restoreTables(jsonModel, blocks);
+			restoreResults(jsonModel, blocks);
+
+			return json;
+		}
+		catch (RuntimeException ex){
+			// BufferUnderflowException, IndexOutOfBoundsException, JSONException etc on truncated or corrupt content
+			throw new AdapterException("Binary model is corrupt", ex);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes needed to pad the position to an 8 byte boundary.
+	 */
+	private static int padding(int position) {
+		return (8 - position % 8) % 8;
+	}
+
+	/**
+	 * Replaces rectangular numeric probabilities of node tables with float blocks.
+	 */
+	private static void extractTables(JSONObject jsonModel, Blocks blocks) throws JSONException {
+		for(JSONObject jsonTable: tables(jsonModel)){
+			JSONArray jsonRows = jsonTable.optJSONArray(NodeConfiguration.Table.probabilities.toString());
+			if (jsonRows == null || jsonRows.length() == 0){
+				continue;
+			}
+
+			int rows = jsonRows.length();
+			int columns = -1;
+			float[] cells = null;
+			for(int r = 0; r < rows; r++){
+				JSONArray jsonRow = jsonRows.optJSONArray(r);
+				if (jsonRow == null || (columns >= 0 && jsonRow.length() != columns)){
+					cells = null;
+					break;
+				}
+				if (cells == null){
+					columns = jsonRow.length();
+					cells = new float[rows * columns];
+				}
+				for(int c = 0; c < columns; c++){
+					Object cell = jsonRow.get(c);
+					if (!(cell instanceof Number)){
+						// Keep as JSON anything that does not fit a block
+						columns = -2;
+						break;
+					}
+					cells[r * columns + c] = ((Number) cell).floatValue();
+				}
+				if (columns < 0){
+					cells = null;
+					break;
+				}
+			}
+
+			if (cells == null){
+				continue;
+			}
+
+			JSONObject jsonBlock = new JSONObject();
+			jsonBlock.put(OFFSET, blocks.add(cells));
+			jsonBlock.put(ROWS, rows);
+			jsonBlock.put(COLUMNS, columns);
+			jsonTable.remove(NodeConfiguration.Table.probabilities.toString());
+			jsonTable.put(PROBABILITIES_BLOCK, jsonBlock);
+		}
+	}
+
+	/**
+	 * Replaces result values of DataSets with double blocks.
+	 */
+	private static void extractResults(JSONObject jsonModel, Blocks blocks) throws JSONException {
+		for(JSONObject jsonResult: results(jsonModel)){
+			JSONArray jsonValues = jsonResult.optJSONArray(ResultValue.Field.resultValues.toString());
+			if (jsonValues == null){
+				continue;
+			}
+
+			JSONArray jsonLabels = new JSONArray();
+			double[] values = new double[jsonValues.length()];
+			boolean fits = true;
+			for(int i = 0; i < jsonValues.length() && fits; i++){
+				JSONObject jsonEntry = jsonValues.optJSONObject(i);
+				fits = jsonEntry != null && jsonEntry.length() == 2 && jsonEntry.has(ResultValue.Field.label.toString()) && jsonEntry.has(ResultValue.Field.value.toString());
+				if (fits){
+					jsonLabels.put(jsonEntry.get(ResultValue.Field.label.toString()));
+					Object value = jsonEntry.get(ResultValue.Field.value.toString());
+					try {
+						// Non-finite values are written as strings in JSON
+						values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+					}
+					catch (NumberFormatException ex){
+						fits = false;
+					}
+				}
+			}
+
+			if (!fits){
+				continue;
+			}
+
+			JSONObject jsonBlock = new JSONObject();
+			jsonBlock.put(OFFSET, blocks.add(values));
+			jsonBlock.put(COUNT, values.length);
+			jsonResult.remove(ResultValue.Field.resultValues.toString());
+			jsonResult.put(RESULT_LABELS, jsonLabels);
+			jsonResult.put(RESULT_VALUES_BLOCK, jsonBlock);
+		}
+	}
+
+	/**
+	 * Restores probabilities of node tables from float blocks.
+	 */
+	private static void restoreTables(JSONObject jsonModel, ByteBuffer blocks) throws JSONException {
+		for(JSONObject jsonTable: tables(jsonModel)){
+			JSONObject jsonBlock = jsonTable.optJSONObject(PROBABILITIES_BLOCK);
+			if (jsonBlock == null){
+				continue;
+			}
+
+			int rows = jsonBlock.getInt(ROWS);
+			int columns = jsonBlock.getInt(COLUMNS);
+			FloatBuffer cells = slice(blocks, jsonBlock.getInt(OFFSET), rows * columns * Float.BYTES).asFloatBuffer();
+
+			JSONArray jsonRows = new JSONArray();
+			for(int r = 0; r < rows; r++){
+				JSONArray jsonRow = new JSONArray();
+				for(int c = 0; c < columns; c++){
+					jsonRow.put((double) cells.get());
+				}
+				jsonRows.put(jsonRow);
+			}
+			jsonTable.remove(PROBABILITIES_BLOCK);
+			jsonTable.put(NodeConfiguration.Table.probabilities.toString(), jsonRows);
+		}
+	}
+
+	/**
+	 * Restores result values of DataSets from double blocks.
+	 */
+	private static void restoreResults(JSONObject jsonModel, ByteBuffer blocks) throws JSONException {
+		for(JSONObject jsonResult: results(jsonModel)){
+			JSONObject jsonBlock = jsonResult.optJSONObject(RESULT_VALUES_BLOCK);
+			if (jsonBlock == null){
+				continue;
+			}
+
+			int count = jsonBlock.getInt(COUNT);
+			JSONArray jsonLabels = jsonResult.getJSONArray(RESULT_LABELS);
+			DoubleBuffer values = slice(blocks, jsonBlock.getInt(OFFSET), count * Double.BYTES).asDoubleBuffer();
+
+			JSONArray jsonValues = new JSONArray();
+			for(int i = 0; i < count; i++){
+				double value = values.get();
+				JSONObject jsonEntry = new JSONObject();
+				jsonEntry.put(ResultValue.Field.label.toString(), jsonLabels.get(i));
+				// Same representation as ResultValue.toJson()
+				jsonEntry.put(ResultValue.Field.value.toString(), Double.isFinite(value) ? (Object) value : Double.toString(value));
+				jsonValues.put(jsonEntry);
+			}
+			jsonResult.remove(RESULT_LABELS);
+			jsonResult.remove(RESULT_VALUES_BLOCK);
+			jsonResult.put(ResultValue.Field.resultValues.toString(), jsonValues);
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer blocks, int offset, int length) {
+		ByteBuffer block = blocks.duplicate();
+		block.position(offset);
+		block.limit(offset + length);
+		return block.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Collects table objects of all nodes in the model JSON.
+	 */
+	private static List<JSONObject> tables(JSONObject jsonModel) throws JSONException {
+		List<JSONObject> tables = new ArrayList<>();
+		JSONArray jsonNetworks = jsonModel.optJSONArray(Network.Field.networks.toString());
+		if (jsonNetworks == null){
+			return tables;
+		}
+		for(int i = 0; i < jsonNetworks.length(); i++){
+			JSONArray jsonNodes = jsonNetworks.getJSONObject(i).optJSONArray(Node.Field.nodes.toString());
+			if (jsonNodes == null){
+				continue;
+			}
+			for(int j = 0; j < jsonNodes.length(); j++){
+				JSONObject jsonConfiguration = jsonNodes.getJSONObject(j).optJSONObject(NodeConfiguration.Field.configuration.toString());
+				JSONObject jsonTable = jsonConfiguration == null ? null : jsonConfiguration.optJSONObject(NodeConfiguration.Table.table.toString());
+				if (jsonTable != null){
+					tables.add(jsonTable);
+				}
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * Collects result objects of all DataSets in the model JSON.
+	 */
+	private static List<JSONObject> results(JSONObject jsonModel) throws JSONException {
+		List<JSONObject> results = new ArrayList<>();
+		JSONArray jsonDataSets = jsonModel.optJSONArray(DataSet.Field.dataSets.toString());
+		if (jsonDataSets == null){
+			return results;
+		}
+		for(int i = 0; i < jsonDataSets.length(); i++){
+			JSONArray jsonResults = jsonDataSets.getJSONObject(i).optJSONArray(CalculationResult.Field.results.toString());
+			if (jsonResults == null){
+				continue;
+			}
+			for(int j = 0; j < jsonResults.length(); j++){
+				results.add(jsonResults.getJSONObject(j));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Data blocks in the order they are added, each aligned to 8 bytes
+	 */
+	private static class Blocks {
+
+		private final List<Object> arrays = new ArrayList<>();
+		private int size = 0;
+
+		/**
+		 * @return offset of the block
+		 */
+		private int add(float[] cells) {
+			return add(cells, cells.length * Float.BYTES);
+		}
+
+		/**
+		 * @return offset of the block
+		 */
+		private int add(double[] values) {
+			return add(values, values.length * Double.BYTES);
+		}
+
+		private int add(Object array, int length) {
+			int offset = size;
+			arrays.add(array);
+			size += length + padding(length);
+			return offset;
+		}
+
+		private void writeTo(DataOutputStream out) throws IOException {
+			for(Object array: arrays){
+				ByteBuffer buffer;
+				if (array instanceof float[]){
+					float[] cells = (float[]) array;
+					buffer = ByteBuffer.allocate(cells.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+					buffer.asFloatBuffer().put(cells);
+				}
+				else {
+					double[] values = (double[]) array;
+					buffer = ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+					buffer.asDoubleBuffer().put(values);
+				}
+				out.write(buffer.array());
+				out.write(new byte[padding(buffer.capacity())]);
+			}
+		}
+	}
+}
@@ -1,9 +1,20 @@
 package com.agenarisk.api.io;
 
 import com.agenarisk.api.exception.AdapterException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -13,6 +24,111 @@ import org.json.JSONObject;
  * @author Eugene Dementiev
  */
 public class FileAdapter {
+	
+	/**
+	 * Extension of gzip compressed files, e.g. model.cmpx.gz
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+	
+	private static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * Returns whether the path has the gzip extension.
+	 * 
+	 * @param path file path
+	 * 
+	 * @return true if the path ends with {@link #GZIP_EXTENSION}, ignoring case
+	 */
+	public static boolean isGzip(String path) {
+		return path.toLowerCase().endsWith(GZIP_EXTENSION);
+	}
+	
+	/**
+	 * Returns the path without the gzip extension, which can be used to determine the format of compressed content.
+	 * 
+	 * @param path file path
+	 * 
+	 * @return path without the gzip extension, or the same path if it does not have one
+	 */
+	public static String stripGzipExtension(String path) {
+		return isGzip(path) ? path.substring(0, path.length() - GZIP_EXTENSION.length()) : path;
+	}
+	
+	/**
+	 * Opens a buffered stream to write the file at the provided path, replacing its contents. If the path has the gzip extension, content is compressed.
+	 * 
+	 * @param path file path
+	 * 
+	 * @return output stream to close once written
+	 * 
+	 * @throws IOException if the file can not be opened
+	 */
+	public static OutputStream newOutputStream(Path path) throws IOException {
+		OutputStream stream = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		if (isGzip(path.toString())){
+			return new GZIPOutputStream(stream, BUFFER_SIZE);
+		}
+		return new BufferedOutputStream(stream, BUFFER_SIZE);
+	}
+	
+	/**
+	 * Opens a buffered stream to read the file at the provided path. Gzip compressed content is detected and decompressed regardless of file extension.
+	 * 
+	 * @param path file path
+	 * 
+	 * @return input stream to close once read
+	 * 
+	 * @throws IOException if the file can not be opened
+	 */
+	public static InputStream newInputStream(Path path) throws IOException {
+		InputStream stream = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+		stream.mark(2);
+		int b1 = stream.read();
+		int b2 = stream.read();
+		stream.reset();
+		if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8)){
+			return new BufferedInputStream(new GZIPInputStream(stream, BUFFER_SIZE), BUFFER_SIZE);
+		}
+		return stream;
+	}
+	
+	/**
+	 * Opens a buffered reader of the file at the provided path, decompressing gzip content.
+	 * 
+	 * @param path file path
+	 * @param charset charset of the content
+	 * 
+	 * @return reader to close once read
+	 * 
+	 * @throws IOException if the file can not be opened
+	 * 
+	 * @see #newInputStream(Path)
+	 */
+	public static BufferedReader newReader(Path path, Charset charset) throws IOException {
+		return new BufferedReader(new InputStreamReader(newInputStream(path), charset), BUFFER_SIZE);
+	}
+	
+	/**
+	 * Returns the first character that is not whitespace without consuming it.
+	 * 
+	 * @param reader reader supporting mark
+	 * 
+	 * @return the first non-whitespace character or -1 if there is none
+	 * 
+	 * @throws IOException if reading fails
+	 */
+	public static int peekContent(BufferedReader reader) throws IOException {
+		int c;
+		while(true){
+			reader.mark(1);
+			c = reader.read();
+			if (c < 0 || !(Character.isWhitespace(c) || c == '\uFEFF')){
+				break;
+			}
+		}
+		reader.reset();
+		return c;
+	}
 
 	/**
 	 * Reads the content of the file at the provided path.It checks whether the content begins as JSON or XML and will try to read it as such.
@@ -11,6 +11,7 @@ import com.agenarisk.api.model.Settings;
 import com.agenarisk.api.model.CalculationResult;
 import com.agenarisk.api.model.CrossNetworkLink;
 import com.agenarisk.api.model.Link;
+import com.agenarisk.api.model.Model.ExportFlag;
 import com.agenarisk.api.model.Network;
 import com.agenarisk.api.model.Node;
 import com.agenarisk.api.model.State;
@@ -21,6 +22,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -68,6 +70,23 @@ public class JSONAdapter {
 	public static final boolean CACHE_NPTS = true;
 	
 	public static JSONObject toJSONObject(Model model) throws JSONException, AdapterException {
+		return toJSONObject(model, null);
+	}
+	
+	/**
+	 * Encodes the model as JSON, leaving out sections excluded by export flags instead of building and then removing them.
+	 * <br>
+	 * With flags provided, the result is the same as the full JSON pruned by {@link com.agenarisk.api.model.Model#export(ExportFlag...)}: modification logs are never included; meta, names and descriptions only with KEEP_META; graphics only with KEEP_GRAPHICS; risk table only with KEEP_RISK_TABLE; DataSets only with KEEP_OBSERVATIONS or KEEP_RESULTS; and compiled NPTs only for manual tables of non-input nodes unless KEEP_TABLES is set.
+	 * 
+	 * @param model the model to encode
+	 * @param flags export flags, or null for the full JSON
+	 * 
+	 * @return model JSON
+	 * 
+	 * @throws JSONException if encoding fails
+	 * @throws AdapterException if the risk table is invalid
+	 */
+	public static JSONObject toJSONObject(Model model, Set<ExportFlag> flags) throws JSONException, AdapterException {
 		JSONObject json = new JSONObject();
 		
 		// Model
@@ -75,7 +94,7 @@ public class JSONAdapter {
 		json.put(com.agenarisk.api.model.Model.Field.model.toString(), jsonModel);
 		
 		// Networks
-		jsonModel.put(Network.Field.networks.toString(), modelNetworksToJSON(model));
+		jsonModel.put(Network.Field.networks.toString(), modelNetworksToJSON(model, flags));
 		
 		// Cross network links
 		jsonModel.put(Link.Field.links.toString(), modelLinksToJSON(model));
@@ -84,15 +103,28 @@ public class JSONAdapter {
 		jsonModel.put(Settings.Field.settings.toString(), Settings.toJson(model));
 
 		// Scenarios
-		jsonModel.put(com.agenarisk.api.model.DataSet.Field.dataSets.toString(), modelScenariosToJSON(model));
+		JSONArray jsonDataSets = null;
+		if (keeps(flags, ExportFlag.KEEP_OBSERVATIONS) || keeps(flags, ExportFlag.KEEP_RESULTS)){
+			jsonDataSets = modelScenariosToJSON(model, keeps(flags, ExportFlag.KEEP_OBSERVATIONS), keeps(flags, ExportFlag.KEEP_RESULTS));
+			jsonModel.put(com.agenarisk.api.model.DataSet.Field.dataSets.toString(), jsonDataSets);
+		}
+		
+		if (flags != null && flags.contains(ExportFlag.CLOUD_DATASET) && !model.getScenarioList().getScenarios().isEmpty()){
+			// Copy the first data set without results to root json, this is the same object as the first element of data sets if those are kept
+			JSONObject jsonDataSet = jsonDataSets != null ? jsonDataSets.getJSONObject(0) : scenarioToJSON(model, model.getScenarioAtIndex(0), true, false);
+			jsonDataSet.remove(CalculationResult.Field.results.toString());
+			json.put(com.agenarisk.api.model.DataSet.Field.dataSet.toString(), jsonDataSet);
+		}
 		
 		// Meta
-		if (!model.getNotes().getNotes().isEmpty()){
+		if (keeps(flags, ExportFlag.KEEP_META) && !model.getNotes().getNotes().isEmpty()){
 			jsonModel.put(Meta.Field.meta.toString(), modelMetaToJSON(model));
 		}
 		
 		// Risk Table
-		jsonModel.put(RiskTable.Field.riskTable.toString(), modelRiskTableToJSON(model));
+		if (keeps(flags, ExportFlag.KEEP_RISK_TABLE)){
+			jsonModel.put(RiskTable.Field.riskTable.toString(), modelRiskTableToJSON(model));
+		}
 		
 		// Texts
 		
@@ -109,12 +141,28 @@ public class JSONAdapter {
 		return json;
 	}
 	
+	/**
+	 * Returns whether the section selected by the flag should be encoded.
+	 * 
+	 * @param flags export flags, or null for the full JSON
+	 * @param flag flag to check
+	 * 
+	 * @return true if encoding the full JSON or the flag is set
+	 */
+	private static boolean keeps(Set<ExportFlag> flags, ExportFlag flag){
+		return flags == null || flags.contains(flag);
+	}
+	
 	protected static JSONArray modelScenariosToJSON(Model model) throws JSONException {
+		return modelScenariosToJSON(model, true, true);
+	}
+	
+	protected static JSONArray modelScenariosToJSON(Model model, boolean withObservations, boolean withResults) throws JSONException {
 		JSONArray jsonDataSets = new JSONArray();
 		
 		int scenarioCount = model.getScenarioList().getScenarios().size();
 		for (int i = 0; i < scenarioCount; i++) {
-			JSONObject jsonDataSet = scenarioToJSON(model, model.getScenarioAtIndex(i));
+			JSONObject jsonDataSet = scenarioToJSON(model, model.getScenarioAtIndex(i), withObservations, withResults);
 			jsonDataSets.put(jsonDataSet);
 		}
 		
@@ -122,30 +170,38 @@ public class JSONAdapter {
 	}
 	
 	protected static JSONObject scenarioToJSON(Model model, Scenario scenario) throws JSONException{
+		return scenarioToJSON(model, scenario, true, true);
+	}
+	
+	protected static JSONObject scenarioToJSON(Model model, Scenario scenario, boolean withObservations, boolean withResults) throws JSONException{
 		JSONObject jsonDataSet = new JSONObject();
 		
 		// ID
 		jsonDataSet.put(com.agenarisk.api.model.DataSet.Field.id.toString(), scenario.getName().getShortDescription());
 		
 		// Observations
-		JSONArray jsonObservations = new JSONArray();
-		for(Observation observation: (List<Observation>)scenario.getObservations()){
-			try {
-				jsonObservations.put(observationToJSON(model, observation));
-			}
-			catch (ExtendedBNNotFoundException | ExtendedNodeNotFoundException | ExtendedStateNotFoundException ex){
-				// Ignore, should not happen
-				Logger.printThrowableIfDebug(ex);
+		if (withObservations){
+			JSONArray jsonObservations = new JSONArray();
+			for(Observation observation: (List<Observation>)scenario.getObservations()){
+				try {
+					jsonObservations.put(observationToJSON(model, observation));
+				}
+				catch (ExtendedBNNotFoundException | ExtendedNodeNotFoundException | ExtendedStateNotFoundException ex){
+					// Ignore, should not happen
+					Logger.printThrowableIfDebug(ex);
+				}
 			}
+			jsonDataSet.put(com.agenarisk.api.model.Observation.Field.observations.toString(), jsonObservations);
 		}
-		jsonDataSet.put(com.agenarisk.api.model.Observation.Field.observations.toString(), jsonObservations);
 		
 		jsonDataSet.put(com.agenarisk.api.model.DataSet.Field.active.toString(), scenario.isReportable());
 		jsonDataSet.put(com.agenarisk.api.model.DataSet.Field.displayable.toString(), scenario.isDisplayOnRiskGraphs());
 		
 		// Results
-		JSONArray jsonResults = resultsToJSON(model, scenario);
-		jsonDataSet.put(com.agenarisk.api.model.CalculationResult.Field.results.toString(), jsonResults);
+		if (withResults){
+			JSONArray jsonResults = resultsToJSON(model, scenario);
+			jsonDataSet.put(com.agenarisk.api.model.CalculationResult.Field.results.toString(), jsonResults);
+		}
 		
 		JSONObject logPe = new JSONObject(scenario.getLogPeMap());
 		jsonDataSet.put(com.agenarisk.api.model.DataSet.Field.logPe.toString(), logPe);
@@ -408,10 +464,14 @@ public class JSONAdapter {
 	}
 	
 	protected static JSONArray modelNetworksToJSON(Model model) throws JSONException {
+		return modelNetworksToJSON(model, null);
+	}
+	
+	protected static JSONArray modelNetworksToJSON(Model model, Set<ExportFlag> flags) throws JSONException {
 		JSONArray jsonNetworks = new JSONArray();
 		for(ExtendedBN ebn: (List<ExtendedBN>) model.getExtendedBNList().getExtendedBNs()){
 			try {
-				jsonNetworks.put(toJSONObject(ebn));
+				jsonNetworks.put(toJSONObject(ebn, flags));
 			}
 			catch(ExtendedBNException ex){
 				throw new AgenaRiskRuntimeException("Failed to encode a Model to JSON", ex);
@@ -421,13 +481,33 @@ public class JSONAdapter {
 	}
 	
 	public static JSONObject toJSONObject(ExtendedBN ebn) throws JSONException, ExtendedBNException {
+		return toJSONObject(ebn, null);
+	}
+	
+	/**
+	 * Encodes the network as JSON, leaving out sections excluded by export flags.
+	 * 
+	 * @param ebn the network to encode
+	 * @param flags export flags, or null for the full JSON
+	 * 
+	 * @return network JSON
+	 * 
+	 * @throws JSONException if encoding fails
+	 * @throws ExtendedBNException if node tables can not be retrieved
+	 * 
+	 * @see #toJSONObject(Model, Set)
+	 */
+	public static JSONObject toJSONObject(ExtendedBN ebn, Set<ExportFlag> flags) throws JSONException, ExtendedBNException {
 		JSONObject jsonNetwork = new JSONObject();
 		
 		jsonNetwork.put(Network.Field.id.toString(), ebn.getConnID());
-		jsonNetwork.put(Network.Field.name.toString(), ebn.getName().getShortDescription());
 		
-		if (ebn.getName().getLongDescription().trim().length() > 0){
-			jsonNetwork.put(Network.Field.description.toString(), ebn.getName().getLongDescription());
+		if (keeps(flags, ExportFlag.KEEP_META)){
+			jsonNetwork.put(Network.Field.name.toString(), ebn.getName().getShortDescription());
+
+			if (ebn.getName().getLongDescription().trim().length() > 0){
+				jsonNetwork.put(Network.Field.description.toString(), ebn.getName().getLongDescription());
+			}
 		}
 
 		// Per-network simulation settings. Omitted entirely unless the network overrides something,
@@ -440,7 +520,7 @@ public class JSONAdapter {
 		// Nodes
 		JSONArray jsonNodes = new JSONArray();
 		for(ExtendedNode en: (List<ExtendedNode>) ebn.getExtendedNodes()){
-			jsonNodes.put(toJSONObject(en));
+			jsonNodes.put(toJSONObject(en, flags));
 		}
 		jsonNetwork.put(Node.Field.nodes.toString(), jsonNodes);
 		
@@ -463,8 +543,8 @@ public class JSONAdapter {
 		
 		// Pictures
 		
-		// Modification log
-		if (ebn.getModificationLog() != null && ebn.getModificationLog().getModificationItems() != null){
+		// Modification log, only part of the full JSON
+		if (flags == null && ebn.getModificationLog() != null && ebn.getModificationLog().getModificationItems() != null){
 			JSONArray modificationLog = new JSONArray();
 			for(ModificationLog.ModificationLogItem mli: (List<ModificationLog.ModificationLogItem>) ebn.getModificationLog().getModificationItems()){
 				JSONObject entry = new JSONObject();
@@ -588,35 +668,60 @@ public class JSONAdapter {
 	}
 	
 	public static JSONObject toJSONObject(ExtendedNode en) throws JSONException {
+		return toJSONObject(en, null);
+	}
+	
+	/**
+	 * Encodes the node as JSON, leaving out sections excluded by export flags.
+	 * 
+	 * @param en the node to encode
+	 * @param flags export flags, or null for the full JSON
+	 * 
+	 * @return node JSON
+	 * 
+	 * @throws JSONException if encoding fails
+	 * 
+	 * @see #toJSONObject(Model, Set)
+	 */
+	public static JSONObject toJSONObject(ExtendedNode en, Set<ExportFlag> flags) throws JSONException {
 		JSONObject json = new JSONObject();
 		
 		// Fields
 		json.put(Node.Field.id.toString(), en.getConnNodeId());
-		json.put(Node.Field.name.toString(), en.getName().getShortDescription());
 		
-		if (en.getName().getLongDescription().trim().length() > 0){
-			json.put(Node.Field.description.toString(), en.getName().getLongDescription());
+		if (keeps(flags, ExportFlag.KEEP_META)){
+			json.put(Node.Field.name.toString(), en.getName().getShortDescription());
+
+			if (en.getName().getLongDescription().trim().length() > 0){
+				json.put(Node.Field.description.toString(), en.getName().getLongDescription());
+			}
 		}
 		
 		// Configuration
-		JSONObject jsonConfiguration = nodeConfigToJSON(en);
+		JSONObject jsonConfiguration = nodeConfigToJSON(en, flags);
 		json.put(NodeConfiguration.Field.configuration.toString(), jsonConfiguration);
 		
 		// Meta
-		if (!en.getNotes().getNotes().isEmpty()){
+		if (keeps(flags, ExportFlag.KEEP_META) && !en.getNotes().getNotes().isEmpty()){
 			json.put(Meta.Field.meta.toString(), nodeMetaToJSON(en));
 		}
 		
 		// Graphics
-		JSONObject jsonGraphics = nodeGraphicsToJSON(en);
-		if (!jsonGraphics.isEmpty()){
-			json.put(NodeGraphics.Field.graphics.toString(), jsonGraphics);
+		if (keeps(flags, ExportFlag.KEEP_GRAPHICS)){
+			JSONObject jsonGraphics = nodeGraphicsToJSON(en);
+			if (!jsonGraphics.isEmpty()){
+				json.put(NodeGraphics.Field.graphics.toString(), jsonGraphics);
+			}
 		}
 		
 		return json;
 	}
 	
 	protected static JSONObject nodeConfigToJSON(ExtendedNode en) throws JSONException {
+		return nodeConfigToJSON(en, null);
+	}
+	
+	protected static JSONObject nodeConfigToJSON(ExtendedNode en, Set<ExportFlag> flags) throws JSONException {
 		JSONObject jsonConfig = new JSONObject();
 		
 		// Type
@@ -657,7 +762,7 @@ public class JSONAdapter {
 		}
 		
 		// Table
-		JSONObject jsonTable = nodeTableToJSON(en);
+		JSONObject jsonTable = nodeTableToJSON(en, flags);
 		jsonConfig.put(NodeConfiguration.Table.table.toString(), jsonTable);
 		
 		// States
@@ -697,6 +802,22 @@ public class JSONAdapter {
 	}
 	
 	public static JSONObject nodeTableToJSON(ExtendedNode en) throws JSONException {
+		return nodeTableToJSON(en, null);
+	}
+	
+	/**
+	 * Encodes the node table as JSON.
+	 * <br>
+	 * With export flags provided, the compiled NPT and its status are only encoded for manual tables of non-input nodes, or for any table of a non-input node with KEEP_TABLES.
+	 * 
+	 * @param en the node whose table to encode
+	 * @param flags export flags, or null for the full JSON
+	 * 
+	 * @return table JSON
+	 * 
+	 * @throws JSONException if encoding fails
+	 */
+	public static JSONObject nodeTableToJSON(ExtendedNode en, Set<ExportFlag> flags) throws JSONException {
 		JSONObject jsonTable = new JSONObject();
 		
 		// Type
@@ -765,6 +886,12 @@ public class JSONAdapter {
 		
 		// Probabilities
 		boolean manual = tableType.equals(NodeConfiguration.TableType.Manual);
+		boolean compiled = flags == null || !en.isConnectableInputNode() && (manual || flags.contains(ExportFlag.KEEP_TABLES));
+		if (!compiled){
+			// Not exported, skip retrieving the NPT
+			return jsonTable;
+		}
+		
 		if (!simulated && (manual || CACHE_NPTS)){
 			float[][] npt;
 			try {
@@ -0,0 +1,507 @@
+package com.agenarisk.api.io;
+
+import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Model;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * JSONModelReader reads model JSON with a pull parser instead of reading the whole file into a String first.
+ * <br>
+ * The model structure (networks, nodes, tables, links, settings etc) is read into a JSONObject, but the elements of the DataSets array of a model wrapped in the model key, which hold observations and results, are read one at a time as the model consumes them.
+ * <br>
+ * Only DataSets are streamed. Networks, nodes and their tables, including compiled NPTs, are applied to the model in several passes and are still held in memory as a whole, so for a large model whose size is mostly in its tables this saves only the intermediate String copy of the file.
+ * <br>
+ * Model JSON without the model key, with networks and DataSets at the root, is read in full and its DataSets stay in the structure.
+ * <br>
+ * Keys of a JSON object have no defined order, so when reading from a stream the DataSets can not be applied until the rest of the model has been read. From a file they are skipped on the first pass and streamed on the second; from a stream that can only be read once they are collected as they are read.
+ *
+ * @author Eugene Dementiev
+ */
+public class JSONModelReader {
+
+	/**
+	 * Model JSON without DataSets and the DataSets to apply to it
+	 */
+	public static class Content implements AutoCloseable {
+
+		private final JSONObject structure;
+		private final Iterable<JSONObject> dataSets;
+
+		/**
+		 * Iterators opened over the source, closed with this Content
+		 */
+		private final List<DataSetIterator> iterators = new ArrayList<>();
+
+		private Content(JSONObject structure, Iterable<JSONObject> dataSets) {
+			this.structure = structure;
+			this.dataSets = dataSets;
+		}
+
+		/**
+		 * Creates Content with DataSets read from a new pass over the source for each iteration.
+		 */
+		private Content(JSONObject structure, Source source) {
+			this.structure = structure;
+			this.dataSets = () -> {
+				DataSetIterator iterator = new DataSetIterator(source);
+				synchronized (iterators){
+					iterators.add(iterator);
+				}
+				return iterator;
+			};
+		}
+
+		/**
+		 * Returns the model JSON without the model's DataSets array.
+		 *
+		 * @return model JSON
+		 */
+		public JSONObject getStructure() {
+			return structure;
+		}
+
+		/**
+		 * Returns the model's DataSets, which may be read from the source lazily and only once.
+		 * <br>
+		 * Iterators that are not read to the end keep the source open until this Content is closed.
+		 *
+		 * @return DataSet JSON objects, or null if there is no DataSets array under the model key and any DataSets are left in the structure
+		 */
+		public Iterable<JSONObject> getDataSets() {
+			return dataSets;
+		}
+
+		/**
+		 * Closes any DataSet iterators still reading from the source.
+		 */
+		@Override
+		public void close() {
+			synchronized (iterators){
+				iterators.forEach(DataSetIterator::close);
+				iterators.clear();
+			}
+		}
+	}
+
+	/**
+	 * Opens the source from the start
+	 */
+	@FunctionalInterface
+	private interface Source {
+		Reader open() throws IOException;
+	}
+
+	/**
+	 * Reads model JSON from a file.
+	 * <br>
+	 * The file is only open while it is being read; DataSets are read on a second pass which closes the file once all DataSets were read or the returned Content is closed.
+	 *
+	 * @param path file path
+	 * @param charset charset of the file
+	 *
+	 * @return model structure and lazily read DataSets
+	 *
+	 * @throws AdapterException if the file can not be read or is not valid model JSON
+	 */
+	public static Content read(Path path, Charset charset) throws AdapterException {
+		Source source = () -> open(path, charset);
+
+		JSONObject structure;
+		boolean[] hasDataSets = new boolean[]{false};
+		try (Reader reader = source.open()){
+			structure = readStructure(new JSONTokener(reader), hasDataSets);
+		}
+		catch (IOException | JSONException ex){
+			throw new AdapterException("Failed to read model JSON", ex);
+		}
+
+		if (!hasDataSets[0]){
+			return new Content(structure, (Iterable<JSONObject>) null);
+		}
+
+		return new Content(structure, source);
+	}
+
+	/**
+	 * Reads model JSON from a stream that can only be read once.
+	 * <br>
+	 * The stream is not closed.
+	 *
+	 * @param stream input stream
+	 * @param charset charset of the stream
+	 *
+	 * @return model structure and DataSets
+	 *
+	 * @throws AdapterException if the stream can not be read or is not valid model JSON
+	 */
+	public static Content read(InputStream stream, Charset charset) throws AdapterException {
+		return read(new BufferedReader(new InputStreamReader(stream, charset)));
+	}
+	
+	/**
+	 * Reads model JSON from a reader that can only be read once.
+	 * <br>
+	 * The reader is not closed.
+	 *
+	 * @param reader reader of model JSON
+	 *
+	 * @return model structure and DataSets
+	 *
+	 * @throws AdapterException if the reader fails or the content is not valid model JSON
+	 */
+	public static Content read(Reader reader) throws AdapterException {
+		List<JSONObject> dataSets = new ArrayList<>();
+		boolean[] hasDataSets = new boolean[]{false};
+		try {
+			JSONTokener tokener = new JSONTokener(reader);
+			JSONObject structure = readObject(tokener, 0, (key, level) -> {
+				if (level == 1 && DataSet.Field.dataSets.toString().equals(key)){
+					hasDataSets[0] = true;
+					readArray(tokener, dataSets::add);
+					return true;
+				}
+				return false;
+			});
+			return new Content(structure, hasDataSets[0] ? dataSets : null);
+		}
+		catch (JSONException ex){
+			throw new AdapterException("Failed to read model JSON", ex);
+		}
+	}
+
+	/**
+	 * Checks whether the file content starts as JSON, ignoring leading whitespace.
+	 *
+	 * @param path file path
+	 * @param charset charset of the file
+	 *
+	 * @return true if the first non-whitespace character is an opening brace
+	 *
+	 * @throws AdapterException if the file can not be read
+	 */
+	public static boolean isJson(Path path, Charset charset) throws AdapterException {
+		try (Reader reader = new InputStreamReader(Files.newInputStream(path, StandardOpenOption.READ), decoder(charset))){
+			int c;
+			do {
+				c = reader.read();
+			}
+			while(c >= 0 && Character.isWhitespace(c));
+			return c == '{';
+		}
+		catch (IOException ex){
+			throw new AdapterException("Failed to read file", ex);
+		}
+	}
+
+	/**
+	 * Opens a reader over the file which replaces malformed input the same way regardless of file size, and releases the file when closed.
+	 */
+	private static Reader open(Path path, Charset charset) throws IOException {
+		return new BufferedReader(new InputStreamReader(Files.newInputStream(path, StandardOpenOption.READ), decoder(charset)), 65536);
+	}
+
+	private static CharsetDecoder decoder(Charset charset){
+		return charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Decides what to do with a value at the given key and nesting level
+	 */
+	@FunctionalInterface
+	private interface ValueHandler {
+
+		/**
+		 * @return true if the value was consumed by the handler and should not be added to the object
+		 */
+		boolean handle(String key, int level) throws JSONException;
+	}
+
+	/**
+	 * Reads the model structure, skipping the model's DataSets array.
+	 */
+	private static JSONObject readStructure(JSONTokener tokener, boolean[] hasDataSets) throws JSONException {
+		return readObject(tokener, 0, (key, level) -> {
+			if (level == 1 && DataSet.Field.dataSets.toString().equals(key)){
+				hasDataSets[0] = true;
+				skipValue(tokener);
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Reads a JSON object. Level 0 is the root and level 1 is the model object under the root's model key.
+	 * <br>
+	 * Values not consumed by the handler are read in full.
+	 */
+	private static JSONObject readObject(JSONTokener tokener, int level, ValueHandler handler) throws JSONException {
+		if (tokener.nextClean() != '{'){
+			throw tokener.syntaxError("A JSONObject text must begin with '{'");
+		}
+
+		JSONObject object = new JSONObject();
+		while(true){
+			String key = nextKey(tokener);
+			if (key == null){
+				break;
+			}
+
+			if (level == 0 && Model.Field.model.toString().equals(key)){
+				object.put(key, readObject(tokener, 1, handler));
+			}
+			else if (!handler.handle(key, level)){
+				object.put(key, tokener.nextValue());
+			}
+
+			if (!nextMember(tokener)){
+				break;
+			}
+		}
+
+		return object;
+	}
+
+	/**
+	 * Reads the next key of an object and the colon after it.
+	 *
+	 * @return the key or null if the object ended
+	 */
+	private static String nextKey(JSONTokener tokener) throws JSONException {
+		char c = tokener.nextClean();
+		if (c == 0){
+			throw tokener.syntaxError("A JSONObject text must end with '}'");
+		}
+		if (c == '}'){
+			return null;
+		}
+		tokener.back();
+		String key = tokener.nextValue().toString();
+		if (tokener.nextClean() != ':'){
+			throw tokener.syntaxError("Expected a ':' after a key");
+		}
+		return key;
+	}
+
+	/**
+	 * Reads the delimiter after an object member.
+	 *
+	 * @return true if another member follows
+	 */
+	private static boolean nextMember(JSONTokener tokener) throws JSONException {
+		char c = tokener.nextClean();
+		if (c == '}'){
+			return false;
+		}
+		if (c != ','){
+			throw tokener.syntaxError("Expected a ',' or '}'");
+		}
+		return true;
+	}
+
+	/**
+	 * Reads an array element by element, passing each JSONObject element to the consumer.
+	 */
+	private static void readArray(JSONTokener tokener, Consumer<JSONObject> consumer) throws JSONException {
+		if (tokener.nextClean() != '['){
+			throw tokener.syntaxError("A JSONArray text must start with '['");
+		}
+		char c = tokener.nextClean();
+		if (c == ']'){
+			return;
+		}
+		tokener.back();
+		while(true){
+			Object value = tokener.nextValue();
+			if (!(value instanceof JSONObject)){
+				throw tokener.syntaxError("Expected a DataSet object");
+			}
+			consumer.accept((JSONObject) value);
+			c = tokener.nextClean();
+			if (c == ']'){
+				return;
+			}
+			if (c != ','){
+				throw tokener.syntaxError("Expected a ',' or ']'");
+			}
+		}
+	}
+
+	/**
+	 * Skips over the next value without building it.
+	 */
+	private static void skipValue(JSONTokener tokener) throws JSONException {
+		char c = tokener.nextClean();
+		if (c == '"' || c == '\''){
+			tokener.nextString(c);
+			return;
+		}
+		if (c != '{' && c != '['){
+			// Primitive: read up to the next delimiter
+			tokener.back();
+			tokener.nextValue();
+			return;
+		}
+
+		int depth = 1;
+		while(depth > 0){
+			c = tokener.next();
+			switch(c){
+				case 0:
+					throw tokener.syntaxError("Unterminated value");
+				case '"':
+				case '\'':
+					tokener.nextString(c);
+					break;
+				case '{':
+				case '[':
+					depth++;
+					break;
+				case '}':
+				case ']':
+					depth--;
+					break;
+				default:
+			}
+		}
+	}
+
+	/**
+	 * Reads the model DataSets array from a new pass over the source, one element at a time
+	 */
+	private static class DataSetIterator implements Iterator<JSONObject>, AutoCloseable {
+
+		private final Reader reader;
+		private final JSONTokener tokener;
+		private JSONObject next = null;
+		private boolean done = false;
+
+		private DataSetIterator(Source source) {
+			try {
+				reader = source.open();
+				tokener = new JSONTokener(reader);
+				if (!seekDataSets(tokener, 0)){
+					finish();
+				}
+				else if (tokener.nextClean() != '['){
+					throw tokener.syntaxError("A JSONArray text must start with '['");
+				}
+				else if (tokener.nextClean() == ']'){
+					finish();
+				}
+				else {
+					tokener.back();
+				}
+			}
+			catch (IOException ex){
+				throw new JSONException("Failed to read model DataSets", ex);
+			}
+			catch (JSONException ex){
+				finish();
+				throw ex;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !done){
+				Object value = tokener.nextValue();
+				if (!(value instanceof JSONObject)){
+					throw tokener.syntaxError("Expected a DataSet object");
+				}
+				next = (JSONObject) value;
+				char c = tokener.nextClean();
+				if (c == ']'){
+					finish();
+				}
+				else if (c != ','){
+					throw tokener.syntaxError("Expected a ',' or ']'");
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public JSONObject next() {
+			if (!hasNext()){
+				throw new NoSuchElementException();
+			}
+			JSONObject value = next;
+			next = null;
+			return value;
+		}
+
+		/**
+		 * Stops reading and releases the source.
+		 */
+		@Override
+		public void close() {
+			next = null;
+			finish();
+		}
+
+		private void finish() {
+			if (done){
+				return;
+			}
+			done = true;
+			try {
+				reader.close();
+			}
+			catch (IOException ex){
+				// Nothing else to read
+			}
+		}
+
+		/**
+		 * Positions the tokener right before the value of the model's DataSets array.
+		 *
+		 * @return false if there is no such array
+		 */
+		private static boolean seekDataSets(JSONTokener tokener, int level) throws JSONException {
+			if (tokener.nextClean() != '{'){
+				throw tokener.syntaxError("A JSONObject text must begin with '{'");
+			}
+			while(true){
+				String key = nextKey(tokener);
+				if (key == null){
+					return false;
+				}
+
+				if (level == 0 && Model.Field.model.toString().equals(key)){
+					// The model object holds the DataSets array if there is one
+					return seekDataSets(tokener, 1);
+				}
+				if (level == 1 && DataSet.Field.dataSets.toString().equals(key)){
+					return true;
+				}
+				skipValue(tokener);
+
+				if (!nextMember(tokener)){
+					return false;
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.agenarisk.api.io;
 
 import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
 import com.agenarisk.api.io.stub.Audit;
 import com.agenarisk.api.io.stub.Graphics;
 import com.agenarisk.api.io.stub.Meta;
@@ -15,13 +16,28 @@ import com.agenarisk.api.model.Observation;
 import com.agenarisk.api.model.State;
 import com.agenarisk.api.model.ResultValue;
 import com.agenarisk.api.util.JSONUtils;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,6 +52,27 @@ public class XMLAdapter {
 	
 	private static final Map<String, String> WRAPPER_MAP = new HashMap<>();
 	
+	/**
+	 * Element that encloses the top level elements while reading, because model XML may have more than one
+	 */
+	private static final String FRAGMENT_ROOT = "agenarisk-fragment";
+	
+	/**
+	 * Key under which text content of an element is stored when the element also has attributes or children, same as in org.json XML conversion
+	 */
+	private static final String CONTENT = "content";
+	
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	
+	static {
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, false);
+	}
+	
 	static {
 		WRAPPER_MAP.put(Network.Field.networks.toString(), Network.Field.network.toString());
 		WRAPPER_MAP.put(Network.ModificationLog.modificationLog.toString(), Network.ModificationLog.entry.toString());
@@ -83,18 +120,251 @@ public class XMLAdapter {
 	 * @throws AdapterException if invalid XML structure or unexpected values
 	 */
 	public static JSONObject xmlToJson(String xmlString) throws AdapterException {
-		JSONObject json;
+		return xmlToJson(new StringReader(xmlString));
+	}
+	
+	/**
+	 * Reads XML with a streaming parser to JSONObject and then formats the JSONObject to conform to AgenaRisk 10 JSON model format.
+	 * <br>
+	 * The resulting JSON is the same as produced by org.json XML conversion, but the XML text is never held in memory as a whole.
+	 * <br>
+	 * The reader is not closed.
+	 * 
+	 * @param reader reader of XML
+	 * 
+	 * @return corresponding JSONObject
+	 * 
+	 * @throws AdapterException if invalid XML structure or unexpected values
+	 */
+	public static JSONObject xmlToJson(Reader reader) throws AdapterException {
+		JSONObject json = new JSONObject();
 		try {
-			json = XML.toJSONObject(xmlString);
+			XMLStreamReader xml = INPUT_FACTORY.createXMLStreamReader(fragment(reader));
+			try {
+				while(xml.next() != XMLStreamConstants.START_ELEMENT){
+					// Move to the fragment root
+				}
+				
+				while(true){
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT){
+						readElement(xml, json);
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT){
+						// End of fragment root, text at top level is ignored
+						break;
+					}
+				}
+			}
+			finally {
+				xml.close();
+			}
 			convertXmlJson(json);
 		}
-		catch (JSONException ex){
+		catch (IOException | XMLStreamException | JSONException ex){
 			throw new AdapterException("Failed to convert model XML to JSON", ex);
 		}
 		
 		return json;
 	}
 	
+	/**
+	 * Reads the element at the current START_ELEMENT event and its content up to and including its END_ELEMENT event, and accumulates it into the context object.
+	 * <br>
+	 * Follows org.json XML conversion: attributes and children become keys, repeated keys become arrays, trimmed text is converted to numbers and booleans where possible and CDATA is kept as text.
+	 */
+	private static void readElement(XMLStreamReader xml, JSONObject context) throws XMLStreamException, JSONException {
+		String tagName = xml.getLocalName();
+		JSONObject jo = new JSONObject();
+		
+		for (int i = 0; i < xml.getAttributeCount(); i++) {
+			jo.accumulate(xml.getAttributeLocalName(i), XML.stringToValue(xml.getAttributeValue(i)));
+		}
+		
+		StringBuilder text = new StringBuilder();
+		StringBuilder cdata = new StringBuilder();
+		boolean inCData = false;
+		
+		while(true){
+			int event = xml.next();
+			
+			if (event == XMLStreamConstants.CDATA){
+				if (!inCData){
+					flushText(jo, text);
+				}
+				inCData = true;
+				cdata.append(xml.getText());
+				continue;
+			}
+			
+			if (inCData){
+				// Adjacent CDATA events are parts of the same section
+				if (cdata.length() > 0){
+					jo.accumulate(CONTENT, cdata.toString());
+				}
+				cdata.setLength(0);
+				inCData = false;
+			}
+			
+			switch(event){
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					text.append(xml.getText());
+					break;
+					
+				case XMLStreamConstants.START_ELEMENT:
+					flushText(jo, text);
+					readElement(xml, jo);
+					break;
+					
+				case XMLStreamConstants.END_ELEMENT:
+					flushText(jo, text);
+					if (jo.length() == 0){
+						context.accumulate(tagName, "");
+					}
+					else if (jo.length() == 1 && jo.opt(CONTENT) != null){
+						context.accumulate(tagName, jo.opt(CONTENT));
+					}
+					else {
+						context.accumulate(tagName, jo);
+					}
+					return;
+					
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new XMLStreamException("Unexpected end of XML in element " + tagName);
+					
+				default:
+					// Comments and processing instructions separate text
+					flushText(jo, text);
+			}
+		}
+	}
+	
+	/**
+	 * Adds non-blank text collected so far as content and clears it.
+	 */
+	private static void flushText(JSONObject jo, StringBuilder text) throws JSONException {
+		String string = text.toString().trim();
+		if (!string.isEmpty()){
+			jo.accumulate(CONTENT, XML.stringToValue(string));
+		}
+		text.setLength(0);
+	}
+	
+	/**
+	 * Skips the XML prolog and encloses the rest of the content in a single root element, so that XML with several top level elements can be read by a streaming parser.
+	 */
+	private static Reader fragment(Reader reader) throws IOException {
+		PushbackReader in = new PushbackReader(reader, 9);
+		while(true){
+			int c;
+			do {
+				c = in.read();
+			}
+			while(c >= 0 && (Character.isWhitespace(c) || c == '\uFEFF'));
+			
+			if (c < 0){
+				break;
+			}
+			
+			if (c != '<'){
+				in.unread(c);
+				break;
+			}
+			
+			char[] head = new char[8];
+			int n = 0;
+			while(n < head.length){
+				int read = in.read(head, n, head.length - n);
+				if (read < 0){
+					break;
+				}
+				n += read;
+			}
+			String start = new String(head, 0, n);
+			
+			if (start.startsWith("?")){
+				in.unread(head, 1, n - 1);
+				skipPast(in, "?>");
+			}
+			else if (start.startsWith("!--")){
+				in.unread(head, 3, n - 3);
+				skipPast(in, "-->");
+			}
+			else if (start.startsWith("!DOCTYPE")){
+				skipDoctype(in);
+			}
+			else {
+				in.unread(head, 0, n);
+				in.unread('<');
+				break;
+			}
+		}
+		
+		return new ConcatReader(new StringReader("<" + FRAGMENT_ROOT + ">"), in, new StringReader("</" + FRAGMENT_ROOT + ">"));
+	}
+	
+	private static void skipPast(Reader reader, String end) throws IOException {
+		char[] window = new char[end.length()];
+		int count = 0;
+		int c;
+		while((c = reader.read()) >= 0){
+			System.arraycopy(window, 1, window, 0, window.length - 1);
+			window[window.length - 1] = (char) c;
+			count++;
+			if (count >= window.length && end.equals(new String(window))){
+				return;
+			}
+		}
+	}
+	
+	private static void skipDoctype(Reader reader) throws IOException {
+		int depth = 0;
+		int c;
+		while((c = reader.read()) >= 0){
+			if (c == '['){
+				depth++;
+			}
+			else if (c == ']'){
+				depth--;
+			}
+			else if (c == '>' && depth <= 0){
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Reads from several readers one after another
+	 */
+	private static class ConcatReader extends Reader {
+		
+		private final Reader[] readers;
+		private int current = 0;
+		
+		private ConcatReader(Reader... readers) {
+			this.readers = readers;
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			while(current < readers.length){
+				int read = readers[current].read(cbuf, off, len);
+				if (read > 0 || len == 0){
+					return read;
+				}
+				current++;
+			}
+			return -1;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			// Underlying reader is closed by its owner
+		}
+	}
+	
 	/**
 	 * Converts a JSON AgenaRisk 10 model to its XML representation.
 	 * 
@@ -127,79 +397,130 @@ public class XMLAdapter {
 	 * @return object in XML format
 	 */
 	public static String toXMLString(Object o, String wrapper){
-		StringBuilder sb = new StringBuilder();
-		
-		String prefix = "";
-		String suffix = "";
-		
-		if (o instanceof String && prefix.isEmpty() && suffix.isEmpty()){
+		StringWriter writer = new StringWriter();
+		try {
+			XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+			writeXML(xml, o, wrapper);
+			xml.flush();
+		}
+		catch (XMLStreamException ex){
+			throw new AgenaRiskRuntimeException("Failed to convert to XML", ex);
+		}
+		return writer.toString();
+	}
+	
+	/**
+	 * Writes a JSON AgenaRisk 10 model as XML to a stream, without building the XML text in memory.
+	 * <br>
+	 * The output is the same as {@link #toXMLString(Object)}. The stream is not closed.
+	 * 
+	 * @param o object in JSON format
+	 * @param stream stream to write to
+	 * @param charset charset of the output
+	 * 
+	 * @throws AdapterException if writing fails
+	 */
+	public static void writeXML(Object o, OutputStream stream, Charset charset) throws AdapterException {
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stream, charset), 65536);
+			XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+			writeXML(xml, o, null);
+			xml.flush();
+			writer.flush();
+		}
+		catch (IOException | XMLStreamException ex){
+			throw new AdapterException("Failed to write model XML", ex);
+		}
+	}
+	
+	/**
+	 * Writes an object as XML.
+	 * <br>
+	 * If o is JSONObject, will wrap the object representation into an open-close wrapper tag pair, and will use keys to resolve wrappers for its children.
+	 * <br>
+	 * If o is a JSONArray, will wrap each element into an open-close wrapper tag pair, and will use the wrapper to resolve wrapper for its elements.
+	 * <br>
+	 * Otherwise will wrap the element into an open-close wrapper tag pair.
+	 * <br>
+	 * If wrapper is CDATA then will write the XML representation as CDATA. Strings are always written as CDATA.
+	 * <br>
+	 * Wrapper can be comma-delimited, in which case will wrap into a corresponding sequence of tags.
+	 */
+	private static void writeXML(XMLStreamWriter xml, Object o, String wrapper) throws XMLStreamException {
+		if (o instanceof String){
 			wrapper = "CDATA";
 		}
 		
-		if (wrapper != null){
-			if (wrapper.equals("CDATA")){
-				prefix = "<![CDATA[";
-				suffix = "]]>";
-			}
-			else {
-				List<String> wrappers = Arrays.asList(wrapper.split(","));
-				prefix = wrappers.stream().map(w -> "<"+w+">").collect(Collectors.joining(""));
-				Collections.reverse(wrappers);
-				suffix = wrappers.stream().map(w -> "</"+w+">").collect(Collectors.joining(""));
-			}
-		}
+		boolean cdata = "CDATA".equals(wrapper);
+		List<String> wrappers = (wrapper == null || cdata) ? Collections.emptyList() : Arrays.asList(wrapper.split(","));
 		
 		if (o instanceof JSONObject){
-			if (!prefix.isEmpty()){
-				sb.append(prefix);
+			if (cdata){
+				writeCData(xml, toXMLString(o, null));
+				return;
 			}
 			
+			wrappers.forEach(w -> writeStartElement(xml, w));
 			JSONObject jo = (JSONObject) o;
 			Iterator<String> keys = jo.keys();
 			while(keys.hasNext()){
 				String key = keys.next();
-				sb.append("<").append(key).append(">");
-				
-				String wrapperNext = WRAPPER_MAP.get(key);
-				
-				sb.append(toXMLString(jo.opt(key), wrapperNext));
-				sb.append("</").append(key).append(">");
+				xml.writeStartElement(key);
+				writeXML(xml, jo.opt(key), WRAPPER_MAP.get(key));
+				xml.writeEndElement();
 			}
-			
-			if (!suffix.isEmpty()){
-				sb.append(suffix);
+			for (int i = 0; i < wrappers.size(); i++) {
+				xml.writeEndElement();
 			}
 		}
 		else if (o instanceof JSONArray){
 			JSONArray ja = (JSONArray)o;
+			String wrapperNext = WRAPPER_MAP.get(wrapper);
 			for (int i = 0; i < ja.length(); i++) {
-				if (!prefix.isEmpty()){
-					sb.append(prefix);
+				if (cdata){
+					writeCData(xml, toXMLString(ja.opt(i), wrapperNext));
+					continue;
 				}
 				
-				String wrapperNext = WRAPPER_MAP.get(wrapper);
-				
-				sb.append(toXMLString(ja.opt(i), wrapperNext));
-				
-				if (!suffix.isEmpty()){
-					sb.append(suffix);
+				wrappers.forEach(w -> writeStartElement(xml, w));
+				writeXML(xml, ja.opt(i), wrapperNext);
+				for (int j = 0; j < wrappers.size(); j++) {
+					xml.writeEndElement();
 				}
 			}
 		}
+		else if (cdata){
+			writeCData(xml, String.valueOf(o));
+		}
 		else {
-			
-			if (!prefix.isEmpty()){
-				sb.append(prefix);
-			}
-			
-			sb.append(o);
-			
-			if (!suffix.isEmpty()){
-				sb.append(suffix);
+			wrappers.forEach(w -> writeStartElement(xml, w));
+			xml.writeCharacters(String.valueOf(o));
+			for (int i = 0; i < wrappers.size(); i++) {
+				xml.writeEndElement();
 			}
 		}
-		
-		return sb.toString();
+	}
+	
+	private static void writeStartElement(XMLStreamWriter xml, String name) {
+		try {
+			xml.writeStartElement(name);
+		}
+		catch (XMLStreamException ex){
+			throw new AgenaRiskRuntimeException("Failed to write element " + name, ex);
+		}
+	}
+	
+	/**
+	 * Writes text as CDATA, splitting it where it contains the CDATA end marker.
+	 */
+	private static void writeCData(XMLStreamWriter xml, String text) throws XMLStreamException {
+		int from = 0;
+		int index;
+		while((index = text.indexOf("]]>", from)) >= 0){
+			xml.writeCData(text.substring(from, index + 2));
+			from = index + 2;
+		}
+		xml.writeCData(text.substring(from));
 	}
 
 	/**
@@ -0,0 +1,368 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import com.agenarisk.api.exception.CalculationCancelledException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import uk.co.agena.minerva.util.Logger;
+
+/**
+ * CalculationContext carries the engine switches that apply to a single calculation or analysis call, such as message suppression and sensitivity analysis or EM modes.
+ * <br>
+ * The AgenaRisk Core keeps these switches in process-wide static fields. Instead of each call saving, overwriting and restoring them, calls enter a context, and contexts coordinate access to the static fields:
+ * <br>
+ * ∙ Any number of calls with equal switches run concurrently; the first one to enter applies the switches and the last one to leave restores previous values
+ * <br>
+ * ∙ A call with different switches waits until calls currently using the engine leave
+ * <br>
+ * ∙ Calls are admitted in the order they arrive, so a call with different switches is not overtaken by later calls that could join the active ones
+ * <br>
+ * ∙ A call with a deadline stops waiting once the deadline passes and leaves the queue, so calls behind it are not held up
+ * <br>
+ * ∙ A context entered while the same thread is already inside a context joins the outer one and does not change static switches; if it requests switch values different from those in effect, this is logged
+ * <br>
+ * Switches left as null are not applied and keep whatever value the engine has.
+ * <br>
+ * The per-model simulation setting warning switch is applied to the given logic model for every call, since it is not shared between models.
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationContext {
+
+	/**
+	 * Guards static engine switches
+	 */
+	private static final ReentrantLock LOCK = new ReentrantLock();
+	private static final Condition RELEASED = LOCK.newCondition();
+
+	/**
+	 * Static switches currently applied to the engine, null when no context is active
+	 */
+	private static List<Object> activeSwitches = null;
+
+	/**
+	 * Static switch values to restore once the last active context leaves
+	 */
+	private static List<Object> originalSwitches = null;
+
+	/**
+	 * Number of active top-level scopes across all threads
+	 */
+	private static int activeScopes = 0;
+
+	/**
+	 * Tickets of top-level calls waiting to be admitted, in arrival order
+	 */
+	private static final Deque<Object> QUEUE = new ArrayDeque<>();
+
+	/**
+	 * Depth of nested scopes in the current thread
+	 */
+	private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[]{0});
+
+	private String suppressMessages = "system";
+	private Boolean checkMonitorsOpen = false;
+	private boolean simulationSettingWarningMessage = false;
+	private Boolean sensitivityAnalysis = null;
+	private Boolean expectationMaximisation = null;
+
+	private CalculationContext(){}
+
+	/**
+	 * Creates a context suitable for calculation without a GUI: engine messages are suppressed and monitors and simulation setting warnings are not checked.
+	 * <br>
+	 * Sensitivity analysis and EM switches are left as they are.
+	 *
+	 * @return new context
+	 */
+	public static CalculationContext headless(){
+		return new CalculationContext();
+	}
+
+	/**
+	 * Sets the engine message suppression mode, e.g. "system" or "all".
+	 *
+	 * @param suppressMessages suppression mode or null to leave unchanged
+	 *
+	 * @return this context
+	 */
+	public CalculationContext withSuppressMessages(String suppressMessages){
+		this.suppressMessages = suppressMessages;
+		return this;
+	}
+
+	/**
+	 * Sets whether the engine should check for open monitors.
+	 *
+	 * @param checkMonitorsOpen switch value or null to leave unchanged
+	 *
+	 * @return this context
+	 */
+	public CalculationContext withCheckMonitorsOpen(Boolean checkMonitorsOpen){
+		this.checkMonitorsOpen = checkMonitorsOpen;
+		return this;
+	}
+
+	/**
+	 * Sets whether the logic model should warn about simulation settings.
+	 *
+	 * @param simulationSettingWarningMessage switch value
+	 *
+	 * @return this context
+	 */
+	public CalculationContext withSimulationSettingWarningMessage(boolean simulationSettingWarningMessage){
+		this.simulationSettingWarningMessage = simulationSettingWarningMessage;
+		return this;
+	}
+
+	/**
+	 * Sets whether the engine should run in sensitivity analysis mode.
+	 *
+	 * @param sensitivityAnalysis switch value or null to leave unchanged
+	 *
+	 * @return this context
+	 */
+	public CalculationContext withSensitivityAnalysis(Boolean sensitivityAnalysis){
+		this.sensitivityAnalysis = sensitivityAnalysis;
+		return this;
+	}
+
+	/**
+	 * Sets whether the engine should run in EM learning mode.
+	 *
+	 * @param expectationMaximisation switch value or null to leave unchanged
+	 *
+	 * @return this context
+	 */
+	public CalculationContext withExpectationMaximisation(Boolean expectationMaximisation){
+		this.expectationMaximisation = expectationMaximisation;
+		return this;
+	}
+
+	/**
+	 * Enters this context for the provided Model, waiting if the engine is in use by calls with different switches.
+	 * <br>
+	 * Must be closed when the call completes, preferably with try-with-resources.
+	 *
+	 * @param model Model to calculate
+	 *
+	 * @return scope to close once done
+	 */
+	public Scope enter(Model model){
+		return enter(model.getLogicModel());
+	}
+
+	/**
+	 * Enters this context for the provided logic model, waiting if the engine is in use by calls with different switches.
+	 * <br>
+	 * Must be closed when the call completes, preferably with try-with-resources.
+	 *
+	 * @param logicModel logic model to calculate, may be null if the call is not for a specific model
+	 *
+	 * @return scope to close once done
+	 */
+	public Scope enter(uk.co.agena.minerva.model.Model logicModel){
+		return admit(logicModel, null);
+	}
+
+	/**
+	 * Enters this context for the provided logic model, waiting if the engine is in use by calls with different switches, but not past the deadline.
+	 * <br>
+	 * Must be closed when the call completes, preferably with try-with-resources.
+	 *
+	 * @param logicModel logic model to calculate, may be null if the call is not for a specific model
+	 * @param deadline time after which to stop waiting, or null to wait as long as needed
+	 *
+	 * @return scope to close once done
+	 *
+	 * @throws CalculationCancelledException if the deadline passed before the context could be entered
+	 */
+	public Scope enter(uk.co.agena.minerva.model.Model logicModel, Instant deadline) throws CalculationCancelledException {
+		Long remaining = null;
+		if (deadline != null){
+			try {
+				remaining = Math.max(0, Duration.between(Instant.now(), deadline).toNanos());
+			}
+			catch (ArithmeticException ex){
+				// Too far away to matter
+				remaining = Long.MAX_VALUE;
+			}
+		}
+		Scope scope = admit(logicModel, remaining);
+		if (scope == null){
+			throw new CalculationCancelledException("Calculation deadline passed", true);
+		}
+		return scope;
+	}
+
+	/**
+	 * Enters this context, waiting for at most the provided time.
+	 *
+	 * @param remaining nanoseconds to wait for at most, or null to wait as long as needed
+	 *
+	 * @return scope to close once done, or null if timed out
+	 */
+	private Scope admit(uk.co.agena.minerva.model.Model logicModel, Long remaining){
+		int[] depth = DEPTH.get();
+
+		List<Object> switches = Arrays.asList(suppressMessages, checkMonitorsOpen, sensitivityAnalysis, expectationMaximisation);
+		if (depth[0] == 0){
+			LOCK.lock();
+			try {
+				Object ticket = new Object();
+				QUEUE.addLast(ticket);
+				boolean interrupted = false;
+				long end = (remaining == null) ? 0 : System.nanoTime() + remaining;
+				try {
+					// Wait for the turn first, so that calls that could join the active switches do not overtake a call that can not
+					while(QUEUE.peekFirst() != ticket || (activeScopes > 0 && !Objects.equals(activeSwitches, switches))){
+						if (remaining == null){
+							RELEASED.awaitUninterruptibly();
+							continue;
+						}
+						if (remaining <= 0){
+							return null;
+						}
+						try {
+							remaining = RELEASED.awaitNanos(remaining);
+						}
+						catch (InterruptedException ex){
+							// Keep waiting like calls without a deadline do, the interrupt is restored once done
+							interrupted = true;
+							remaining = end - System.nanoTime();
+						}
+					}
+				}
+				finally {
+					if (interrupted){
+						Thread.currentThread().interrupt();
+					}
+					QUEUE.remove(ticket);
+					// The next call in line may be able to join, or is now first in line after a call that timed out
+					RELEASED.signalAll();
+				}
+				if (activeScopes == 0){
+					originalSwitches = readSwitches();
+					applySwitches(switches);
+					activeSwitches = switches;
+				}
+				activeScopes++;
+			}
+			finally {
+				LOCK.unlock();
+			}
+		}
+		else if (!isCompatible(switches)){
+			Logger.log("Nested calculation context requests engine switches " + switches + " which differ from those in effect " + readSwitches() + ", running with the outer context switches");
+		}
+
+		depth[0]++;
+		return new Scope(logicModel, simulationSettingWarningMessage);
+	}
+
+	/**
+	 * Checks whether the switches are already in effect, ignoring switches left as null.
+	 */
+	private static boolean isCompatible(List<Object> switches){
+		List<Object> current = readSwitches();
+		for(int i = 0; i < switches.size(); i++){
+			if (switches.get(i) != null && !Objects.equals(switches.get(i), current.get(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Object> readSwitches(){
+		return Arrays.asList(
+				uk.co.agena.minerva.model.Model.suppressMessages,
+				uk.co.agena.minerva.model.Model.checkMonitorsOpen,
+				uk.co.agena.minerva.model.Model.SMA,
+				uk.co.agena.minerva.model.Model.EM_ON
+		);
+	}
+
+	private static void applySwitches(List<Object> switches){
+		if (switches.get(0) != null){
+			uk.co.agena.minerva.model.Model.suppressMessages = (String) switches.get(0);
+		}
+		if (switches.get(1) != null){
+			uk.co.agena.minerva.model.Model.checkMonitorsOpen = (Boolean) switches.get(1);
+		}
+		if (switches.get(2) != null){
+			uk.co.agena.minerva.model.Model.SMA = (Boolean) switches.get(2);
+		}
+		if (switches.get(3) != null){
+			uk.co.agena.minerva.model.Model.EM_ON = (Boolean) switches.get(3);
+		}
+	}
+
+	/**
+	 * Scope of an entered CalculationContext. Closing it leaves the context and restores engine switches once no other calls use them.
+	 */
+	public static class Scope implements AutoCloseable {
+
+		private final uk.co.agena.minerva.model.Model logicModel;
+		private final boolean simulationSettingWarningMessageOriginal;
+		private boolean closed = false;
+
+		private Scope(uk.co.agena.minerva.model.Model logicModel, boolean simulationSettingWarningMessage){
+			this.logicModel = logicModel;
+			if (logicModel != null){
+				this.simulationSettingWarningMessageOriginal = logicModel.SimulationSettingWarningMessage;
+				logicModel.SimulationSettingWarningMessage = simulationSettingWarningMessage;
+			}
+			else {
+				this.simulationSettingWarningMessageOriginal = false;
+			}
+		}
+
+		/**
+		 * Leaves the context. Has no effect if already closed.
+		 *
+		 * @throws AgenaRiskRuntimeException if closed in a thread that did not enter it
+		 */
+		@Override
+		public void close(){
+			if (closed){
+				return;
+			}
+
+			int[] depth = DEPTH.get();
+			if (depth[0] <= 0){
+				throw new AgenaRiskRuntimeException("Calculation context closed in a thread that did not enter it");
+			}
+
+			closed = true;
+			if (logicModel != null){
+				logicModel.SimulationSettingWarningMessage = simulationSettingWarningMessageOriginal;
+			}
+
+			depth[0]--;
+			if (depth[0] > 0){
+				return;
+			}
+
+			LOCK.lock();
+			try {
+				activeScopes--;
+				if (activeScopes == 0){
+					applySwitches(originalSwitches);
+					activeSwitches = null;
+					originalSwitches = null;
+					RELEASED.signalAll();
+				}
+			}
+			finally {
+				LOCK.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package com.agenarisk.api.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONObject;
+
+/**
+ * CalculationEvent describes one finished phase of work on a Model, with its wall time, bytes allocated by the working thread and, where known, junction tree clique sizes.
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationEvent {
+
+	/**
+	 * Phases of work reported to {@link CalculationListener}s
+	 */
+	public static enum Phase {
+		/**
+		 * Binary factorisation of the Model, see {@link Model#factorize()}
+		 */
+		FACTORISATION,
+
+		/**
+		 * Junction tree compilation without propagation, see {@link Model#inspectJunctionTrees(int)}
+		 * <br>
+		 * Only reported by inspection: during {@link Model#calculate()} the Core compiles junction trees inside propagation, so that time is reported as part of PROPAGATION
+		 */
+		JUNCTION_TREE_COMPILATION,
+
+		/**
+		 * Propagation in the Core, including junction tree compilation, dynamic discretisation iterations and message passing across CrossNetworkLinks
+		 */
+		PROPAGATION,
+
+		/**
+		 * Reading calculation results of a Network in a DataSet into CalculationResult objects
+		 */
+		RESULT_MATERIALISATION,
+
+		/**
+		 * Conversion of the Model to JSON requested with {@link Model#export(Model.ExportFlag...)}; internal conversions, e.g. for cache keys, are not reported
+		 */
+		EXPORT
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final Phase phase;
+	private final Model model;
+	private final long wallNanos;
+	private final long allocatedBytes;
+	private final boolean successful;
+	private final List<String> networks;
+	private final List<String> dataSets;
+	private final double maxCliqueCells;
+	private final double totalCells;
+	private final JSONObject details;
+
+	private CalculationEvent(Builder builder, long wallNanos, long allocatedBytes) {
+		this.phase = builder.phase;
+		this.model = builder.model;
+		this.wallNanos = wallNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.successful = builder.successful;
+		this.networks = Collections.unmodifiableList(builder.networks);
+		this.dataSets = Collections.unmodifiableList(builder.dataSets);
+		this.maxCliqueCells = builder.maxCliqueCells;
+		this.totalCells = builder.totalCells;
+		this.details = builder.details;
+	}
+
+	/**
+	 * Returns the phase this event describes.
+	 *
+	 * @return phase
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Returns the Model the work was done on.
+	 *
+	 * @return Model
+	 */
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns wall time of the phase.
+	 *
+	 * @return wall time
+	 */
+	public Duration getWallTime() {
+		return Duration.ofNanos(wallNanos);
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the working thread during the phase.
+	 *
+	 * @return allocated bytes or -1 if the JVM does not support measuring thread allocation
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns whether the phase finished successfully.
+	 *
+	 * @return true if successful
+	 */
+	public boolean isSuccessful() {
+		return successful;
+	}
+
+	/**
+	 * Returns IDs of Networks involved in the phase.
+	 *
+	 * @return Network IDs, empty if not applicable
+	 */
+	public List<String> getNetworks() {
+		return networks;
+	}
+
+	/**
+	 * Returns IDs of DataSets involved in the phase.
+	 *
+	 * @return DataSet IDs, empty if not applicable
+	 */
+	public List<String> getDataSets() {
+		return dataSets;
+	}
+
+	/**
+	 * Returns the number of cells in the largest junction tree clique.
+	 *
+	 * @return largest clique cells or NaN if not known for this phase
+	 */
+	public double getMaxCliqueCells() {
+		return maxCliqueCells;
+	}
+
+	/**
+	 * Returns the total number of cells in all junction tree cliques.
+	 *
+	 * @return total clique cells or NaN if not known for this phase
+	 */
+	public double getTotalCells() {
+		return totalCells;
+	}
+
+	/**
+	 * Returns phase-specific details, e.g. whether factorisation was served from cache.
+	 *
+	 * @return details, never null
+	 */
+	public JSONObject getDetails() {
+		return details;
+	}
+
+	/**
+	 * Returns the event as JSON: phase, wallMs, allocatedBytes, successful, networks, dataSets, maxCliqueCells, totalCells and details.
+	 *
+	 * @return event as JSON
+	 */
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("phase", phase.toString());
+		json.put("wallMs", wallNanos / 1e6);
+		json.put("allocatedBytes", allocatedBytes);
+		json.put("successful", successful);
+		json.put("networks", networks);
+		json.put("dataSets", dataSets);
+		if (!Double.isNaN(maxCliqueCells)){
+			json.put("maxCliqueCells", maxCliqueCells);
+		}
+		if (!Double.isNaN(totalCells)){
+			json.put("totalCells", totalCells);
+		}
+		json.put("details", details);
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return toJson().toString();
+	}
+
+	/**
+	 * Starts measuring a phase. Returns null if the Model has no listeners, so that nothing is measured.
+	 *
+	 * @param model Model the work is done on
+	 * @param phase phase being measured
+	 *
+	 * @return builder to fill in and fire once the phase is done, or null
+	 */
+	protected static Builder start(Model model, Phase phase) {
+		if (!model.hasCalculationListeners()){
+			return null;
+		}
+		return new Builder(model, phase);
+	}
+
+	/**
+	 * Measures a phase in progress and collects its attributes
+	 */
+	protected static class Builder {
+
+		private final Phase phase;
+		private final Model model;
+		private final long startNanos;
+		private final long startAllocated;
+		private boolean successful = false;
+		private final List<String> networks = new ArrayList<>();
+		private final List<String> dataSets = new ArrayList<>();
+		private double maxCliqueCells = Double.NaN;
+		private double totalCells = Double.NaN;
+		private final JSONObject details = new JSONObject();
+
+		private Builder(Model model, Phase phase) {
+			this.model = model;
+			this.phase = phase;
+			this.startAllocated = allocatedBytes();
+			this.startNanos = System.nanoTime();
+		}
+
+		protected Builder successful(boolean successful) {
+			this.successful = successful;
+			return this;
+		}
+
+		protected Builder networks(Iterable<Network> networks) {
+			networks.forEach(network -> this.networks.add(network.getId()));
+			return this;
+		}
+
+		protected Builder dataSets(Iterable<DataSet> dataSets) {
+			dataSets.forEach(dataSet -> this.dataSets.add(dataSet.getId()));
+			return this;
+		}
+
+		protected Builder cliques(double maxCliqueCells, double totalCells) {
+			this.maxCliqueCells = maxCliqueCells;
+			this.totalCells = totalCells;
+			return this;
+		}
+
+		protected Builder detail(String key, Object value) {
+			details.put(key, value);
+			return this;
+		}
+
+		/**
+		 * Stops measuring and passes the event to the Model's listeners.
+		 */
+		protected void fire() {
+			long wallNanos = System.nanoTime() - startNanos;
+			long allocated = allocatedBytes();
+			long allocatedDelta = (startAllocated < 0 || allocated < 0) ? -1 : allocated - startAllocated;
+			model.fireCalculationEvent(new CalculationEvent(this, wallNanos, allocatedDelta));
+		}
+	}
+
+	/**
+	 * Returns bytes allocated so far by the current thread, or -1 if not supported by the JVM.
+	 */
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()){
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
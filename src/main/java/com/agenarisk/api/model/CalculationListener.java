@@ -0,0 +1,22 @@
+package com.agenarisk.api.model;
+
+/**
+ * CalculationListener receives {@link CalculationEvent}s with timings of calculation phases.
+ * <br>
+ * Listeners can be registered with a single Model via {@link Model#addCalculationListener(CalculationListener)}, or for all Models by listing the implementing class in
+ * {@code META-INF/services/com.agenarisk.api.model.CalculationListener}, from where it is picked up with {@link java.util.ServiceLoader}.
+ * <br>
+ * Listeners are called on the thread performing the work and should return quickly. Exceptions thrown by listeners are logged and otherwise ignored.
+ *
+ * @author Eugene Dementiev
+ */
+@FunctionalInterface
+public interface CalculationListener {
+
+	/**
+	 * Called once a phase of work on a Model has finished, successfully or not.
+	 *
+	 * @param event the event describing the phase
+	 */
+	void onEvent(CalculationEvent event);
+}
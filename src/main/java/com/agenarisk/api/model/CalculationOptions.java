@@ -0,0 +1,451 @@
+package com.agenarisk.api.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import uk.co.agena.minerva.util.Logger;
+import uk.co.agena.minerva.util.model.Progressable;
+
+/**
+ * CalculationOptions configure a single call to {@link Model#calculate(java.util.Collection, java.util.Collection, CalculationOptions)}: calculation flags, engine context, a deadline, a cancellation token and a progress listener.
+ * <br>
+ * While a calculation with a deadline, token or listener runs, a watchdog polls the Core's propagation algorithm through its {@link Progressable} interface, the same way progress of other long-running tasks is reported. It passes progress to the listener and terminates the propagation once the deadline passes or the token is cancelled, repeating the termination request until the calculation returns.
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationOptions {
+
+	/**
+	 * Token that can be cancelled from any thread to stop calculations it was passed to
+	 */
+	public static class CancellationToken {
+
+		private volatile boolean cancelled = false;
+
+		/**
+		 * Requests cancellation of calculations using this token.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * Returns whether cancellation was requested.
+		 *
+		 * @return true if cancelled
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Snapshot of calculation progress
+	 */
+	public static class Progress {
+
+		private final int current;
+		private final int length;
+		private final String message;
+		private final Duration elapsed;
+
+		private Progress(int current, int length, String message, Duration elapsed) {
+			this.current = current;
+			this.length = length;
+			this.message = message;
+			this.elapsed = elapsed;
+		}
+
+		/**
+		 * Returns the current progress as reported by the Core, out of {@link #getLength()}.
+		 *
+		 * @return current progress
+		 */
+		public int getCurrent() {
+			return current;
+		}
+
+		/**
+		 * Returns the length of the task as reported by the Core.
+		 *
+		 * @return task length
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns the progress message reported by the Core, which includes networks calculated so far and the current dynamic discretisation iteration.
+		 *
+		 * @return progress message, may be empty
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Returns the time since the calculation started.
+		 *
+		 * @return elapsed time
+		 */
+		public Duration getElapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * Returns progress as a share of the task length.
+		 *
+		 * @return progress between 0 and 1, or 0 if the length is not known yet
+		 */
+		public double getFraction() {
+			return length <= 0 ? 0 : Math.min(1, Math.max(0, (double) current / length));
+		}
+
+		@Override
+		public String toString() {
+			return current + "/" + length + " " + message;
+		}
+	}
+
+	/**
+	 * Receives calculation progress.
+	 * <br>
+	 * Called from a listener thread rather than the watchdog, so a slow listener does not delay deadlines or cancellation of any calculation.
+	 * <br>
+	 * Calls for the same calculation are never concurrent; progress reported while the listener is busy is coalesced into the latest snapshot.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+
+		/**
+		 * Called whenever progress reported by the Core changes.
+		 *
+		 * @param progress progress snapshot
+		 */
+		void onProgress(Progress progress);
+	}
+
+	/**
+	 * Default interval between watchdog polls
+	 */
+	public static final long DEFAULT_POLL_INTERVAL_MS = 100;
+
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "CalculationWatchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Runs progress listener callbacks, so that they never block the watchdog
+	 */
+	private static final ExecutorService LISTENERS = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "CalculationProgressListener");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private Model.CalculationFlag[] flags = new Model.CalculationFlag[0];
+	private CalculationContext context = CalculationContext.headless();
+	private Instant deadline = null;
+	private CancellationToken token = null;
+	private ProgressListener listener = null;
+	private long pollInterval = DEFAULT_POLL_INTERVAL_MS;
+
+	/**
+	 * Creates options with no flags, a headless context, no deadline, no cancellation token and no progress listener.
+	 */
+	public CalculationOptions() {
+	}
+
+	/**
+	 * Sets calculation flags.
+	 *
+	 * @param flags calculation flags
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withFlags(Model.CalculationFlag... flags) {
+		this.flags = flags == null ? new Model.CalculationFlag[0] : flags.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the context with engine switches to apply for the calculation.
+	 *
+	 * @param context calculation context, null for a headless context
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withContext(CalculationContext context) {
+		this.context = context == null ? CalculationContext.headless() : context;
+		return this;
+	}
+
+	/**
+	 * Sets the time by which the calculation must finish.
+	 *
+	 * @param deadline deadline or null for none
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withDeadline(Instant deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
+	/**
+	 * Sets the deadline to the provided time from now.
+	 *
+	 * @param timeout time allowed for the calculation
+	 * @param unit unit of timeout
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withTimeout(long timeout, TimeUnit unit) {
+		return withDeadline(Instant.now().plusNanos(unit.toNanos(timeout)));
+	}
+
+	/**
+	 * Sets the token through which the calculation can be cancelled.
+	 *
+	 * @param token cancellation token or null for none
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withCancellationToken(CancellationToken token) {
+		this.token = token;
+		return this;
+	}
+
+	/**
+	 * Sets the listener receiving calculation progress.
+	 *
+	 * @param listener progress listener or null for none
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withProgressListener(ProgressListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Sets the interval between watchdog polls of progress, deadline and cancellation.
+	 *
+	 * @param interval poll interval
+	 * @param unit unit of interval
+	 *
+	 * @return these options
+	 */
+	public CalculationOptions withPollInterval(long interval, TimeUnit unit) {
+		this.pollInterval = Math.max(1, unit.toMillis(interval));
+		return this;
+	}
+
+	/**
+	 * Returns calculation flags.
+	 *
+	 * @return copy of calculation flags
+	 */
+	public Model.CalculationFlag[] getFlags() {
+		return flags.clone();
+	}
+
+	/**
+	 * Returns the context with engine switches to apply for the calculation.
+	 *
+	 * @return calculation context
+	 */
+	public CalculationContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Returns the time by which the calculation must finish.
+	 *
+	 * @return deadline or null if none
+	 */
+	public Instant getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Returns the token through which the calculation can be cancelled.
+	 *
+	 * @return cancellation token or null if none
+	 */
+	public CancellationToken getCancellationToken() {
+		return token;
+	}
+
+	/**
+	 * Returns the listener receiving calculation progress.
+	 *
+	 * @return progress listener or null if none
+	 */
+	public ProgressListener getProgressListener() {
+		return listener;
+	}
+
+	/**
+	 * Returns whether the deadline has passed.
+	 *
+	 * @return true if there is a deadline and it has passed
+	 */
+	protected boolean isTimedOut() {
+		return deadline != null && !Instant.now().isBefore(deadline);
+	}
+
+	/**
+	 * Returns whether the cancellation token was cancelled.
+	 *
+	 * @return true if there is a token and it was cancelled
+	 */
+	protected boolean isCancelled() {
+		return token != null && token.isCancelled();
+	}
+
+	/**
+	 * Starts watching the propagation of the provided logic model, if there is anything to watch for.
+	 *
+	 * @param logicModel logic model about to propagate
+	 *
+	 * @return watch to close once propagation returns
+	 */
+	protected Watch watch(uk.co.agena.minerva.model.Model logicModel) {
+		return new Watch(logicModel);
+	}
+
+	/**
+	 * Polls a running propagation for progress, deadline and cancellation
+	 */
+	protected class Watch implements AutoCloseable {
+
+		private final uk.co.agena.minerva.model.Model logicModel;
+		private final long started = System.nanoTime();
+		private final ScheduledFuture<?> future;
+
+		private volatile boolean stopped = false;
+		private volatile boolean timedOut = false;
+		private boolean closed = false;
+		private Progressable terminated = null;
+
+		/**
+		 * Latest progress not yet passed to the listener
+		 */
+		private final AtomicReference<Progress> pendingProgress = new AtomicReference<>();
+		private final Object listenerLock = new Object();
+
+		private int lastCurrent = -1;
+		private int lastLength = -1;
+		private String lastMessage = null;
+
+		private Watch(uk.co.agena.minerva.model.Model logicModel) {
+			this.logicModel = logicModel;
+			if (deadline == null && token == null && listener == null){
+				this.future = null;
+			}
+			else {
+				this.future = WATCHDOG.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		/**
+		 * Returns whether the propagation was terminated because of the deadline or cancellation.
+		 *
+		 * @return true if terminated
+		 */
+		protected boolean isStopped() {
+			return stopped;
+		}
+
+		/**
+		 * Returns whether the propagation was terminated because of the deadline.
+		 *
+		 * @return true if timed out
+		 */
+		protected boolean isTimedOut() {
+			return timedOut;
+		}
+
+		private void poll() {
+			try {
+				Progressable propagation = logicModel.getPropagationAlgorithm();
+
+				if (stopped || CalculationOptions.this.isTimedOut() || isCancelled()){
+					synchronized (this){
+						if (closed){
+							return;
+						}
+						if (!stopped){
+							timedOut = !isCancelled();
+							stopped = true;
+						}
+						if (propagation != null){
+							// Keep flagging on every poll until calculate returns, propagation may not have started yet or may reset the flag when it starts
+							propagation.terminateProgressableTask();
+							terminated = propagation;
+						}
+					}
+				}
+
+				if (listener != null && propagation != null){
+					int current = propagation.getCurrentProgress();
+					int length = propagation.getLengthOfProgressableTask();
+					String message = Objects.toString(propagation.getProgressMessage(), "");
+					if (current != lastCurrent || length != lastLength || !message.equals(lastMessage)){
+						lastCurrent = current;
+						lastLength = length;
+						lastMessage = message;
+						if (pendingProgress.getAndSet(new Progress(current, length, message, Duration.ofNanos(System.nanoTime() - started))) == null){
+							LISTENERS.execute(this::notifyListener);
+						}
+					}
+				}
+			}
+			catch (RuntimeException ex){
+				// Progress getters race with propagation's own bookkeeping, keep polling
+				Logger.logIfDebug("Calculation watchdog poll failed: " + ex.getMessage());
+			}
+		}
+
+		/**
+		 * Passes the latest progress to the listener, one call at a time.
+		 */
+		private void notifyListener() {
+			synchronized (listenerLock){
+				Progress progress = pendingProgress.getAndSet(null);
+				if (progress == null){
+					return;
+				}
+				try {
+					listener.onProgress(progress);
+				}
+				catch (RuntimeException ex){
+					Logger.logIfDebug("Calculation progress listener failed: " + ex.getMessage());
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if (future != null){
+				future.cancel(false);
+			}
+			synchronized (this){
+				closed = true;
+				if (terminated != null){
+					// Do not let the termination request leak into the next calculation
+					terminated.resetProgressableTask();
+				}
+			}
+		}
+	}
+}
@@ -73,13 +73,13 @@ public class CalculationResult implements Storable {
 	 * 
 	 * @param dataSet DataSet to which the CalculationResult belongs to
 	 * @param node the CalculationResult's Node
+	 * @param scenarioIndex index of the DataSet's logic scenario
 	 */
-	private CalculationResult(DataSet dataSet, Node node) throws DataSetException{
+	private CalculationResult(DataSet dataSet, Node node, int scenarioIndex) throws DataSetException{
 		this.dataset = dataSet;
 		this.node = node;
 		this.continuous = node.getLogicNode() instanceof IntegerIntervalEN || node.getLogicNode() instanceof ContinuousIntervalEN;
 		
-		int scenarioIndex = dataSet.getDataSetIndex();
 		ExtendedBN ebn = node.getNetwork().getLogicNetwork();
 		ExtendedNode en = node.getLogicNode();
 		
@@ -97,6 +97,11 @@ public class CalculationResult implements Storable {
 		
 		this.logicResult = mdi;
 		
+		if (mdi.getDataset() == null){
+			// Cleared result without data points
+			return;
+		}
+		
 		for(DataPoint dp: (List<DataPoint>)mdi.getDataset().getDataPoints()){
 			double value = dp.getValue();
 			String label = dp.getLabel();
@@ -254,8 +259,27 @@ public class CalculationResult implements Storable {
 	 * @return immutable CalculationResult or null if a result is not available
 	 */
 	protected static CalculationResult getCalculationResult(DataSet dataset, Node node){
+		return getCalculationResult(dataset, node, dataset.getDataSetIndex());
+	}
+	
+	/**
+	 * Gets a CalculationResult that reflects the status of the underlying logic structure at resolution time, for an already resolved DataSet index.
+	 * <br>
+	 * Use when retrieving results for many Nodes of the same DataSet.
+	 * 
+	 * @param dataset DataSet to which the CalculationResult belongs to
+	 * @param node Node that the CalculationResult is associated with
+	 * @param scenarioIndex index of the DataSet's logic scenario as returned by DataSet.getDataSetIndex()
+	 * 
+	 * @return immutable CalculationResult or null if a result is not available
+	 */
+	protected static CalculationResult getCalculationResult(DataSet dataset, Node node, int scenarioIndex){
+		if (dataset.isResultReleased(node)){
+			// Released by the ResultRetention policy, as opposed to cleared results which are empty
+			return null;
+		}
 		try {
-			return new CalculationResult(dataset, node);
+			return new CalculationResult(dataset, node, scenarioIndex);
 		}
 		catch (DataSetException ex){
 			//Logger.printThrowableIfDebug(ex);
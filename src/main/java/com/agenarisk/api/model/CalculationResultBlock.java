@@ -0,0 +1,396 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import uk.co.agena.minerva.model.MarginalDataItem;
+import uk.co.agena.minerva.model.MarginalDataItemList;
+import uk.co.agena.minerva.model.MarginalDataStore;
+import uk.co.agena.minerva.util.model.DataPoint;
+import uk.co.agena.minerva.util.model.IntervalDataPoint;
+
+/**
+ * CalculationResultBlock holds calculation results of a single Node for many DataSets in primitive arrays.
+ * <br>
+ * Result values are laid out as DataSet × state: the value of state <code>s</code> in DataSet <code>d</code> is at <code>d * getWidth() + s</code>.
+ * <br>
+ * Summary statistics have one value per DataSet.
+ * <br>
+ * Where a DataSet has fewer states than the block width (e.g. dynamically discretised intervals) or no result at all, the remaining cells are NaN.
+ * <br>
+ * Blocks are read directly from the logic results without creating CalculationResult objects, and are not maintained after retrieval.
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationResultBlock {
+
+	/**
+	 * The Node of this block
+	 */
+	private final Node node;
+
+	/**
+	 * Number of state cells per DataSet
+	 */
+	private final int width;
+
+	/**
+	 * State labels of the first DataSet with a result, or null for interval results
+	 */
+	private final List<String> labels;
+
+	/**
+	 * Number of states each DataSet actually has, 0 if no result
+	 */
+	private final int[] sizes;
+
+	private final double[] values;
+
+	/**
+	 * Interval bounds in the same layout as values, or null for non-interval results
+	 */
+	private final double[] lowerBounds, upperBounds;
+
+	private final double[] mean, variance, standardDeviation, median, lowerPercentile, upperPercentile;
+
+	private CalculationResultBlock(Node node, MarginalDataItem[] items) {
+		this.node = node;
+		int rows = items.length;
+
+		// First pass to find the width, labels and whether results are intervals
+		int maxSize = 0;
+		List<String> firstLabels = null;
+		boolean intervals = false;
+		for(MarginalDataItem mdi: items){
+			if (mdi == null){
+				continue;
+			}
+			List<DataPoint> dataPoints = (List<DataPoint>) mdi.getDataset().getDataPoints();
+			maxSize = Math.max(maxSize, dataPoints.size());
+			if (firstLabels == null && !dataPoints.isEmpty()){
+				intervals = dataPoints.get(0) instanceof IntervalDataPoint;
+				firstLabels = new ArrayList<>(dataPoints.size());
+				for(DataPoint dp: dataPoints){
+					firstLabels.add(dp.getLabel());
+				}
+			}
+		}
+
+		this.width = maxSize;
+		this.labels = (intervals || firstLabels == null) ? null : Collections.unmodifiableList(firstLabels);
+		this.sizes = new int[rows];
+		this.values = nan(rows * width);
+		this.lowerBounds = intervals ? nan(rows * width) : null;
+		this.upperBounds = intervals ? nan(rows * width) : null;
+		this.mean = nan(rows);
+		this.variance = nan(rows);
+		this.standardDeviation = nan(rows);
+		this.median = nan(rows);
+		this.lowerPercentile = nan(rows);
+		this.upperPercentile = nan(rows);
+
+		for(int d = 0; d < rows; d++){
+			MarginalDataItem mdi = items[d];
+			if (mdi == null){
+				continue;
+			}
+
+			List<DataPoint> dataPoints = (List<DataPoint>) mdi.getDataset().getDataPoints();
+			sizes[d] = dataPoints.size();
+			int offset = d * width;
+			for(int s = 0; s < dataPoints.size(); s++){
+				DataPoint dp = dataPoints.get(s);
+				values[offset + s] = dp.getValue();
+				if (intervals && dp instanceof IntervalDataPoint){
+					IntervalDataPoint idp = (IntervalDataPoint) dp;
+					lowerBounds[offset + s] = idp.getIntervalLowerBound();
+					upperBounds[offset + s] = idp.getIntervalUpperBound();
+				}
+			}
+
+			mean[d] = mdi.getMeanValue();
+			variance[d] = mdi.getVarianceValue();
+			standardDeviation[d] = mdi.getStandardDeviationValue();
+			median[d] = mdi.getMedianValue();
+			lowerPercentile[d] = mdi.getLowerPercentile();
+			upperPercentile[d] = mdi.getUpperPercentile();
+		}
+	}
+
+	/**
+	 * Reads results of the given Nodes for the given DataSets into blocks.
+	 * <br>
+	 * DataSets are rows of every block, in the order provided.
+	 *
+	 * @param dataSets DataSets to read results for, all from the same Model
+	 * @param nodes Nodes to read results for, from the same Model as the DataSets
+	 *
+	 * @return map of Nodes to their result blocks, in the order of Nodes provided
+	 *
+	 * @throws AgenaRiskRuntimeException if DataSets and Nodes do not belong to the same Model
+	 */
+	protected static Map<Node, CalculationResultBlock> getCalculationResultBlocks(List<DataSet> dataSets, Collection<Node> nodes) {
+		Map<Node, CalculationResultBlock> blocks = new LinkedHashMap<>();
+		if (dataSets.isEmpty() || nodes.isEmpty()){
+			return blocks;
+		}
+
+		Model model = dataSets.get(0).getModel();
+		for(DataSet dataSet: dataSets){
+			if (!Objects.equals(model, dataSet.getModel())){
+				throw new AgenaRiskRuntimeException("DataSet `" + dataSet.getId() + "` belongs to a different Model");
+			}
+		}
+		for(Node node: nodes){
+			if (!Objects.equals(model, node.getNetwork().getModel())){
+				throw new AgenaRiskRuntimeException("Node " + node.toStringExtra() + " belongs to a different Model");
+			}
+		}
+
+		CalculationEvent.Builder event = CalculationEvent.start(model, CalculationEvent.Phase.RESULT_MATERIALISATION);
+		try {
+			int[] scenarioIndexes = new int[dataSets.size()];
+			for(int d = 0; d < scenarioIndexes.length; d++){
+				scenarioIndexes[d] = dataSets.get(d).getDataSetIndex();
+			}
+
+			MarginalDataStore mds = model.getLogicModel().getMarginalDataStore();
+
+			for(Node node: nodes){
+				MarginalDataItem[] items = new MarginalDataItem[scenarioIndexes.length];
+				MarginalDataItemList mdil = null;
+				try {
+					mdil = mds.getMarginalDataItemListForNode(node.getNetwork().getLogicNetwork(), node.getLogicNode());
+				}
+				catch (Exception ex){
+					// No results for this Node
+				}
+
+				if (mdil != null){
+					for(int d = 0; d < scenarioIndexes.length; d++){
+						items[d] = getItem(mdil, scenarioIndexes[d]);
+					}
+				}
+
+				blocks.put(node, new CalculationResultBlock(node, items));
+			}
+
+			return blocks;
+		}
+		finally {
+			if (event != null){
+				List<Network> networks = new ArrayList<>();
+				nodes.stream().map(Node::getNetwork).distinct().forEach(networks::add);
+				event.networks(networks)
+						.dataSets(dataSets)
+						.successful(blocks.size() == nodes.size())
+						.detail("results", blocks.size() * dataSets.size())
+						.fire();
+			}
+		}
+	}
+
+	/**
+	 * Returns the logic result at the given scenario index if it has data.
+	 */
+	private static MarginalDataItem getItem(MarginalDataItemList mdil, int scenarioIndex){
+		if (scenarioIndex < 0 || scenarioIndex >= mdil.getMarginalDataItems().size()){
+			return null;
+		}
+		MarginalDataItem mdi = mdil.getMarginalDataItemAtIndex(scenarioIndex);
+		if (mdi == null || mdi.getDataset() == null){
+			return null;
+		}
+		return mdi;
+	}
+
+	private static double[] nan(int length){
+		double[] array = new double[length];
+		Arrays.fill(array, Double.NaN);
+		return array;
+	}
+
+	/**
+	 * Returns the Node of this block.
+	 *
+	 * @return the Node
+	 */
+	public Node getNode() {
+		return node;
+	}
+
+	/**
+	 * Returns the number of DataSets (rows) in this block.
+	 *
+	 * @return number of DataSets
+	 */
+	public int getDataSetCount() {
+		return sizes.length;
+	}
+
+	/**
+	 * Returns the number of state cells per DataSet, which is the largest number of states among the DataSets.
+	 *
+	 * @return number of state cells per DataSet
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Checks whether the DataSet at the given row has a result.
+	 *
+	 * @param dataSet row index of the DataSet
+	 *
+	 * @return true if a result was available
+	 */
+	public boolean hasResult(int dataSet) {
+		return sizes[dataSet] > 0;
+	}
+
+	/**
+	 * Returns the number of states the DataSet at the given row has a value for.
+	 *
+	 * @param dataSet row index of the DataSet
+	 *
+	 * @return number of states, or 0 if there is no result
+	 */
+	public int getSize(int dataSet) {
+		return sizes[dataSet];
+	}
+
+	/**
+	 * Returns state labels, shared by all DataSets for a non-interval result.
+	 *
+	 * @return state labels, or null for interval results or when no DataSet has a result
+	 */
+	public List<String> getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Checks whether the result values are intervals with bounds.
+	 *
+	 * @return true if interval bounds are available
+	 */
+	public boolean isIntervals() {
+		return lowerBounds != null;
+	}
+
+	/**
+	 * Returns the value of a state in a DataSet.
+	 *
+	 * @param dataSet row index of the DataSet
+	 * @param state index of the state
+	 *
+	 * @return the value, or NaN if there is no such state in the result
+	 */
+	public double getValue(int dataSet, int state) {
+		return values[dataSet * width + state];
+	}
+
+	/**
+	 * Returns the result values of all DataSets, laid out as DataSet × state.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return the result values
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Returns the lower interval bounds in the same layout as values.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return the lower bounds, or null for non-interval results
+	 */
+	public double[] getLowerBounds() {
+		return lowerBounds;
+	}
+
+	/**
+	 * Returns the upper interval bounds in the same layout as values.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return the upper bounds, or null for non-interval results
+	 */
+	public double[] getUpperBounds() {
+		return upperBounds;
+	}
+
+	/**
+	 * Returns the mean of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return mean values
+	 */
+	public double[] getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns the variance of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return variance values
+	 */
+	public double[] getVariance() {
+		return variance;
+	}
+
+	/**
+	 * Returns the standard deviation of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return standard deviation values
+	 */
+	public double[] getStandardDeviation() {
+		return standardDeviation;
+	}
+
+	/**
+	 * Returns the median of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return median values
+	 */
+	public double[] getMedian() {
+		return median;
+	}
+
+	/**
+	 * Returns the lower percentile of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return lower percentile values
+	 */
+	public double[] getLowerPercentile() {
+		return lowerPercentile;
+	}
+
+	/**
+	 * Returns the upper percentile of each DataSet.
+	 * <br>
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return upper percentile values
+	 */
+	public double[] getUpperPercentile() {
+		return upperPercentile;
+	}
+}
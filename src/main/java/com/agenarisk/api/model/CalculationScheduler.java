@@ -0,0 +1,437 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.CalculationException;
+import com.agenarisk.api.util.JSONUtils;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.json.JSONObject;
+import uk.co.agena.minerva.util.Logger;
+
+/**
+ * CalculationScheduler admits calculations from many submitters only while their combined estimated memory fits in a heap budget, and queues the rest in order of arrival.
+ * <br>
+ * The memory a calculation needs is estimated with {@link Model#inspectJunctionTrees(int)} once per model structure and cached, so repeated calculations of the same or identical models only pay for a structural hash.
+ * <br>
+ * The structure covers what determines junction tree size: Networks, Nodes and their parents, Node types, number of states and whether Nodes are simulated. Names, meta, graphics and table values are not part of it. The structural hash of a Model is computed once and reused until its Nodes, states or Links change through the API; changes made directly in the Core are not noticed.
+ * <br>
+ * A calculation whose estimate alone exceeds the budget, or whose estimate could not be established, is admitted only when nothing else is running.
+ * <br>
+ * All methods are thread-safe.
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationScheduler {
+
+	/**
+	 * A reservation of memory for an admitted calculation, released on close
+	 */
+	public class Permit implements AutoCloseable {
+
+		private final long bytes;
+		private boolean closed = false;
+
+		private Permit(long bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Returns the number of bytes reserved by this Permit.
+		 *
+		 * @return reserved bytes
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Releases the reservation and admits queued calculations that now fit.
+		 */
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				if (closed){
+					return;
+				}
+				closed = true;
+				reserved -= bytes;
+				running--;
+				changed.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Number of states charged to each simulation node when estimating
+	 */
+	public static final int DEFAULT_SIM_NODE_STATES = 20;
+
+	private static final int ESTIMATE_CACHE_CAPACITY = 256;
+
+	private final long budget;
+	private final int simNodeStates;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	/**
+	 * Submitters waiting for admission, in order of arrival
+	 */
+	private final Deque<Object> queue = new ArrayDeque<>();
+
+	/**
+	 * Structural key to estimated bytes, -1 if the estimate could not be established
+	 */
+	private final Map<String, Long> estimates = new LinkedHashMap<String, Long>(16, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			return size() > ESTIMATE_CACHE_CAPACITY;
+		}
+	};
+
+	/**
+	 * Structural key computed for a Model and the Network versions it was computed at
+	 */
+	private static class StructureKey {
+		private final List<Integer> version;
+		private final String key;
+
+		private StructureKey(List<Integer> version, String key) {
+			this.version = version;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Last structural key of each Model seen, weakly referenced so that Models can still be collected
+	 */
+	private final Map<Model, StructureKey> structureKeys = new WeakHashMap<>();
+
+	private long reserved = 0;
+	private int running = 0;
+
+	private long admissions = 0;
+	private long waits = 0;
+	private long timeouts = 0;
+	private long estimateHits = 0;
+	private long estimateMisses = 0;
+
+	/**
+	 * Creates a scheduler with the provided heap budget, charging {@link #DEFAULT_SIM_NODE_STATES} states to each simulation node.
+	 *
+	 * @param budget combined estimated bytes of calculations allowed to run at the same time
+	 */
+	public CalculationScheduler(long budget) {
+		this(budget, DEFAULT_SIM_NODE_STATES);
+	}
+
+	/**
+	 * Creates a scheduler with the provided heap budget.
+	 *
+	 * @param budget combined estimated bytes of calculations allowed to run at the same time
+	 * @param simNodeStates states to charge each simulation node when estimating
+	 */
+	public CalculationScheduler(long budget, int simNodeStates) {
+		if (budget <= 0){
+			throw new IllegalArgumentException("Budget must be positive");
+		}
+		this.budget = budget;
+		this.simNodeStates = simNodeStates;
+	}
+
+	/**
+	 * Creates a scheduler with a budget of the provided share of the maximum heap size.
+	 *
+	 * @param share share of maximum heap size, between 0 and 1
+	 *
+	 * @return new scheduler
+	 */
+	public static CalculationScheduler forHeapShare(double share) {
+		if (share <= 0 || share > 1){
+			throw new IllegalArgumentException("Heap share must be within (0, 1]");
+		}
+		return new CalculationScheduler((long) (Runtime.getRuntime().maxMemory() * share));
+	}
+
+	/**
+	 * Waits for admission and calculates the provided Networks and DataSets of the Model.
+	 *
+	 * @param model Model to calculate
+	 * @param networks Networks to calculate, can be null for all Networks
+	 * @param dataSets DataSets to calculate, can be null for all DataSets
+	 * @param flags Calculation flags
+	 *
+	 * @throws CalculationException if calculation failed
+	 * @throws InterruptedException if interrupted while waiting for admission
+	 *
+	 * @see Model#calculate(Collection, Collection, Model.CalculationFlag...)
+	 */
+	public void calculate(Model model, Collection<Network> networks, Collection<DataSet> dataSets, Model.CalculationFlag... flags) throws CalculationException, InterruptedException {
+		try (Permit permit = admit(model)){
+			model.calculate(networks, dataSets, flags);
+		}
+	}
+
+	/**
+	 * Waits for admission and calculates all Networks and DataSets of the Model.
+	 *
+	 * @param model Model to calculate
+	 *
+	 * @throws CalculationException if calculation failed
+	 * @throws InterruptedException if interrupted while waiting for admission
+	 */
+	public void calculate(Model model) throws CalculationException, InterruptedException {
+		calculate(model, null, null);
+	}
+
+	/**
+	 * Waits until the estimated memory of the Model's calculation fits in the budget and reserves it.
+	 * <br>
+	 * The returned Permit must be closed once the calculation is done.
+	 *
+	 * @param model Model to be calculated
+	 *
+	 * @return Permit holding the reservation
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Permit admit(Model model) throws InterruptedException {
+		return admit(model, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Waits up to the provided time until the estimated memory of the Model's calculation fits in the budget and reserves it.
+	 * <br>
+	 * The returned Permit must be closed once the calculation is done.
+	 *
+	 * @param model Model to be calculated
+	 * @param timeout maximum time to wait
+	 * @param unit unit of timeout
+	 *
+	 * @return Permit holding the reservation, or null if timed out
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Permit admit(Model model, long timeout, TimeUnit unit) throws InterruptedException {
+		long estimate = estimate(model);
+		long remaining = unit.toNanos(timeout);
+		Object ticket = new Object();
+
+		lock.lockInterruptibly();
+		try {
+			queue.addLast(ticket);
+			boolean waited = false;
+			try {
+				while(!(queue.peekFirst() == ticket && fits(estimate))){
+					if (remaining <= 0){
+						timeouts++;
+						return null;
+					}
+					if (!waited){
+						waits++;
+						waited = true;
+					}
+					remaining = changed.awaitNanos(remaining);
+				}
+			}
+			finally {
+				queue.remove(ticket);
+				// Let the next in line check whether it fits now
+				changed.signalAll();
+			}
+
+			long bytes = estimate < 0 ? budget : estimate;
+			reserved += bytes;
+			running++;
+			admissions++;
+			return new Permit(bytes);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the estimated memory in bytes needed to calculate the Model, establishing and caching it for the Model's structure if not known yet.
+	 *
+	 * @param model Model to estimate
+	 *
+	 * @return estimated bytes, or -1 if the estimate could not be established
+	 */
+	public long estimate(Model model) {
+		String key;
+		try {
+			key = structureKey(model) + "|" + simNodeStates;
+		}
+		catch (RuntimeException ex){
+			Logger.logIfDebug("Failed to compute structural key for scheduling: " + ex.getMessage());
+			return -1;
+		}
+
+		lock.lock();
+		try {
+			Long cached = estimates.get(key);
+			if (cached != null){
+				estimateHits++;
+				return cached;
+			}
+			estimateMisses++;
+		}
+		finally {
+			lock.unlock();
+		}
+
+		// Estimate outside of the lock, concurrent submitters of the same new structure may estimate it more than once
+		long estimate;
+		try {
+			JSONObject report = model.inspectJunctionTrees(simNodeStates);
+			estimate = report.getBoolean("infeasible") ? Long.MAX_VALUE : Math.max(0, report.getLong("estimatedBytes"));
+		}
+		catch (RuntimeException ex){
+			Logger.logIfDebug("Failed to estimate calculation memory: " + ex.getMessage());
+			estimate = -1;
+		}
+
+		lock.lock();
+		try {
+			estimates.put(key, estimate);
+		}
+		finally {
+			lock.unlock();
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns the structural key of the Model, reusing the last one computed if no Network changed since.
+	 */
+	private String structureKey(Model model){
+		List<Integer> version = new ArrayList<>();
+		for(Network network: model.getNetworkList()){
+			version.add(System.identityHashCode(network));
+			version.add(network.getGraphVersion());
+		}
+
+		lock.lock();
+		try {
+			StructureKey known = structureKeys.get(model);
+			if (known != null && known.version.equals(version)){
+				return known.key;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for(Network network: model.getNetworkList()){
+			sb.append(network.getId()).append('{');
+			for(Node node: network.getNodeList()){
+				sb.append(node.getId()).append(':').append(node.getType()).append(':');
+				sb.append(node.isSimulated() ? "sim" : String.valueOf(node.getStates().size())).append('<');
+				for(Link link: node.getLinksIn()){
+					sb.append(link.getFromNode().getNetwork().getId()).append('.').append(link.getFromNode().getId()).append(',');
+				}
+				sb.append(';');
+			}
+			sb.append('}');
+		}
+		String key = JSONUtils.sha256(sb.toString());
+
+		lock.lock();
+		try {
+			structureKeys.put(model, new StructureKey(version, key));
+		}
+		finally {
+			lock.unlock();
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the budget in bytes.
+	 *
+	 * @return budget
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns the number of bytes currently reserved by running calculations.
+	 *
+	 * @return reserved bytes
+	 */
+	public long getReserved() {
+		lock.lock();
+		try {
+			return reserved;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of calculations waiting for admission.
+	 *
+	 * @return queue length
+	 */
+	public int getQueued() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns scheduler state and counters as JSON: budget, reserved, running, queued, admissions, waits, timeouts, estimateHits and estimateMisses.
+	 *
+	 * @return scheduler statistics
+	 */
+	public JSONObject getStatistics() {
+		lock.lock();
+		try {
+			JSONObject json = new JSONObject();
+			json.put("budget", budget);
+			json.put("reserved", reserved);
+			json.put("running", running);
+			json.put("queued", queue.size());
+			json.put("admissions", admissions);
+			json.put("waits", waits);
+			json.put("timeouts", timeouts);
+			json.put("estimateHits", estimateHits);
+			json.put("estimateMisses", estimateMisses);
+			return json;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether a calculation with the provided estimate can be admitted now. Must be called while holding the lock.
+	 */
+	private boolean fits(long estimate){
+		if (running == 0){
+			// Always let one calculation through, so that calculations larger than the budget fail or succeed on their own instead of waiting forever
+			return true;
+		}
+		return estimate >= 0 && estimate <= budget - reserved;
+	}
+}
@@ -0,0 +1,220 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.io.JSONAdapter;
+import com.agenarisk.api.util.JSONUtils;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.json.JSONArray;
+import uk.co.agena.minerva.model.extendedbn.ExtendedBNException;
+import uk.co.agena.minerva.util.Logger;
+
+/**
+ * Keeps track of which Networks in which DataSets changed since they were last successfully calculated, for {@link Model.CalculationFlag#SKIP_UNCHANGED}.
+ * <br>
+ * Networks and DataSets can be changed through the API as well as directly in the Core, so instead of intercepting every modification, the tracker records a fingerprint of every Network and DataSet pair after it is successfully calculated.
+ * <br>
+ * The fingerprint covers a hash of the Network's calculation inputs (Nodes, states, Links, expressions, manual tables, variables and settings, but not names, meta, graphics or generated tables, which are never encoded), computed once per call and shared by all DataSets, the DataSet's observations on its Nodes, Model settings, Nodes monitored by the result retention policy, calculation flags and the fingerprints of parent Networks, so a change in a Network also makes all Networks downstream of it through CrossNetworkLinks dirty.
+ *
+ * @author Eugene Dementiev
+ */
+class CalculationTracker {
+
+	private final Model model;
+
+	/**
+	 * DataSet → Network → fingerprint at last successful calculation
+	 */
+	private final Map<DataSet, Map<Network, String>> calculated = new IdentityHashMap<>();
+
+	CalculationTracker(Model model) {
+		this.model = model;
+	}
+
+	/**
+	 * Selects Networks and DataSets that need to be recalculated.
+	 *
+	 * @param networks candidate Networks
+	 * @param dataSets candidate DataSets
+	 * @param flagsKey calculation flags affecting results
+	 *
+	 * @return entry of dirty Networks and DataSets with at least one dirty Network; both empty if nothing changed
+	 */
+	synchronized Map.Entry<Set<Network>, Set<DataSet>> selectDirty(Collection<Network> networks, Collection<DataSet> dataSets, String flagsKey){
+		Set<Network> dirtyNetworks = new LinkedHashSet<>();
+		Set<DataSet> dirtyDataSets = new LinkedHashSet<>();
+		String settings = settingsKey();
+		Map<Network, String> structures = new IdentityHashMap<>();
+
+		for(DataSet dataSet: dataSets){
+			Map<Network, String> recorded = calculated.getOrDefault(dataSet, new IdentityHashMap<>());
+			Map<Network, String> fingerprints = new IdentityHashMap<>();
+			for(Network network: networks){
+				String fingerprint = fingerprint(network, dataSet, settings + flagsKey, structures, fingerprints);
+				if (fingerprint == null || !Objects.equals(fingerprint, recorded.get(network))){
+					dirtyNetworks.add(network);
+					dirtyDataSets.add(dataSet);
+				}
+			}
+		}
+
+		return new java.util.AbstractMap.SimpleEntry<>(dirtyNetworks, dirtyDataSets);
+	}
+
+	/**
+	 * Forgets the provided Network and DataSet pairs, e.g. before they are calculated.
+	 *
+	 * @param networks Networks to forget
+	 * @param dataSets DataSets to forget
+	 */
+	synchronized void forget(Collection<Network> networks, Collection<DataSet> dataSets){
+		dataSets.forEach(dataSet -> {
+			Map<Network, String> recorded = calculated.get(dataSet);
+			if (recorded != null){
+				networks.forEach(recorded::remove);
+			}
+		});
+	}
+
+	/**
+	 * Forgets all Networks calculated in the provided DataSet.
+	 *
+	 * @param dataSet DataSet to forget
+	 */
+	synchronized void forget(DataSet dataSet){
+		calculated.remove(dataSet);
+	}
+
+	/**
+	 * Forgets everything, so the next calculation is done in full.
+	 */
+	synchronized void clear(){
+		calculated.clear();
+	}
+
+	/**
+	 * Records the provided Network and DataSet pairs as successfully calculated in their current state.
+	 *
+	 * @param networks calculated Networks
+	 * @param dataSets calculated DataSets
+	 * @param flagsKey calculation flags affecting results
+	 */
+	synchronized void record(Collection<Network> networks, Collection<DataSet> dataSets, String flagsKey){
+		String settings = settingsKey();
+		Map<Network, String> structures = new IdentityHashMap<>();
+		for(DataSet dataSet: dataSets){
+			Map<Network, String> recorded = calculated.computeIfAbsent(dataSet, ds -> new IdentityHashMap<>());
+			Map<Network, String> fingerprints = new IdentityHashMap<>();
+			for(Network network: networks){
+				String fingerprint = fingerprint(network, dataSet, settings + flagsKey, structures, fingerprints);
+				if (fingerprint == null){
+					recorded.remove(network);
+				}
+				else {
+					recorded.put(network, fingerprint);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the key of Model settings and the result retention policy.
+	 * <br>
+	 * Monitored Nodes are part of the key because results of other Nodes are released, so a DataSet calculated for one set of monitored Nodes is not clean for another even if the policy object was modified in place.
+	 *
+	 * @return settings key
+	 */
+	private String settingsKey(){
+		StringBuilder sb = new StringBuilder(JSONUtils.toCanonicalString(Settings.toJson(model.getLogicModel())));
+		ResultRetention retention = model.getResultRetention();
+		sb.append(";monitored=");
+		if (retention == null || retention.getMonitoredNodes() == null){
+			sb.append("*");
+		}
+		else {
+			retention.getMonitoredNodes().stream()
+					.map(node -> node.getNetwork().getId() + "/" + node.getId())
+					.sorted()
+					.forEach(id -> sb.append(id).append(','));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Computes the hash of the Network structure, tables and settings once per call, shared by all DataSets.
+	 *
+	 * @param structures hashes computed so far in this call, empty string for Networks that failed to be hashed
+	 *
+	 * @return structure hash or null if it could not be computed
+	 */
+	private static String structureHash(Network network, Map<Network, String> structures){
+		String hash = structures.get(network);
+		if (hash == null){
+			try {
+				hash = JSONUtils.sha256(JSONUtils.toCanonicalString(JSONAdapter.toJSONObject(network.getLogicNetwork(), EnumSet.noneOf(Model.ExportFlag.class))));
+			}
+			catch (ExtendedBNException | RuntimeException ex){
+				Logger.logIfDebug("Failed to fingerprint network " + network.toStringExtra() + ": " + ex.getMessage());
+				hash = "";
+			}
+			structures.put(network, hash);
+		}
+		return hash.isEmpty() ? null : hash;
+	}
+
+	/**
+	 * Computes the fingerprint of the Network in the DataSet, including fingerprints of its parent Networks.
+	 *
+	 * @return fingerprint or null if it could not be computed
+	 */
+	private String fingerprint(Network network, DataSet dataSet, String context, Map<Network, String> structures, Map<Network, String> fingerprints){
+		if (fingerprints.containsKey(network)){
+			return fingerprints.get(network);
+		}
+		// Guard against cycles, a Network in a cycle is never considered clean
+		fingerprints.put(network, null);
+
+		String fingerprint = null;
+		String structure = structureHash(network, structures);
+		if (structure == null){
+			fingerprints.put(network, null);
+			return null;
+		}
+
+		try {
+			StringBuilder sb = new StringBuilder(context);
+			sb.append('\n').append(network.getId());
+			sb.append('\n').append(structure);
+
+			JSONArray jsonObservations = new JSONArray();
+			network.getNodeList().forEach(node -> {
+				dataSet.getObservationsAndVariables(node).forEach(obs -> jsonObservations.put(obs.toJson()));
+			});
+			sb.append('\n').append(JSONUtils.toCanonicalString(jsonObservations));
+
+			boolean parentsKnown = true;
+			for(Network parent: network.getParents()){
+				String parentFingerprint = fingerprint(parent, dataSet, context, structures, fingerprints);
+				if (parentFingerprint == null){
+					parentsKnown = false;
+					break;
+				}
+				sb.append('\n').append(parentFingerprint);
+			}
+
+			if (parentsKnown){
+				fingerprint = JSONUtils.sha256(sb.toString());
+			}
+		}
+		catch (RuntimeException ex){
+			Logger.logIfDebug("Failed to fingerprint network " + network.toStringExtra() + ": " + ex.getMessage());
+		}
+
+		fingerprints.put(network, fingerprint);
+		return fingerprint;
+	}
+}
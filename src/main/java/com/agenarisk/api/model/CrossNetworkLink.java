@@ -4,6 +4,7 @@ import com.agenarisk.api.exception.AgenaRiskRuntimeException;
 import com.agenarisk.api.exception.LinkException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import uk.co.agena.minerva.model.ConstantMessagePassingLink;
 import uk.co.agena.minerva.model.ConstantStateMessagePassingLink;
@@ -154,6 +155,27 @@ public class CrossNetworkLink extends Link implements Storable {
 	}
 	
 	
+	/**
+	 * Creates a copy of this CrossNetworkLink between the provided Nodes, which should be copies of this Link's Nodes in a copy of the Model.
+	 * <br>
+	 * Does not create the underlying logical link, but refers to the copy of this Link's logical link.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param fromNode copy of the source Node
+	 * @param toNode copy of the target Node
+	 * @param logicLinkCopies original logic message passing links mapped to their copies
+	 * 
+	 * @return the CrossNetworkLink copy
+	 */
+	@Override
+	protected CrossNetworkLink copyTo(Node fromNode, Node toNode, Map<MessagePassingLink, MessagePassingLink> logicLinkCopies) {
+		CrossNetworkLink link = new CrossNetworkLink(fromNode, toNode, type, stateToPass, percentile);
+		link.logicLink = logicLinkCopies.get(logicLink);
+		copyGraphicsTo(link);
+		return link;
+	}
+	
 	/**
 	 * This will create a link in the underlying logic.
 	 * <br>
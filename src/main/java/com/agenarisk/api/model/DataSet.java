@@ -10,11 +10,17 @@ import com.agenarisk.api.util.Advisory;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
@@ -33,7 +39,6 @@ import uk.co.agena.minerva.model.extendedbn.ExtendedStateNotFoundException;
 import uk.co.agena.minerva.model.extendedbn.IntegerIntervalEN;
 import uk.co.agena.minerva.model.extendedbn.LabelledEN;
 import uk.co.agena.minerva.model.extendedbn.RankedEN;
-import uk.co.agena.minerva.model.scenario.ObservationNotFoundException;
 import uk.co.agena.minerva.model.scenario.Scenario;
 import uk.co.agena.minerva.model.scenario.ScenarioException;
 import uk.co.agena.minerva.util.Logger;
@@ -67,6 +72,23 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * The corresponding uk.co.agena.minerva.model.scenario.Scenario
 	 */
 	private uk.co.agena.minerva.model.scenario.Scenario logicScenario;
+	
+	/**
+	 * Non-variable logic observations of this DataSet by Node, in the order of logic observations
+	 * <br>
+	 * Built on first use and then kept up to date by the methods of this class that change observations
+	 */
+	private Map<Node, uk.co.agena.minerva.model.scenario.Observation> observationIndex = null;
+	
+	/**
+	 * Logic observations at the time observationIndex was last updated, used to detect changes made to the logic scenario directly
+	 */
+	private List<uk.co.agena.minerva.model.scenario.Observation> observationIndexSource = Collections.emptyList();
+	
+	/**
+	 * Logic nodes which results were released by the ResultRetention policy after the last calculation
+	 */
+	private Set<ExtendedNode> releasedResults = Collections.emptySet();
 
 	/**
 	 * Private constructor for DataSet class.
@@ -100,6 +122,20 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 		return dataset;
 	}
 	
+	/**
+	 * Factory method to create a DataSet for an existing logic scenario of the given Model, without modifying the scenario.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param model Model the logic scenario belongs to
+	 * @param logicScenario the logic scenario
+	 * 
+	 * @return created DataSet
+	 */
+	protected static DataSet createDataSet(Model model, Scenario logicScenario){
+		return new DataSet(model, logicScenario);
+	}
+	
 	/**
 	 * Creates a DataSet for the Model from JSON data.
 	 * <br>
@@ -241,6 +277,8 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 		}
 		
 		this.logicScenario = logicScenario;
+		this.observationIndex = null;
+		getModel().invalidateScenarioIndex();
 	}
 	
 	/**
@@ -265,7 +303,7 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	/**
 	 * Changes the ID of this Network to the provided ID, if the new ID is not already taken.
 	 * <br>
-	 * Will lock IDContainer.class while doing so.
+	 * Will lock the DataSet map of the Model while doing so.
 	 * 
 	 * @param id the new ID
 	 * 
@@ -389,7 +427,9 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 		);
 		observation.setExpressionVariableName(constantName);
 		
+		getObservationIndex();
 		getLogicScenario().addObservation(observation, false);
+		updateObservationIndex(node);
 	}
 	
 	/**
@@ -433,6 +473,8 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 			value = String.valueOf(value);
 		}
 		
+		getObservationIndex();
+		
 		if (en instanceof DiscreteRealEN && value instanceof Integer){
 			value = String.valueOf(Double.valueOf(value+""));
 		}
@@ -467,6 +509,8 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 		else {
 			throw new DataSetException("Unsupported observation type");
 		}
+		
+		updateObservationIndex(node);
 	}
 	
 	/**
@@ -551,12 +595,16 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 			i++;
 		}
 		
+		getObservationIndex();
 		try {
 			getLogicScenario().addSoftEvidenceObservation(netId, nodeId, stateIds, probabilities);
 		}
 		catch(ScenarioException ex){
 			throw new DataSetException("Failed to add soft observation", ex);
 		}
+		finally {
+			updateObservationIndex(node);
+		}
 	}
 	
 	/**
@@ -740,7 +788,9 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	public void clearVariableObservation(Node node, String variableName){
 		VariableObservation varObs = getVariableObservation(node, variableName);
 		if (varObs != null){
+			getObservationIndex();
 			getLogicScenario().removeObservation(varObs.getLogicObservation(), false);
+			updateObservationIndex(node);
 		}
 	}
 	
@@ -750,19 +800,23 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * @param node Node to clear VariableObservations from
 	 */
 	public void clearVariableObservations(Node node){
+		getObservationIndex();
 		getVariableObservations(node).forEach(obs -> {
 			getLogicScenario().removeObservation(obs.getLogicObservation(), false);
 		});
+		updateObservationIndex(node);
 	}
 	
 	/**
 	 * Clears all VariableObservations from this DataSet for all Networks and Nodes.
 	 */
 	public void clearVariableObservations(){
+		getObservationIndex();
 		ArrayList<uk.co.agena.minerva.model.scenario.Observation> obss = new ArrayList<>(getLogicScenario().getObservations());
 		obss.stream()
 				.filter(obs -> !obs.getExpressionVariableName().isEmpty())
 				.forEach(obs -> getLogicScenario().removeObservation(obs, false));
+		updateObservationIndex(null);
 	}
 	
 	/**
@@ -771,10 +825,79 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	public void clearAllData(){
 		// Clear observations and variable values
 		getLogicScenario().clearAllObservations(false);
+		observationIndex = new LinkedHashMap<>();
+		observationIndexSource = Collections.emptyList();
 		
+		clearCalculationResults();
+	}
+	
+	/**
+	 * Clears CalculationResults data from this DataSet, keeping Observations and VariableObservations.
+	 */
+	public void clearCalculationResults(){
+		getModel().forgetCalculated(this);
+		releasedResults = Collections.emptySet();
+		resetCalculationResults(en -> true);
+	}
+	
+	/**
+	 * Releases calculation results of Nodes that the ResultRetention policy does not retain.
+	 * <br>
+	 * Unlike clearCalculationResults(), this DataSet is still considered calculated, as retained results are unchanged.
+	 * <br>
+	 * Released Nodes have no CalculationResult until the DataSet is calculated again, while cleared Nodes have an empty one.
+	 * 
+	 * @param retention the policy to apply
+	 */
+	protected void retainCalculationResults(ResultRetention retention){
+		Set<ExtendedNode> retained = new HashSet<>();
+		getModel().getNetworks().values().forEach(network -> {
+			network.getNodes().values().stream()
+					.filter(retention::isRetained)
+					.forEach(node -> retained.add(node.getLogicNode()));
+		});
+		Set<ExtendedNode> released = new HashSet<>();
+		resetCalculationResults(en -> {
+			if (retained.contains(en)){
+				return false;
+			}
+			released.add(en);
+			return true;
+		});
+		releasedResults = released;
+	}
+	
+	/**
+	 * Forgets Nodes released after a previous calculation, once the DataSet is calculated again with all results kept.
+	 */
+	protected void resetReleasedResults(){
+		releasedResults = Collections.emptySet();
+	}
+	
+	/**
+	 * Checks whether the result of the Node was released by the ResultRetention policy after the last calculation.
+	 * 
+	 * @param node the Node to check
+	 * 
+	 * @return true if the result was released
+	 */
+	protected boolean isResultReleased(Node node){
+		return !releasedResults.isEmpty() && releasedResults.contains(node.getLogicNode());
+	}
+	
+	/**
+	 * Replaces calculation results of matching logic nodes for this DataSet with empty ones, keeping their update settings.
+	 * 
+	 * @param filter selects logic nodes which results to reset
+	 */
+	private void resetCalculationResults(Predicate<ExtendedNode> filter){
 		int index = getDataSetIndex();
 		
-		((Map<ExtendedNode, MarginalDataItemList>) getModel().getLogicModel().getMarginalDataStore().getNodeMarginalListMap()).values().forEach(mdil -> {
+		((Map<ExtendedNode, MarginalDataItemList>) getModel().getLogicModel().getMarginalDataStore().getNodeMarginalListMap()).forEach((en, mdil) -> {
+			if (!filter.test(en)){
+				return;
+			}
+			
 			MarginalDataItem mdiNew = new MarginalDataItem(getId());
 			mdiNew.setVisible(getLogicScenario().isReportable());
 			mdiNew.setCallSignToUpdateOn(Integer.toString(getLogicScenario().getId()));
@@ -805,6 +928,7 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 		Observation obs = getObservation(node);
 		if (obs != null){
 			getLogicScenario().removeObservation(obs.getLogicObservation(), false);
+			updateObservationIndex(node);
 		}
 	}
 	
@@ -814,8 +938,12 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	public void clearObservations() {
 		ArrayList<uk.co.agena.minerva.model.scenario.Observation> obss = new ArrayList<>(getLogicScenario().getObservations());
 		obss.stream()
-				.filter(obs -> obs.getExpressionVariableName() == null || obs.getExpressionVariableName().isEmpty())
+				.filter(obs -> !isVariableObservation(obs))
 				.forEach(obs -> getLogicScenario().removeObservation(obs, false));
+		
+		// Only variable observations are left
+		observationIndex = new LinkedHashMap<>();
+		observationIndexSource = new ArrayList<>(getLogicScenario().getObservations());
 	}
 	
 	/**
@@ -826,15 +954,7 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * @return true if there is an observation for the Node in this DataSet
 	 */
 	public boolean hasObservation(Node node){
-		
-		try {
-			getLogicScenario().getObservation(node.getNetwork().getLogicNetwork().getId(), node.getLogicNode().getId());
-		}
-		catch(ObservationNotFoundException ex){
-			return false;
-		}
-		
-		return true;
+		return getObservationIndex().containsKey(node);
 	}
 	
 	/**
@@ -867,17 +987,14 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	
 	/**
 	 * Returns all observations in this DataSet for all Networks and Nodes.
+	 * <br>
+	 * Observations are listed in the order they were set.
 	 * 
 	 * @return a Set of all Observations
 	 */
 	public Set<Observation> getObservations(){
 		Set<Observation> observations = new LinkedHashSet<>();
-		getModel().getNetworks().values().forEach(net -> {
-			net.getNodes().values().stream()
-					.filter(node -> hasObservation(node))
-					.map(node -> getObservation(node))
-					.collect(Collectors.toCollection(() -> observations));
-		});
+		getObservationIndex().forEach((node, logicObservation) -> observations.add(new Observation(logicObservation, this, node)));
 		return observations;
 	}
 	
@@ -893,19 +1010,107 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * @return null if there is no observation or either HardObservation or SoftObservation
 	 */
 	public Observation getObservation(Node node) {
-		uk.co.agena.minerva.model.scenario.Observation logicObservation = null;
-		try {
-			logicObservation = getLogicScenario().getObservation(node.getNetwork().getLogicNetwork().getId(), node.getLogicNode().getId());
+		uk.co.agena.minerva.model.scenario.Observation logicObservation = getObservationIndex().get(node);
+		return (logicObservation == null) ? null : new Observation(logicObservation, this, node);
+	}
+	
+	/**
+	 * Returns the index of non-variable logic observations, rebuilding it from the logic scenario if it was not built yet or if the logic scenario was changed directly.
+	 * <br>
+	 * A direct change is detected by comparing logic observations to those the index was built from by identity, so replacing an observation is noticed even if the number of observations stays the same.
+	 * <br>
+	 * Methods changing observations should call this before the change and updateObservationIndex() after it.
+	 * 
+	 * @return the index of logic observations by Node
+	 */
+	private Map<Node, uk.co.agena.minerva.model.scenario.Observation> getObservationIndex(){
+		List<uk.co.agena.minerva.model.scenario.Observation> logicObservations = getLogicScenario().getObservations();
+		if (observationIndex != null && isObservationIndexSource(logicObservations)){
+			return observationIndex;
+		}
+		
+		Map<Integer, Network> networks = new HashMap<>();
+		getModel().getNetworkList().forEach(network -> networks.put(network.getLogicNetwork().getId(), network));
+		
+		// Nodes by logic ID, only for Networks that have observations
+		Map<Network, Map<Integer, Node>> nodes = new HashMap<>();
+		
+		Map<Node, uk.co.agena.minerva.model.scenario.Observation> index = new LinkedHashMap<>();
+		for(uk.co.agena.minerva.model.scenario.Observation logicObservation: logicObservations){
+			if (isVariableObservation(logicObservation)){
+				continue;
+			}
+			
+			Network network = networks.get(logicObservation.getConnExtendedBNId());
+			if (network == null){
+				continue;
+			}
+			
+			Node node = nodes.computeIfAbsent(network, net -> {
+				Map<Integer, Node> netNodes = new HashMap<>();
+				net.getNodeList().stream().filter(Objects::nonNull).forEach(n -> netNodes.put(n.getLogicNode().getId(), n));
+				return netNodes;
+			}).get(logicObservation.getConnExtendedNodeId());
+			
+			if (node != null && !index.containsKey(node)){
+				index.put(node, logicObservation);
+			}
+		}
+		
+		observationIndex = index;
+		observationIndexSource = new ArrayList<>(logicObservations);
+		return index;
+	}
+	
+	/**
+	 * Checks whether the logic observations are the same objects in the same order as those the index was built from.
+	 */
+	private boolean isObservationIndexSource(List<uk.co.agena.minerva.model.scenario.Observation> logicObservations){
+		if (observationIndexSource.size() != logicObservations.size()){
+			return false;
 		}
-		catch(ObservationNotFoundException ex){
-			// Do nothing, logical observation not found
+		Iterator<uk.co.agena.minerva.model.scenario.Observation> source = observationIndexSource.iterator();
+		for(uk.co.agena.minerva.model.scenario.Observation logicObservation: logicObservations){
+			if (source.next() != logicObservation){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Discards the index of Observations so that it is rebuilt on next use.
+	 * <br>
+	 * To be used by classes that change the logic scenario directly, such as EvidenceTemplate.
+	 */
+	protected void invalidateObservationIndex(){
+		observationIndex = null;
+	}
+	
+	/**
+	 * Updates the index entry for the Node from the logic scenario after its observations were changed.
+	 * 
+	 * @param node the Node that observations were changed for, or null if only variable observations were changed
+	 */
+	private void updateObservationIndex(Node node){
+		if (observationIndex == null){
+			return;
 		}
 		
-		if (logicObservation == null){
-			return null;
+		if (node != null){
+			observationIndex.remove(node);
+			List<uk.co.agena.minerva.model.scenario.Observation> logicObservations = getLogicScenario().getObservations(node.getNetwork().getLogicNetwork().getId(), node.getLogicNode().getId());
+			logicObservations.stream()
+					.filter(logicObservation -> !isVariableObservation(logicObservation))
+					.findFirst()
+					.ifPresent(logicObservation -> observationIndex.put(node, logicObservation));
 		}
 		
-		return new Observation(logicObservation, this, node);
+		observationIndexSource = new ArrayList<>(getLogicScenario().getObservations());
+	}
+	
+	private static boolean isVariableObservation(uk.co.agena.minerva.model.scenario.Observation logicObservation){
+		return logicObservation.getExpressionVariableName() != null && !logicObservation.getExpressionVariableName().isEmpty();
 	}
 	
 	/**
@@ -947,13 +1152,28 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * @return map of nodes to results
 	 */
 	public Map<Node, CalculationResult> getCalculationResults(Network network) {
-		return network
-				.getNodes()
-				.values()
-				.stream()
-				.map(node -> new AbstractMap.SimpleEntry<>(node, CalculationResult.getCalculationResult(this, node)))
-				.filter(entry -> entry.getValue() != null)
-				.collect(Collectors.toMap(entry -> entry.getKey(), entry -> entry.getValue()));
+		CalculationEvent.Builder event = CalculationEvent.start(getModel(), CalculationEvent.Phase.RESULT_MATERIALISATION);
+		Map<Node, CalculationResult> results = null;
+		try {
+			int scenarioIndex = getDataSetIndex();
+			results = network
+					.getNodes()
+					.values()
+					.stream()
+					.map(node -> new AbstractMap.SimpleEntry<>(node, CalculationResult.getCalculationResult(this, node, scenarioIndex)))
+					.filter(entry -> entry.getValue() != null)
+					.collect(Collectors.toMap(entry -> entry.getKey(), entry -> entry.getValue()));
+			return results;
+		}
+		finally {
+			if (event != null){
+				event.networks(Collections.singletonList(network))
+						.dataSets(Collections.singletonList(this))
+						.successful(results != null)
+						.detail("results", results == null ? 0 : results.size())
+						.fire();
+			}
+		}
 	}
 	
 	/**
@@ -969,17 +1189,26 @@ public class DataSet implements Identifiable<DataSetException>, Storable {
 	 * @throws JSONException if JSON data is invalid
 	 */
 	public void loadCalculationResult(JSONObject jsonResult) throws DataSetException, JSONException {
+		getModel().forgetCalculated(this);
+		releasedResults = Collections.emptySet();
 		CalculationResult.loadCalculationResult(this, jsonResult);
 	}
 	
 	/**
 	 * Gets the index of corresponding logic scenario in the underlying logical model structure
+	 * <br>
+	 * Uses the Model's scenario index, falling back to matching scenario name if this DataSet's logic scenario object is not in the logic model.
 	 * 
 	 * @return data set index
 	 */
 	protected int getDataSetIndex(){
+		int index = getModel().getScenarioIndex(this.logicScenario);
+		if (index >= 0){
+			return index;
+		}
+		
 		String thiScenarioName = this.logicScenario.getName().getShortDescription();
-		int index = 0;
+		index = 0;
 		
 		for(Scenario scenario: (List<Scenario>)getModel().getLogicModel().getScenarioList().getScenarios()){
 			if (thiScenarioName.equalsIgnoreCase(scenario.getName().getShortDescription())){
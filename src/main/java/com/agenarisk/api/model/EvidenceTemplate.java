@@ -0,0 +1,321 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.DataSetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import uk.co.agena.minerva.model.extendedbn.BooleanEN;
+import uk.co.agena.minerva.model.extendedbn.ContinuousIntervalEN;
+import uk.co.agena.minerva.model.extendedbn.DiscreteRealEN;
+import uk.co.agena.minerva.model.extendedbn.ExtendedNode;
+import uk.co.agena.minerva.model.extendedbn.ExtendedState;
+import uk.co.agena.minerva.model.extendedbn.ExtendedStateNotFoundException;
+import uk.co.agena.minerva.model.extendedbn.IntegerIntervalEN;
+import uk.co.agena.minerva.model.extendedbn.LabelledEN;
+import uk.co.agena.minerva.model.extendedbn.RankedEN;
+import uk.co.agena.minerva.model.scenario.Scenario;
+import uk.co.agena.minerva.model.scenario.ScenarioException;
+import uk.co.agena.minerva.util.model.NameDescription;
+
+/**
+ * EvidenceTemplate enters rows of evidence into DataSets for a fixed list of Nodes of a Network.
+ * <br>
+ * Nodes, their logic IDs and state IDs are resolved once when the template is compiled, so entering a row only looks up the values in it.
+ * <br>
+ * A row is an array of cell values in the order of Node IDs the template was compiled with. Cell values are interpreted as in DataSet.setObservation(Node, Object); in addition, a Map of state labels to weights is entered as a soft observation.
+ * <br>
+ * The template is only valid while Nodes and their states are not changed; compile a new one after any such change.
+ *
+ * @author Eugene Dementiev
+ */
+public class EvidenceTemplate {
+
+	/**
+	 * Outcome of entering a single cell of a row
+	 */
+	public static enum Status {
+		/**
+		 * Observation was entered, replacing any existing observation for the Node
+		 */
+		ENTERED,
+
+		/**
+		 * The cell was null and the Node was left as is
+		 */
+		SKIPPED,
+
+		/**
+		 * The Node ID did not match a Node in the Network when the template was compiled
+		 */
+		UNKNOWN_NODE,
+
+		/**
+		 * The value did not match any state of the Node
+		 */
+		UNKNOWN_STATE,
+
+		/**
+		 * The value is not valid for the Node, e.g. not a number for a numeric Node
+		 */
+		INVALID_VALUE,
+
+		/**
+		 * The Node type does not support observations
+		 */
+		UNSUPPORTED,
+
+		/**
+		 * The logic failed to accept the observation
+		 */
+		FAILED
+	}
+
+	/**
+	 * A Node with everything needed to enter evidence for it resolved in advance
+	 */
+	private static class Column {
+
+		private final String nodeId;
+
+		private final Node node;
+
+		private final ExtendedNode logicNode;
+
+		/**
+		 * Observation is a state of the Node
+		 */
+		private final boolean states;
+
+		/**
+		 * Observation is a number
+		 */
+		private final boolean numeric;
+
+		/**
+		 * State label to logic state ID
+		 */
+		private final Map<String, Integer> stateIds;
+
+		private Column(String nodeId, Node node) {
+			this.nodeId = nodeId;
+			this.node = node;
+			this.logicNode = (node == null) ? null : node.getLogicNode();
+			this.states = logicNode instanceof LabelledEN || logicNode instanceof RankedEN || logicNode instanceof DiscreteRealEN;
+			this.numeric = logicNode instanceof ContinuousIntervalEN || logicNode instanceof IntegerIntervalEN;
+
+			this.stateIds = new HashMap<>();
+			if (states){
+				for(ExtendedState es: (List<ExtendedState>) logicNode.getExtendedStates()){
+					stateIds.putIfAbsent(es.getName().getShortDescription(), es.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Network of this template
+	 */
+	private final Network network;
+
+	/**
+	 * Columns in the order of Node IDs
+	 */
+	private final Column[] columns;
+
+	private EvidenceTemplate(Network network, Column[] columns) {
+		this.network = network;
+		this.columns = columns;
+	}
+
+	/**
+	 * Compiles a template for the given Node IDs of the Network.
+	 * <br>
+	 * IDs that do not match any Node are kept, and their cells will be reported as Status.UNKNOWN_NODE unless null.
+	 *
+	 * @param network the Network containing the Nodes
+	 * @param nodeIds IDs of Nodes in the order of row cells
+	 *
+	 * @return the compiled template
+	 */
+	public static EvidenceTemplate compile(Network network, List<String> nodeIds) {
+		Column[] columns = new Column[nodeIds.size()];
+		for(int i = 0; i < columns.length; i++){
+			String nodeId = nodeIds.get(i);
+			columns[i] = new Column(nodeId, (nodeId == null) ? null : network.getNode(nodeId));
+		}
+		return new EvidenceTemplate(network, columns);
+	}
+
+	/**
+	 * Returns the Network of this template.
+	 *
+	 * @return the Network
+	 */
+	public Network getNetwork() {
+		return network;
+	}
+
+	/**
+	 * Returns the Node IDs this template was compiled with, in the order of row cells.
+	 *
+	 * @return list of Node IDs
+	 */
+	public List<String> getNodeIds() {
+		List<String> nodeIds = new ArrayList<>(columns.length);
+		Arrays.stream(columns).forEach(column -> nodeIds.add(column.nodeId));
+		return Collections.unmodifiableList(nodeIds);
+	}
+
+	/**
+	 * Enters a row of evidence into the DataSet.
+	 * <br>
+	 * Failures are reported per cell and do not stop the rest of the row from being entered.
+	 *
+	 * @param dataSet the DataSet to enter evidence into
+	 * @param row cell values in the order of Node IDs of this template; null cells are skipped
+	 *
+	 * @return the outcome for each cell of the row
+	 *
+	 * @throws DataSetException if the DataSet belongs to a different Model or the row length does not match the template
+	 */
+	public Status[] apply(DataSet dataSet, Object[] row) {
+		if (!network.getModel().equals(dataSet.getModel())){
+			throw new DataSetException("Template and DataSet belong to different models");
+		}
+
+		if (row.length != columns.length){
+			throw new DataSetException("Row has " + row.length + " cells but the template has " + columns.length);
+		}
+
+		Scenario scenario = dataSet.getLogicScenario();
+		int networkId = network.getLogicNetwork().getId();
+
+		Status[] statuses = new Status[row.length];
+		boolean entered = false;
+
+		for(int i = 0; i < row.length; i++){
+			statuses[i] = apply(scenario, networkId, columns[i], row[i]);
+			entered |= statuses[i] == Status.ENTERED;
+		}
+
+		if (entered){
+			dataSet.invalidateObservationIndex();
+		}
+
+		return statuses;
+	}
+
+	private static Status apply(Scenario scenario, int networkId, Column column, Object value) {
+		if (value == null){
+			return Status.SKIPPED;
+		}
+
+		if (column.node == null){
+			return Status.UNKNOWN_NODE;
+		}
+
+		ExtendedNode en = column.logicNode;
+
+		try {
+			if (column.states){
+				if (value instanceof Map){
+					return applySoft(scenario, networkId, column, (Map<?, ?>) value);
+				}
+
+				if (en instanceof BooleanEN && value instanceof Boolean){
+					value = String.valueOf(value);
+				}
+
+				if (en instanceof DiscreteRealEN && value instanceof Double){
+					value = String.valueOf(value);
+				}
+
+				if (en instanceof DiscreteRealEN && value instanceof Integer){
+					value = String.valueOf(Double.valueOf(value+""));
+				}
+
+				if (!(value instanceof String)){
+					return Status.INVALID_VALUE;
+				}
+
+				Integer stateId = resolveState(column, (String) value);
+				if (stateId == null){
+					return Status.UNKNOWN_STATE;
+				}
+
+				scenario.addHardEvidenceObservation(networkId, en.getId(), stateId);
+				return Status.ENTERED;
+			}
+
+			if (column.numeric){
+				if (!(value instanceof Number)){
+					try {
+						Double.valueOf(String.valueOf(value));
+					}
+					catch (NumberFormatException ex){
+						return Status.INVALID_VALUE;
+					}
+				}
+
+				uk.co.agena.minerva.model.scenario.Observation obs = new uk.co.agena.minerva.model.scenario.Observation(networkId, en.getId(), -1, new uk.co.agena.minerva.util.model.DataSet(new NameDescription("", ""), en.getId()), uk.co.agena.minerva.model.scenario.Observation.OBSERVATION_TYPE_NUMERIC, String.valueOf(value));
+				scenario.addObservation(obs, false);
+				return Status.ENTERED;
+			}
+		}
+		catch (RuntimeException ex){
+			return Status.FAILED;
+		}
+
+		return Status.UNSUPPORTED;
+	}
+
+	private static Status applySoft(Scenario scenario, int networkId, Column column, Map<?, ?> weights) {
+		int[] stateIds = new int[weights.size()];
+		double[] probabilities = new double[weights.size()];
+
+		int i = 0;
+		for(Map.Entry<?, ?> entry: weights.entrySet()){
+			Integer stateId = resolveState(column, String.valueOf(entry.getKey()));
+			if (stateId == null){
+				return Status.UNKNOWN_STATE;
+			}
+			if (!(entry.getValue() instanceof Number)){
+				return Status.INVALID_VALUE;
+			}
+			stateIds[i] = stateId;
+			probabilities[i] = ((Number) entry.getValue()).doubleValue();
+			i++;
+		}
+
+		try {
+			scenario.addSoftEvidenceObservation(networkId, column.logicNode.getId(), stateIds, probabilities);
+		}
+		catch (ScenarioException ex){
+			return Status.FAILED;
+		}
+
+		return Status.ENTERED;
+	}
+
+	/**
+	 * Looks up the state ID by label, falling back to the logic lookup for labels that do not match exactly.
+	 *
+	 * @return the state ID or null if there is no such state
+	 */
+	private static Integer resolveState(Column column, String label) {
+		Integer stateId = column.stateIds.get(label);
+		if (stateId != null){
+			return stateId;
+		}
+
+		try {
+			return column.logicNode.getExtendedStateWithShortDesc(label).getId();
+		}
+		catch (ExtendedStateNotFoundException ex){
+			return null;
+		}
+	}
+}
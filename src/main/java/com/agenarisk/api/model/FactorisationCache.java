@@ -0,0 +1,116 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.util.JSONUtils;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of factorised model structures.
+ * <br>
+ * Entries are keyed by a hash of the full model content except DataSets, including names, descriptions, meta, graphics and the risk table, so a model factorised once does not go through the Core factorisation, its disk round trip and JSON conversion again when another copy of the same model is factorised, e.g. by repeated sensitivity or multivariate analyses.
+ * <br>
+ * Only the factorised model is cached; DataSets are not part of it. Since everything else is part of the key, a model rebuilt from cache has exactly its own labels, meta and graphics.
+ * <br>
+ * Least recently used entries are evicted once the capacity is reached. All methods are thread-safe.
+ *
+ * @author Eugene Dementiev
+ */
+public class FactorisationCache {
+
+	private static int capacity = 16;
+
+	private static final LinkedHashMap<String, String> ENTRIES = new LinkedHashMap<String, String>(16, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > capacity;
+		}
+	};
+
+	private static long hits = 0;
+	private static long misses = 0;
+
+	private FactorisationCache(){}
+
+	/**
+	 * Computes the cache key for the provided Model from its full content, ignoring DataSets and generated tables.
+	 *
+	 * @param model Model to compute the key for
+	 *
+	 * @return cache key
+	 *
+	 * @throws AdapterException if the model fails to be converted to JSON
+	 */
+	protected static String key(Model model) throws AdapterException {
+		return JSONUtils.sha256(JSONUtils.toCanonicalString(model.exportJson(Model.ExportFlag.KEEP_META, Model.ExportFlag.KEEP_RISK_TABLE, Model.ExportFlag.KEEP_GRAPHICS)));
+	}
+
+	/**
+	 * Looks up a factorised model structure.
+	 *
+	 * @param key cache key
+	 *
+	 * @return serialised model JSON without DataSets or null if not cached
+	 */
+	protected static synchronized String get(String key){
+		String json = ENTRIES.get(key);
+		if (json == null){
+			misses++;
+		}
+		else {
+			hits++;
+		}
+		return json;
+	}
+
+	/**
+	 * Stores a factorised model structure.
+	 *
+	 * @param key cache key
+	 * @param json serialised model JSON without DataSets
+	 */
+	protected static synchronized void put(String key, String json){
+		ENTRIES.put(key, json);
+	}
+
+	/**
+	 * Sets the maximum number of cached structures, evicting least recently used entries if there are more.
+	 * <br>
+	 * Zero disables caching.
+	 *
+	 * @param capacity maximum number of entries
+	 */
+	public static synchronized void setCapacity(int capacity){
+		FactorisationCache.capacity = Math.max(0, capacity);
+		while(ENTRIES.size() > FactorisationCache.capacity){
+			ENTRIES.remove(ENTRIES.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Removes all cached structures and resets counters.
+	 */
+	public static synchronized void clear(){
+		ENTRIES.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Returns the number of factorisations served from cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public static synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * Returns the number of factorisations not served from cache.
+	 *
+	 * @return number of cache misses
+	 */
+	public static synchronized long getMisses(){
+		return misses;
+	}
+}
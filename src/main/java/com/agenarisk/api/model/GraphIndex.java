@@ -0,0 +1,294 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * GraphIndex is a snapshot of the structure of a Network: a topological order of its Nodes and their ancestor and descendant closures.
+ * <br>
+ * Only Links between Nodes of the same Network are considered.
+ * <br>
+ * An index is obtained with Network.getGraphIndex() and is rebuilt by the Network after its Nodes or Links change. A GraphIndex instance itself is immutable and does not reflect changes made after it was built.
+ *
+ * @author Eugene Dementiev
+ */
+public final class GraphIndex {
+
+	/**
+	 * Nodes in topological order, parents before children
+	 */
+	private final List<Node> order;
+
+	/**
+	 * Node to its position in topological order
+	 */
+	private final Map<Node, Integer> positions;
+
+	/**
+	 * Direct intra-network parents of each Node, by position
+	 */
+	private final BitSet[] parents;
+
+	/**
+	 * Ancestor closure of each Node, by position
+	 */
+	private final BitSet[] ancestors;
+
+	/**
+	 * Descendant closure of each Node, by position
+	 */
+	private final BitSet[] descendants;
+
+	/**
+	 * Network version this index was built for
+	 */
+	private final int version;
+
+	/**
+	 * Builds the index for the given Network.
+	 *
+	 * @param network the Network to index
+	 * @param version the modification version of the Network at the time of the build
+	 *
+	 * @throws AgenaRiskRuntimeException if the Network contains a cycle
+	 */
+	protected GraphIndex(Network network, int version) {
+		this.version = version;
+
+		List<Node> nodes = network.getNodeList().stream().filter(Objects::nonNull).collect(Collectors.toList());
+		int size = nodes.size();
+
+		Map<Node, Integer> indexes = new HashMap<>();
+		for(int i = 0; i < size; i++){
+			indexes.put(nodes.get(i), i);
+		}
+
+		// Kahn's algorithm over intra-network Links, keeping Network order among Nodes that are ready at the same time
+		int[] inDegree = new int[size];
+		List<List<Integer>> children = new ArrayList<>(size);
+		for(int i = 0; i < size; i++){
+			children.add(new ArrayList<>());
+		}
+		for(int i = 0; i < size; i++){
+			for(Node parent: nodes.get(i).getParents()){
+				Integer p = indexes.get(parent);
+				if (p == null || !Objects.equals(parent.getNetwork(), network)){
+					continue;
+				}
+				inDegree[i]++;
+				children.get(p).add(i);
+			}
+		}
+
+		int[] ordered = new int[size];
+		int head = 0, tail = 0;
+		for(int i = 0; i < size; i++){
+			if (inDegree[i] == 0){
+				ordered[tail++] = i;
+			}
+		}
+		while (head < tail){
+			int i = ordered[head++];
+			for(int c: children.get(i)){
+				if (--inDegree[c] == 0){
+					ordered[tail++] = c;
+				}
+			}
+		}
+
+		if (tail != size){
+			throw new AgenaRiskRuntimeException("Network `" + network.getId() + "` appears to contain a cycle");
+		}
+
+		// Renumber Nodes by topological position so that bit order is also topological order
+		int[] position = new int[size];
+		List<Node> orderedNodes = new ArrayList<>(size);
+		Map<Node, Integer> orderedPositions = new HashMap<>();
+		for(int k = 0; k < size; k++){
+			position[ordered[k]] = k;
+			orderedNodes.add(nodes.get(ordered[k]));
+			orderedPositions.put(nodes.get(ordered[k]), k);
+		}
+
+		this.order = Collections.unmodifiableList(orderedNodes);
+		this.positions = orderedPositions;
+		this.parents = new BitSet[size];
+		this.ancestors = new BitSet[size];
+		this.descendants = new BitSet[size];
+
+		for(int k = 0; k < size; k++){
+			parents[k] = new BitSet(size);
+			ancestors[k] = new BitSet(size);
+			descendants[k] = new BitSet(size);
+		}
+
+		for(int i = 0; i < size; i++){
+			for(int c: children.get(i)){
+				parents[position[c]].set(position[i]);
+			}
+		}
+
+		// Parents precede children, so each parent's closure is complete by the time it is merged
+		for(int k = 0; k < size; k++){
+			for(int p = parents[k].nextSetBit(0); p >= 0; p = parents[k].nextSetBit(p + 1)){
+				ancestors[k].set(p);
+				ancestors[k].or(ancestors[p]);
+			}
+		}
+
+		for(int k = size - 1; k >= 0; k--){
+			for(int p = parents[k].nextSetBit(0); p >= 0; p = parents[k].nextSetBit(p + 1)){
+				descendants[p].set(k);
+				descendants[p].or(descendants[k]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the Network version this index was built for.
+	 *
+	 * @return the Network version
+	 */
+	protected int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns Nodes of the Network in topological order, i.e. every Node comes after all of its intra-network parents.
+	 *
+	 * @return unmodifiable list of Nodes in topological order
+	 */
+	public List<Node> getTopologicalOrder() {
+		return order;
+	}
+
+	/**
+	 * Returns the provided Nodes sorted in topological order.
+	 *
+	 * @param nodes Nodes of the indexed Network
+	 *
+	 * @return list of the provided Nodes in topological order
+	 *
+	 * @throws AgenaRiskRuntimeException if any of the Nodes is not in this index
+	 */
+	public List<Node> sort(Collection<Node> nodes) {
+		BitSet selected = new BitSet(order.size());
+		nodes.forEach(node -> selected.set(position(node)));
+		return toList(selected);
+	}
+
+	/**
+	 * Checks whether the Node is in this index.
+	 *
+	 * @param node the Node to check
+	 *
+	 * @return true if the Node is indexed
+	 */
+	public boolean contains(Node node) {
+		return positions.containsKey(node);
+	}
+
+	/**
+	 * Returns the ancestors of the Node in topological order.<br>
+	 * Does not include the Node itself.
+	 *
+	 * @param node the Node
+	 *
+	 * @return set of ancestors of the Node
+	 *
+	 * @throws AgenaRiskRuntimeException if the Node is not in this index
+	 */
+	public Set<Node> getAncestors(Node node) {
+		return toSet(ancestors[position(node)]);
+	}
+
+	/**
+	 * Returns the descendants of the Node in topological order.<br>
+	 * Does not include the Node itself.
+	 *
+	 * @param node the Node
+	 *
+	 * @return set of descendants of the Node
+	 *
+	 * @throws AgenaRiskRuntimeException if the Node is not in this index
+	 */
+	public Set<Node> getDescendants(Node node) {
+		return toSet(descendants[position(node)]);
+	}
+
+	/**
+	 * Returns the ancestors of the Node which have no intra-network parents, in topological order.
+	 *
+	 * @param node the Node
+	 *
+	 * @return set of root ancestors of the Node
+	 *
+	 * @throws AgenaRiskRuntimeException if the Node is not in this index
+	 */
+	public Set<Node> getRootAncestors(Node node) {
+		BitSet roots = (BitSet) ancestors[position(node)].clone();
+		for(int k = roots.nextSetBit(0); k >= 0; k = roots.nextSetBit(k + 1)){
+			if (!parents[k].isEmpty()){
+				roots.clear(k);
+			}
+		}
+		return toSet(roots);
+	}
+
+	/**
+	 * Returns the number of ancestors of the Node.
+	 *
+	 * @param node the Node
+	 *
+	 * @return number of ancestors
+	 *
+	 * @throws AgenaRiskRuntimeException if the Node is not in this index
+	 */
+	public int getAncestorCount(Node node) {
+		return ancestors[position(node)].cardinality();
+	}
+
+	/**
+	 * Checks whether one Node is an ancestor of another.
+	 *
+	 * @param ancestor the possible ancestor
+	 * @param node the Node
+	 *
+	 * @return true if ancestor is a direct or indirect intra-network parent of node
+	 *
+	 * @throws AgenaRiskRuntimeException if either Node is not in this index
+	 */
+	public boolean isAncestor(Node ancestor, Node node) {
+		return ancestors[position(node)].get(position(ancestor));
+	}
+
+	private int position(Node node) {
+		Integer position = positions.get(node);
+		if (position == null){
+			throw new AgenaRiskRuntimeException("Node " + node.toStringExtra() + " is not in the graph index");
+		}
+		return position;
+	}
+
+	private List<Node> toList(BitSet bits) {
+		List<Node> list = new ArrayList<>(bits.cardinality());
+		for(int k = bits.nextSetBit(0); k >= 0; k = bits.nextSetBit(k + 1)){
+			list.add(order.get(k));
+		}
+		return list;
+	}
+
+	private Set<Node> toSet(BitSet bits) {
+		return new LinkedHashSet<>(toList(bits));
+	}
+}
@@ -2,10 +2,13 @@ package com.agenarisk.api.model;
 
 import com.agenarisk.api.exception.LinkException;
 import com.agenarisk.api.model.interfaces.Storable;
+import com.agenarisk.api.util.JSONUtils;
 import com.singularsys.jep.JepException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import org.json.JSONObject;
+import uk.co.agena.minerva.model.MessagePassingLink;
 import uk.co.agena.minerva.model.corebn.CoreBNException;
 import uk.co.agena.minerva.model.extendedbn.ExtendedBNException;
 import uk.co.agena.minerva.model.extendedbn.ExtendedNode;
@@ -66,6 +69,34 @@ public class Link implements Comparable<Link>, Storable {
 		return new Link(fromNode, toNode);
 	}
 	
+	/**
+	 * Creates a copy of this Link between the provided Nodes, which should be copies of this Link's Nodes in a copy of the Model.
+	 * <br>
+	 * Does not create the underlying logical link, which is expected to be copied with the logic model.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param fromNode copy of the source Node
+	 * @param toNode copy of the target Node
+	 * @param logicLinkCopies original logic message passing links mapped to their copies
+	 * 
+	 * @return the Link copy
+	 */
+	protected Link copyTo(Node fromNode, Node toNode, Map<MessagePassingLink, MessagePassingLink> logicLinkCopies) {
+		Link link = new Link(fromNode, toNode);
+		copyGraphicsTo(link);
+		return link;
+	}
+	
+	/**
+	 * Sets a copy of this Link's graphics to the provided Link.
+	 * 
+	 * @param link the Link to copy graphics to
+	 */
+	protected void copyGraphicsTo(Link link) {
+		link.graphics = JSONUtils.copy(graphics);
+	}
+	
 	/**
 	 * This will create a link in the underlying logic.
 	 * <br>
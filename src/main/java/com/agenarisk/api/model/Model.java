@@ -2,6 +2,7 @@ package com.agenarisk.api.model;
 
 import com.agenarisk.api.exception.AdapterException;
 import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import com.agenarisk.api.exception.CalculationCancelledException;
 import com.agenarisk.api.exception.CalculationException;
 import com.agenarisk.api.exception.DataSetException;
 import com.agenarisk.api.exception.FileIOException;
@@ -11,8 +12,10 @@ import com.agenarisk.api.exception.ModelException;
 import com.agenarisk.api.exception.NetworkException;
 import com.agenarisk.api.exception.NodeException;
 import com.agenarisk.api.exception.OutOfMemoryException;
+import com.agenarisk.api.io.BinaryModelAdapter;
 import com.agenarisk.api.io.FileAdapter;
 import com.agenarisk.api.io.JSONAdapter;
+import com.agenarisk.api.io.JSONModelReader;
 import com.agenarisk.api.io.XMLAdapter;
 import com.agenarisk.api.io.stub.Audit;
 import com.agenarisk.api.io.stub.Graphics;
@@ -24,28 +27,38 @@ import com.agenarisk.api.model.field.Id;
 import com.agenarisk.api.model.interfaces.Identifiable;
 import com.agenarisk.api.model.interfaces.Storable;
 import com.agenarisk.api.util.JSONUtils;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import uk.co.agena.minerva.model.extendedbn.ExtendedBN;
+import uk.co.agena.minerva.model.extendedbn.ExtendedNode;
 import uk.co.agena.minerva.model.extendedbn.ExtendedState;
 import uk.co.agena.minerva.model.questionnaire.Answer;
 import uk.co.agena.minerva.model.questionnaire.Question;
 import uk.co.agena.minerva.model.questionnaire.Questionnaire;
+import uk.co.agena.minerva.model.scenario.Scenario;
 import uk.co.agena.minerva.model.scenario.ScenarioNotFoundException;
 import uk.co.agena.minerva.util.Environment;
 import uk.co.agena.minerva.util.Logger;
@@ -57,13 +70,16 @@ import com.agenarisk.api.model.interfaces.IdContainer;
 import com.agenarisk.api.util.Advisory;
 import com.singularsys.jep.JepException;
 import java.util.Collection;
-import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
 import uk.co.agena.minerva.model.extendedbn.ContinuousEN;
 import uk.co.agena.minerva.model.extendedbn.ExtendedBNException;
 import uk.co.agena.minerva.model.Model.PropagationFlag;
 import uk.co.agena.minerva.model.corebn.JunctionTreeTooLargeException;
 import uk.co.agena.minerva.model.jtinspect.JunctionTreeReport;
 import uk.co.agena.minerva.model.ModelEvent;
+import uk.co.agena.minerva.model.MessagePassingLink;
+import uk.co.agena.minerva.model.MessagePassingLinks;
 import uk.co.agena.minerva.model.extendedbn.ExtendedNodeFunction;
 import uk.co.agena.minerva.util.helpers.ThreadDataStore;
 
@@ -135,7 +151,13 @@ public class Model implements IdContainer<ModelException>, Storable {
 		/**
 		 * Along with calculating marginals, log probability of evidence will also be calculated (incurs additional calculation time)
 		 */
-		CALCULATE_LOGPE
+		CALCULATE_LOGPE,
+		
+		/**
+		 * Only calculate Networks and DataSets that changed since they were last calculated with this flag, and Networks downstream of them; nothing is calculated if nothing changed.<br>
+		 * Networks that are not calculated keep their compiled junction trees and results.
+		 */
+		SKIP_UNCHANGED
 	}
 	
 	public static enum ConversionFlag {
@@ -152,13 +174,13 @@ public class Model implements IdContainer<ModelException>, Storable {
 	
 	/**
 	 * ID-Network map of this Model
-	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on IDContainer.class
+	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on the map itself
 	 */
 	private final Map<Id, Network> networks = Collections.synchronizedMap(new LinkedHashMap<>());
 	
 	/**
 	 * ID-DataSet map of this Model
-	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on IDContainer.class
+	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on the map itself
 	 */
 	private final Map<Id, DataSet> dataSets = Collections.synchronizedMap(new LinkedHashMap<>());
 	
@@ -167,6 +189,33 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 */
 	private uk.co.agena.minerva.model.Model logicModel;
 	
+	/**
+	 * Logic scenario to its index in the logic model scenario list.
+	 * <br>
+	 * Dropped whenever a DataSet is created or removed and rebuilt lazily on next lookup.
+	 */
+	private volatile Map<Scenario, Integer> scenarioIndex = null;
+	
+	/**
+	 * Records Networks and DataSets calculated with {@link CalculationFlag#SKIP_UNCHANGED}
+	 */
+	private final CalculationTracker calculationTracker = new CalculationTracker(this);
+	
+	/**
+	 * Listeners registered with this Model
+	 */
+	private final List<CalculationListener> calculationListeners = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Policy for releasing calculation results, or null to keep all results
+	 */
+	private volatile ResultRetention resultRetention = null;
+	
+	/**
+	 * Listeners registered for all Models through ServiceLoader, loaded on first use
+	 */
+	private static volatile List<CalculationListener> serviceCalculationListeners = null;
+	
 	/**
 	 * Should be set on model load, and then saved on model save
 	 */
@@ -234,12 +283,43 @@ public class Model implements IdContainer<ModelException>, Storable {
 				throw new ModelException("Failed to convert CMP model data", ex);
 			}
 		}
+		else if (BinaryModelAdapter.isBinary(FileAdapter.stripGzipExtension(path))){
+			try {
+				if (FileAdapter.isGzip(path)){
+					try (InputStream stream = FileAdapter.newInputStream(filePath)){
+						model = Model.createModel(BinaryModelAdapter.read(stream));
+					}
+				}
+				else {
+					model = Model.createModel(BinaryModelAdapter.read(filePath));
+				}
+			}
+			catch (AdapterException | IOException ex){
+				throw new ModelException("Model data is malformed or inacessible", ex);
+			}
+			catch (JSONException ex){
+				throw new ModelException("Model data is invalid", ex);
+			}
+		}
 		else {
 			try {
-				JSONObject json = FileAdapter.extractJSONObject(path);
-				model = Model.createModel(json);
+				if (!FileAdapter.isGzip(path) && JSONModelReader.isJson(filePath, Charset.defaultCharset())){
+					// Stream JSON rather than reading the whole file into memory first
+					model = Model.createModel(JSONModelReader.read(filePath, Charset.defaultCharset()));
+				}
+				else {
+					// XML or compressed content, read in a single pass
+					try (BufferedReader reader = FileAdapter.newReader(filePath, Charset.defaultCharset())){
+						if (FileAdapter.peekContent(reader) == '<'){
+							model = Model.createModel(XMLAdapter.xmlToJson(reader));
+						}
+						else {
+							model = Model.createModel(JSONModelReader.read(reader));
+						}
+					}
+				}
 			}
-			catch (AdapterException ex){
+			catch (AdapterException | IOException ex){
 				throw new ModelException("Model data is malformed or inacessible", ex);
 			}
 			catch (JSONException ex){
@@ -251,6 +331,45 @@ public class Model implements IdContainer<ModelException>, Storable {
 			throw new ModelException("Failed to load model from path");
 		}
 		
+		return loaded(model);
+	}
+	
+	/**
+	 * Loads a Model from JSON provided by a stream in the platform's default charset.
+	 * <br>
+	 * The stream is read once and is not closed.
+	 * 
+	 * @param stream stream of model JSON
+	 * 
+	 * @return loaded Model
+	 * 
+	 * @throws ModelException if failed to read the stream; or if JSON was corrupt or missing required attributes
+	 */
+	public static Model loadModel(InputStream stream) throws ModelException {
+		Logger.logIfDebug("Loading model from stream");
+		
+		Model model;
+		try {
+			model = Model.createModel(JSONModelReader.read(stream, Charset.defaultCharset()));
+		}
+		catch (AdapterException ex){
+			throw new ModelException("Model data is malformed or inacessible", ex);
+		}
+		catch (JSONException ex){
+			throw new ModelException("Model data is invalid", ex);
+		}
+		
+		return loaded(model);
+	}
+	
+	/**
+	 * Adds a default DataSet to a freshly loaded Model if it has none.
+	 * 
+	 * @param model loaded Model
+	 * 
+	 * @return the same Model
+	 */
+	private static Model loaded(Model model) {
 		if (model.getDataSets().isEmpty()){
 			Logger.logIfDebug("Model has no DataSets, adding one automatically");
 			model.createDataSet("Case 1");
@@ -328,11 +447,48 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @throws JSONException if JSON structure is invalid or inconsistent
 	 */
 	public static Model createModel(JSONObject json) throws ModelException, JSONException {
+		return createModel(json, null);
+	}
+	
+	/**
+	 * Factory method to create an instance of a Model from model JSON read by {@link JSONModelReader}.
+	 * <br>
+	 * DataSets are created one at a time as they are read, in the same order as when created from a single JSONObject.
+	 * 
+	 * @param content model structure and DataSets
+	 * 
+	 * @return Model created Model
+	 * 
+	 * @throws ModelException if failed to create any of the components
+	 * @throws JSONException if JSON structure is invalid or inconsistent
+	 */
+	public static Model createModel(JSONModelReader.Content content) throws ModelException, JSONException {
+		try {
+			return createModel(content.getStructure(), content.getDataSets());
+		}
+		finally {
+			// Release the source if DataSets were not read to the end
+			content.close();
+		}
+	}
+	
+	/**
+	 * Creates a Model from JSON, optionally with DataSets provided separately.
+	 * 
+	 * @param json JSONObject representing this model
+	 * @param dataSets DataSets to create instead of the model's DataSets array, or null to use the array
+	 * 
+	 * @return Model created Model
+	 * 
+	 * @throws ModelException if failed to create any of the components
+	 * @throws JSONException if JSON structure is invalid or inconsistent
+	 */
+	private static Model createModel(JSONObject json, Iterable<JSONObject> dataSets) throws ModelException, JSONException {
 		Model model = null;
 		try {
 			model = createModel();
 			ThreadDataStore.getStore().put(ThreadDataStore.Dictionary.SkipFireEvents.toString(), true);
-			model.absorb(json);
+			model.absorb(json, dataSets);
 		}
 		catch(ModelException | JSONException e){
 			throw e;
@@ -368,6 +524,19 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @throws JSONException if JSON structure is invalid or inconsistent
 	 */
 	public void absorb(JSONObject json) throws ModelException, JSONException {
+		absorb(json, null);
+	}
+	
+	/**
+	 * Creates all the Model structure from the provided JSONObject, with DataSets optionally provided separately.
+	 * 
+	 * @param json JSONObject representing this model
+	 * @param dataSets DataSets to create instead of the model's DataSets array, or null to use the array
+	 * 
+	 * @throws ModelException if failed to create any of the components
+	 * @throws JSONException if JSON structure is invalid or inconsistent
+	 */
+	private void absorb(JSONObject json, Iterable<JSONObject> dataSets) throws ModelException, JSONException {
 		
 		Model model = this;
 		
@@ -499,7 +668,17 @@ public class Model implements IdContainer<ModelException>, Storable {
 		}
 		
 		// Load and apply DataSets
-		JSONArray jsonDataSets = jsonModel.optJSONArray(DataSet.Field.dataSets.toString());
+		if (dataSets != null){
+			for(JSONObject jsonDataSet: dataSets){
+				try {
+					model.createDataSet(jsonDataSet);
+				}
+				catch (JSONException ex){
+					throw new ModelException("Failed to create Network", ex);
+				}
+			}
+		}
+		JSONArray jsonDataSets = dataSets != null ? null : jsonModel.optJSONArray(DataSet.Field.dataSets.toString());
 		if (jsonDataSets != null){
 			for(int i = 0; i < jsonDataSets.length(); i++){
 				try {
@@ -652,7 +831,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @throws NetworkException if a Network with this ID already exists
 	 */
 	public Network createNetwork(String id, String name) throws NetworkException {
-		synchronized (IdContainer.class){
+		synchronized (networks){
 			if (networks.containsKey(new Id(id))){
 				throw new NetworkException("Network with id `" + id + "` already exists");
 			}
@@ -840,7 +1019,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 	}
 	
 	/**
-	 * Triggers propagation in this model for provided Networks and DataSets.<br>
+	 * Triggers propagation in this model for provided Networks and DataSets with a headless CalculationContext.<br>
 	 * If either is null, all Networks or DataSets will be used instead.
 	 * 
 	 * @param networks Networks to calculate, can be null for all Networks
@@ -849,8 +1028,50 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * 
 	 * @throws CalculationException if calculation failed
 	 * @throws InconsistentEvidenceException specifically in case inconsistent evidence was detected
+	 * 
+	 * @see CalculationContext#headless()
 	 */
 	public void calculate(Collection<Network> networks, Collection<DataSet> dataSets, CalculationFlag... flags) throws CalculationException {
+		calculate(networks, dataSets, CalculationContext.headless(), flags);
+	}
+	
+	/**
+	 * Triggers propagation in this model for provided Networks and DataSets with the provided CalculationContext.<br>
+	 * If either is null, all Networks or DataSets will be used instead.
+	 * 
+	 * @param networks Networks to calculate, can be null for all Networks
+	 * @param dataSets DataSets to calculate, can be null for all DataSets
+	 * @param context engine switches to apply for this calculation; ignored if the calling thread is already inside a CalculationContext
+	 * @param flags Calculation flags
+	 * 
+	 * @throws CalculationException if calculation failed
+	 * @throws InconsistentEvidenceException specifically in case inconsistent evidence was detected
+	 */
+	public void calculate(Collection<Network> networks, Collection<DataSet> dataSets, CalculationContext context, CalculationFlag... flags) throws CalculationException {
+		calculate(networks, dataSets, new CalculationOptions().withContext(context).withFlags(flags));
+	}
+	
+	/**
+	 * Triggers propagation in this model for provided Networks and DataSets with the provided CalculationOptions.<br>
+	 * If either is null, all Networks or DataSets will be used instead.<br>
+	 * If the options have a deadline or a cancellation token, propagation is terminated once the deadline passes or the token is cancelled, and results of the DataSets being calculated are cleared so the model can be calculated again.<br>
+	 * Time spent waiting to enter the options' CalculationContext while the engine is used by calls with different switches counts towards the deadline.
+	 * 
+	 * @param networks Networks to calculate, can be null for all Networks
+	 * @param dataSets DataSets to calculate, can be null for all DataSets
+	 * @param options flags, context, deadline, cancellation token and progress listener for this calculation; null for defaults
+	 * 
+	 * @throws CalculationException if calculation failed
+	 * @throws InconsistentEvidenceException specifically in case inconsistent evidence was detected
+	 * @throws CalculationCancelledException if the calculation was cancelled or ran past its deadline
+	 */
+	public void calculate(Collection<Network> networks, Collection<DataSet> dataSets, CalculationOptions options) throws CalculationException {
+		
+		if (options == null){
+			options = new CalculationOptions();
+		}
+		
+		CalculationFlag[] flags = options.getFlags();
 		
 		if (networks == null){
 			networks = getNetworks().values();
@@ -873,20 +1094,36 @@ public class Model implements IdContainer<ModelException>, Storable {
 			createDataSet("Scenario 1");
 		}
 		
+		boolean skipUnchanged = Arrays.asList(flags).contains(CalculationFlag.SKIP_UNCHANGED);
+		String flagsKey = Arrays.stream(flags).filter(flag -> flag != CalculationFlag.SKIP_UNCHANGED).map(Enum::name).sorted().distinct().collect(Collectors.joining(","));
+		
+		if (skipUnchanged){
+			if (dataSets.isEmpty()){
+				dataSets = getDataSets().values();
+			}
+			
+			Map.Entry<Set<Network>, Set<DataSet>> dirty = calculationTracker.selectDirty(networks, dataSets, flagsKey);
+			if (dirty.getKey().isEmpty()){
+				Logger.logIfDebug("Nothing changed since last calculation, skipping");
+				return;
+			}
+			networks = dirty.getKey();
+			dataSets = dirty.getValue();
+		}
+		
+		if (options.isCancelled() || options.isTimedOut()){
+			throw new CalculationCancelledException(options.isCancelled() ? "Calculation cancelled" : "Calculation deadline passed", !options.isCancelled());
+		}
+		
+		// Results about to be replaced are no longer known to match the recorded state
+		calculationTracker.forget(networks, dataSets);
+		
 		networks.stream().forEach(net -> {
 			// Force to recalculate
 			String s = "Calculation requested";
 			net.getLogicNetwork().addModificationLogItem(new NameDescription(s, s));
 		});
 		
-		boolean SimulationSettingWarningMessage = getLogicModel().SimulationSettingWarningMessage;
-		boolean checkMonitorsOpen = uk.co.agena.minerva.model.Model.checkMonitorsOpen;
-		String suppressMessages = uk.co.agena.minerva.model.Model.suppressMessages;
-
-		getLogicModel().SimulationSettingWarningMessage = false;
-		uk.co.agena.minerva.model.Model.checkMonitorsOpen = false;
-		uk.co.agena.minerva.model.Model.suppressMessages = "system";
-		
 		//EnumSet<CalculationFlag> xflags = (flags.length > 0) ? EnumSet.copyOf(Arrays.asList(flags)) : EnumSet.noneOf(CalculationFlag.class);
 		List<PropagationFlag> flagsToPass = new ArrayList();
 		for (CalculationFlag flag: flags) {
@@ -907,10 +1144,15 @@ public class Model implements IdContainer<ModelException>, Storable {
 			}
 		}
 		
+		// Waiting for calls with different engine switches counts towards the deadline
+		CalculationContext.Scope scope = options.getContext().enter(getLogicModel(), options.getDeadline());
+		
 		this.calculationDebugMessages = "";
 		StreamInterceptor.output_capture();
 		String outputCaptured = "";
 		Throwable calcException = null;
+		CalculationEvent.Builder event = CalculationEvent.start(this, CalculationEvent.Phase.PROPAGATION);
+		CalculationOptions.Watch watch = options.watch(getLogicModel());
 		try {
 			getLogicModel().propagateDDAlgorithm(
 					dataSets.stream().map(ds -> ds.getLogicScenario()).collect(Collectors.toList()),
@@ -922,10 +1164,9 @@ public class Model implements IdContainer<ModelException>, Storable {
 			calcException = ex;
 		}
 		finally {
+			watch.close();
 			outputCaptured += StreamInterceptor.output_release();
-			getLogicModel().SimulationSettingWarningMessage = SimulationSettingWarningMessage;
-			uk.co.agena.minerva.model.Model.checkMonitorsOpen = checkMonitorsOpen;
-			uk.co.agena.minerva.model.Model.suppressMessages = suppressMessages;
+			scope.close();
 			if (!outputCaptured.trim().isEmpty()){
 				this.calculationDebugMessages = outputCaptured;
 				Logger.logIfDebug(outputCaptured);
@@ -935,6 +1176,30 @@ public class Model implements IdContainer<ModelException>, Storable {
 		if (calcException != null){
 			Logger.printThrowableIfDebug(calcException);
 		}
+		
+		if (event != null){
+			event.networks(networks)
+					.dataSets(dataSets)
+					.successful(calcException == null && !watch.isStopped() && getLogicModel().isLastPropagationSuccessful())
+					.detail("flags", Arrays.toString(flags))
+					.detail("stopped", watch.isStopped())
+					.fire();
+		}
+		
+		if (watch.isStopped()){
+			// Whatever the terminated propagation left behind is partial, drop it so the model can be calculated again
+			dataSets.forEach(dataSet -> {
+				try {
+					dataSet.clearCalculationResults();
+				}
+				catch (RuntimeException ex){
+					Logger.logIfDebug("Failed to clear results of DataSet " + dataSet.getId() + ": " + ex.getMessage());
+				}
+			});
+			String message = watch.isTimedOut() ? "Calculation deadline passed" : "Calculation cancelled";
+			throw new CalculationCancelledException(message, watch.isTimedOut());
+		}
+		
 		if (!getLogicModel().isLastPropagationSuccessful() || calcException != null){
 			Logger.logIfDebug("Calculation failed. Propagation OK flag: " + getLogicModel().isLastPropagationSuccessful());
 			
@@ -979,6 +1244,18 @@ public class Model implements IdContainer<ModelException>, Storable {
 			
 			throw new CalculationException(message);
 		}
+		
+		ResultRetention retention = resultRetention;
+		if (retention != null && retention.getMonitoredNodes() != null){
+			(dataSets.isEmpty() ? getDataSetList() : dataSets).forEach(dataSet -> dataSet.retainCalculationResults(retention));
+		}
+		else {
+			(dataSets.isEmpty() ? getDataSetList() : dataSets).forEach(DataSet::resetReleasedResults);
+		}
+		
+		if (skipUnchanged){
+			calculationTracker.record(networks, dataSets, flagsKey);
+		}
 	}
 	
 	/**
@@ -999,14 +1276,21 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 */
 	public JSONObject inspectJunctionTrees(int simNodeStates) {
 		// Suppress GUI dialogs from the (headless) engine while inspecting, matching calculate().
-		String suppressMessages = uk.co.agena.minerva.model.Model.suppressMessages;
-		uk.co.agena.minerva.model.Model.suppressMessages = "system";
-		JunctionTreeReport report;
-		try {
+		CalculationEvent.Builder event = CalculationEvent.start(this, CalculationEvent.Phase.JUNCTION_TREE_COMPILATION);
+		JunctionTreeReport report = null;
+		try (CalculationContext.Scope scope = CalculationContext.headless().enter(getLogicModel())){
 			report = getLogicModel().inspectJunctionTrees(simNodeStates);
 		}
 		finally {
-			uk.co.agena.minerva.model.Model.suppressMessages = suppressMessages;
+			if (event != null){
+				event.networks(getNetworkList()).successful(report != null).detail("simNodeStates", simNodeStates);
+				if (report != null){
+					event.cliques(report.modelMaxCliqueCells, report.modelTotalCells)
+							.detail("estimatedBytes", report.estimatedBytes)
+							.detail("infeasible", report.infeasible);
+				}
+				event.fire();
+			}
 		}
 
 		final double MB = 1024.0 * 1024.0;
@@ -1068,10 +1352,9 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * or defeated by the same size problem must never replace the real error with a diagnostic error.
 	 */
 	private String describeInfeasibility() {
-		// calculate() restores suppressMessages in its finally block before reaching here, so the probe
-		// has to suppress dialogs again itself or it can fail outright in a headless run.
-		String suppressMessages = uk.co.agena.minerva.model.Model.suppressMessages;
-		uk.co.agena.minerva.model.Model.suppressMessages = "system";
+		// calculate() leaves its CalculationContext before reaching here, so the probe has to enter one
+		// again itself or it can fail outright in a headless run.
+		CalculationContext.Scope scope = CalculationContext.headless().enter(getLogicModel());
 		try {
 			JunctionTreeReport report = getLogicModel().inspectJunctionTrees(20);
 
@@ -1144,7 +1427,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 			return "";
 		}
 		finally {
-			uk.co.agena.minerva.model.Model.suppressMessages = suppressMessages;
+			scope.close();
 		}
 	}
 
@@ -1153,138 +1436,253 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * Output format is determined by path extension:<br>
 	 * • AgenaRisk 7 CMP for "cmp"<br>
 	 * • XML for "xml"<br>
+	 * • Binary container with compiled tables and results stored as raw blocks for "cmpb", see {@link BinaryModelAdapter}<br>
 	 * • JSON for everything else<br>
+	 * Other than for CMP, an additional "gz" extension compresses the output with gzip, e.g. "model.cmpx.gz".<br>
+	 * JSON and XML are written directly to the file without building the whole text in memory.
 	 * 
 	 * @param path the file path to save to
 	 * 
 	 * @throws FileIOException if saving fails
 	 */
 	public void save(String path) throws FileIOException {
+		String format = FileAdapter.stripGzipExtension(path).toLowerCase();
+		
+		if (format.endsWith(".cmp") && FileAdapter.isGzip(path)){
+			throw new FileIOException("CMP models can not be saved compressed");
+		}
+		
 		try {
-			if (path.toLowerCase().endsWith(".cmp")){
+			if (format.endsWith(".cmp")){
 				getLogicModel().save(path);
+				return;
 			}
-			else {
-				JSONObject json = toJson();
-				
-				String content;
-				
-				if (path.toLowerCase().endsWith(".xml")){
-					content = XMLAdapter.toXMLString(json);
+			
+			JSONObject json = toJson();
+			
+			try (OutputStream stream = FileAdapter.newOutputStream(Paths.get(path))){
+				if (BinaryModelAdapter.isBinary(format)){
+					BinaryModelAdapter.write(json, stream);
+				}
+				else if (format.endsWith(".xml")){
+					XMLAdapter.writeXML(json, stream, Charset.defaultCharset());
 				}
 				else {
-					content = json.toString();
+					Writer writer = new OutputStreamWriter(stream, Charset.defaultCharset());
+					json.write(writer);
+					writer.flush();
 				}
-				
-				Files.write(Paths.get(path), content.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
 			}
 		}
-		catch (FileHandlingException | IOException | JSONException ex){
+		catch (FileHandlingException | IOException | JSONException | AdapterException ex){
 			throw new FileIOException("Failed to save the model", ex);
 		}
 	}
 	
 	/**
-	 * Returns the Model as a minimal JSON.<br>
-	 * Keeps only elements essential for a clean calculation.<br>
+	 * Creates a copy of this Model directly in memory, without exporting it to JSON and creating a new Model from that JSON.
+	 * <br>
+	 * Networks, Nodes, Links, tables, settings, meta and graphics are copied as they are. Flags select what else to keep in the same way as for export:
+	 * <br>
+	 * ∙ DataSets are copied only with KEEP_OBSERVATIONS or KEEP_RESULTS
+	 * <br>
+	 * ∙ Copied DataSets keep observations only with KEEP_OBSERVATIONS and calculation results only with KEEP_RESULTS
+	 * <br>
+	 * ∙ The risk table is copied only with KEEP_RISK_TABLE
+	 * <br>
+	 * Other flags have no effect.
 	 * 
 	 * @param flags flags specifying which attributes to keep
 	 * 
-	 * @return minimal JSON
+	 * @return the copy of this Model
 	 * 
-	 * @throws AdapterException if conversion to JSON fails
+	 * @throws ModelException if the underlying logic model failed to be copied
 	 */
-	public JSONObject export(ExportFlag... flags) throws AdapterException {
-		
-		JSONObject json = JSONAdapter.toJSONObject(logicModel);
-		
+	public Model copy(ExportFlag... flags) throws ModelException {
 		EnumSet<ExportFlag> xflags = (flags.length > 0) ? EnumSet.copyOf(Arrays.asList(flags)) : EnumSet.noneOf(ExportFlag.class);
 		
+		uk.co.agena.minerva.model.Model logicCopy;
 		try {
-
-			JSONObject jsonModel = json.optJSONObject(Model.Field.model.toString());
-			JSONArray jsonDataSets = jsonModel.optJSONArray(DataSet.Field.dataSets.toString());
-
-			if (jsonDataSets != null){
-				
-				if (jsonDataSets.length() > 0 && xflags.contains(ExportFlag.CLOUD_DATASET)){
-					// If there are data sets and cloud flag set, copy the first data set without results to root json
-					JSONObject jDataSet = jsonDataSets.optJSONObject(0);
-					json.put(DataSet.Field.dataSet.toString(), jDataSet);
-					jDataSet = json.getJSONObject(DataSet.Field.dataSet.toString());
-					jDataSet.remove(CalculationResult.Field.results.toString());
-				}
-				
-				if (!xflags.contains(ExportFlag.KEEP_RESULTS) && !xflags.contains(ExportFlag.KEEP_OBSERVATIONS)){
-					// If there are data sets but we are not keeping results nor observations, remove all data sets
-					jsonModel.remove(DataSet.Field.dataSets.toString());
+			logicCopy = uk.co.agena.minerva.model.Model.deepCopyInMemory(logicModel);
+		}
+		catch (Exception ex){
+			throw new ModelException("Failed to copy the logic model", ex);
+		}
+		
+		Model copy = new Model(logicCopy);
+		copy.jsonTexts = JSONUtils.copy(jsonTexts);
+		copy.jsonPictures = JSONUtils.copy(jsonPictures);
+		copy.jsonGraphics = JSONUtils.copy(jsonGraphics);
+		copy.jsonMeta = JSONUtils.copy(jsonMeta);
+		copy.jsonAudit = JSONUtils.copy(jsonAudit);
+		
+		// Wrap copied logic networks and nodes
+		Map<Node, Node> nodeCopies = new IdentityHashMap<>();
+		for(Network network: getNetworkList()){
+			ExtendedBN logicNetwork = logicCopy.getExtendedBNList().getExtendedBNWithConnID(network.getId());
+			if (logicNetwork == null){
+				throw new ModelException("Network `" + network.getId() + "` missing from the logic model copy");
+			}
+			Network networkCopy = network.copyTo(copy, logicNetwork, xflags.contains(ExportFlag.KEEP_RISK_TABLE));
+			copy.networks.put(new Id(network.getId()), networkCopy);
+			
+			for(Node node: network.getNodeList()){
+				ExtendedNode logicNode = logicNetwork.getExtendedNodeWithUniqueIdentifier(node.getId());
+				if (logicNode == null){
+					throw new ModelException("Node " + node.toStringExtra() + " missing from the logic model copy");
 				}
-				else {
-					jsonDataSets.forEach(o -> {
-						if (o instanceof JSONObject){
-							JSONObject jDataSet = (JSONObject) o;
-							if (!xflags.contains(ExportFlag.KEEP_RESULTS)){
-								jDataSet.remove(CalculationResult.Field.results.toString());
-							}
-							
-							if (!xflags.contains(ExportFlag.KEEP_OBSERVATIONS)){
-								jDataSet.remove(Observation.Field.observations.toString());
-							}
-						}
-					});
+				Node nodeCopy = node.copyTo(networkCopy, logicNode);
+				networkCopy.addCopiedNode(nodeCopy);
+				nodeCopies.put(node, nodeCopy);
+			}
+		}
+		
+		// Logic cross network links are copied in the same order, so match them by position
+		Map<MessagePassingLink, MessagePassingLink> logicLinkCopies = new IdentityHashMap<>();
+		List<MessagePassingLinks> mplsOriginal = (List<MessagePassingLinks>) logicModel.getMessagePassingLinks();
+		List<MessagePassingLinks> mplsCopy = (List<MessagePassingLinks>) logicCopy.getMessagePassingLinks();
+		for (int i = 0; i < Math.min(mplsOriginal.size(), mplsCopy.size()); i++) {
+			List<MessagePassingLink> linksOriginal = (List<MessagePassingLink>) mplsOriginal.get(i).getLinks();
+			List<MessagePassingLink> linksCopy = (List<MessagePassingLink>) mplsCopy.get(i).getLinks();
+			for (int j = 0; j < Math.min(linksOriginal.size(), linksCopy.size()); j++) {
+				logicLinkCopies.put(linksOriginal.get(j), linksCopy.get(j));
+			}
+		}
+		
+		// Copy Links keeping their order both among parents of a Node and among its children
+		Map<Link, Link> linkCopies = new IdentityHashMap<>();
+		for(Network network: getNetworkList()){
+			for(Node node: network.getNodeList()){
+				for(Link link: node.getLinksIn()){
+					Link linkCopy = link.copyTo(nodeCopies.get(link.getFromNode()), nodeCopies.get(node), logicLinkCopies);
+					linkCopies.put(link, linkCopy);
+					nodeCopies.get(node).addLink(linkCopy);
 				}
 			}
-			
-			if (!xflags.contains(ExportFlag.KEEP_RISK_TABLE)){
-				jsonModel.remove(RiskTable.Field.riskTable.toString());
+		}
+		for(Network network: getNetworkList()){
+			for(Node node: network.getNodeList()){
+				for(Link link: node.getLinksOut()){
+					nodeCopies.get(node).addLink(linkCopies.get(link));
+				}
 			}
-			
-			if (!xflags.contains(ExportFlag.KEEP_META)){
-				jsonModel.remove(Audit.Field.audit.toString());
-				jsonModel.remove(Meta.Field.meta.toString());
+		}
+		
+		// Wrap logic scenarios of DataSets to keep and remove the rest
+		List<Scenario> scenariosCopy = new ArrayList<>((List<Scenario>) logicCopy.getScenarioList().getScenarios());
+		Set<Scenario> scenariosKept = Collections.newSetFromMap(new IdentityHashMap<>());
+		if (xflags.contains(ExportFlag.KEEP_OBSERVATIONS) || xflags.contains(ExportFlag.KEEP_RESULTS)){
+			for(DataSet dataSet: getDataSetList()){
+				int index = getScenarioIndex(dataSet.getLogicScenario());
+				if (index < 0 || index >= scenariosCopy.size()){
+					throw new ModelException("DataSet `" + dataSet.getId() + "` missing from the logic model copy");
+				}
+				Scenario scenarioCopy = scenariosCopy.get(index);
+				copy.dataSets.put(new Id(dataSet.getId()), DataSet.createDataSet(copy, scenarioCopy));
+				scenariosKept.add(scenarioCopy);
 			}
-
-			JSONUtils.traverse(json, (obj -> {
-				if (obj instanceof JSONObject){
-					JSONObject jo = ((JSONObject) obj);
-					if (!xflags.contains(ExportFlag.KEEP_META)){
-						if (jo.has(Network.Field.id.toString())){
-							// If the object has an ID, we can remove its name and description
-							jo.remove(Network.Field.name.toString());
-							jo.remove(Network.Field.description.toString());
-						}
-						jo.remove(Meta.Field.meta.toString());
-					}
-
-					// Remove graphics from all objects
-					if (!xflags.contains(ExportFlag.KEEP_GRAPHICS)){
-						jo.remove(Graphics.Field.graphics.toString());
-					}
-
-					jo.remove(Network.ModificationLog.modificationLog.toString());
-
-					if (jo.has(NodeConfiguration.Field.configuration.toString()) && jo.optJSONObject(NodeConfiguration.Field.configuration.toString()).has(NodeConfiguration.Table.table.toString())){
-						// Object is node with configuration and table
-						JSONObject jsonTable = jo.optJSONObject(NodeConfiguration.Field.configuration.toString()).optJSONObject(NodeConfiguration.Table.table.toString());
-						String tableType = jsonTable.optString(NodeConfiguration.Table.type.toString());
-						boolean inputNode = jo.optJSONObject(NodeConfiguration.Field.configuration.toString()).optBoolean(NodeConfiguration.Field.input.toString(), false);
-						
-						if (inputNode || !Objects.equals(tableType, NodeConfiguration.TableType.Manual.toString()) && !xflags.contains(ExportFlag.KEEP_TABLES)){
-							// Input node or (not manual table and no keep-tables flag)
-							jsonTable.remove(NodeConfiguration.Table.nptCompiled.toString());
-							jsonTable.remove(NodeConfiguration.Table.probabilities.toString());
-						}
-					}
+		}
+		
+		for(Scenario scenario: scenariosCopy){
+			if (!scenariosKept.contains(scenario)){
+				try {
+					logicCopy.removeScenario(scenario);
+				}
+				catch (ScenarioNotFoundException ex){
+					// Already removed
 				}
-			}));
+			}
+		}
+		copy.invalidateScenarioIndex();
+		
+		for(DataSet dataSetCopy: copy.getDataSetList()){
+			if (!xflags.contains(ExportFlag.KEEP_OBSERVATIONS)){
+				dataSetCopy.getLogicScenario().clearAllObservations(false);
+			}
+			if (!xflags.contains(ExportFlag.KEEP_RESULTS)){
+				dataSetCopy.clearCalculationResults();
+			}
+		}
+		
+		if (!xflags.contains(ExportFlag.KEEP_RISK_TABLE)){
+			logicCopy.getQuestionnaireList().getQuestionnaires().clear();
+			logicCopy.getMetaData().getRootMetaDataItem().getConnQuestionnaireList().getQuestionnaires().clear();
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * Returns the Model as a minimal JSON.<br>
+	 * Keeps only elements essential for a clean calculation.<br>
+	 * 
+	 * @param flags flags specifying which attributes to keep
+	 * 
+	 * @return minimal JSON
+	 * 
+	 * @throws AdapterException if conversion to JSON fails
+	 */
+	public JSONObject export(ExportFlag... flags) throws AdapterException {
+		CalculationEvent.Builder event = CalculationEvent.start(this, CalculationEvent.Phase.EXPORT);
+		boolean successful = false;
+		try {
+			JSONObject json = exportJson(flags);
+			successful = true;
+			return json;
+		}
+		finally {
+			if (event != null){
+				event.successful(successful).detail("flags", Arrays.toString(flags)).fire();
+			}
+		}
+	}
+	
+	/**
+	 * Converts the Model to JSON the same way as {@link #export(ExportFlag...)}, but without reporting an EXPORT event to {@link CalculationListener}s.<br>
+	 * Used for internal conversions such as cache keys, which are not exports requested by the user.
+	 * 
+	 * @param flags flags specifying which attributes to keep
+	 * 
+	 * @return minimal JSON
+	 * 
+	 * @throws AdapterException if conversion to JSON fails
+	 */
+	JSONObject exportJson(ExportFlag... flags) throws AdapterException {
+		
+		EnumSet<ExportFlag> xflags = (flags.length > 0) ? EnumSet.copyOf(Arrays.asList(flags)) : EnumSet.noneOf(ExportFlag.class);
+		
+		try {
+			// Excluded sections are never encoded
+			return JSONAdapter.toJSONObject(logicModel, xflags);
 		}
 		catch (NullPointerException | JSONException ex){
 			Logger.printThrowableIfDebug(ex);
 			// Try again without any modifications
 			return toJson();
 		}
-		
-		return json;
+	}
+	
+	/**
+	 * Writes the Model as a minimal JSON to the provided stream in the platform's default charset, without building the JSON text in memory first.<br>
+	 * The stream is not closed.
+	 * 
+	 * @param stream stream to write to
+	 * @param flags flags specifying which attributes to keep
+	 * 
+	 * @throws AdapterException if conversion to JSON or writing fails
+	 * 
+	 * @see #export(ExportFlag...)
+	 */
+	public void export(OutputStream stream, ExportFlag... flags) throws AdapterException {
+		JSONObject json = export(flags);
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stream, Charset.defaultCharset()), 65536);
+			json.write(writer);
+			writer.flush();
+		}
+		catch (IOException | JSONException ex){
+			throw new AdapterException("Failed to write model JSON", ex);
+		}
 	}
 	
 	/**
@@ -1298,16 +1696,13 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @throws FileIOException if saving fails
 	 */
 	public void saveEssentials(String path, boolean keepMeta) throws FileIOException {
-		try {
-			JSONObject json;
+		try (OutputStream stream = FileAdapter.newOutputStream(Paths.get(path))){
 			if (keepMeta){
-				json = export(Model.ExportFlag.CLOUD_DATASET, Model.ExportFlag.KEEP_META);
+				export(stream, Model.ExportFlag.CLOUD_DATASET, Model.ExportFlag.KEEP_META);
 			}
 			else {
-				json = export(Model.ExportFlag.CLOUD_DATASET);
+				export(stream, Model.ExportFlag.CLOUD_DATASET);
 			}
-			Files.write(Paths.get(path), json.toString().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-			
 		}
 		catch (AdapterException | NullPointerException | IOException ex){
 			throw new FileIOException("Failed to save the model", ex);
@@ -1325,7 +1720,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @throws DataSetException if a DataSet with this ID already exists
 	 */
 	public DataSet createDataSet(String id) throws DataSetException {
-		synchronized (IdContainer.class){
+		synchronized (dataSets){
 			if (dataSets.containsKey(new Id(id))){
 				throw new DataSetException("DataSet with id `" + id + "` already exists");
 			}
@@ -1334,6 +1729,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 		
 		DataSet dataset = DataSet.createDataSet(this, id);
 		dataSets.put(new Id(id), dataset);
+		invalidateScenarioIndex();
 		
 		return dataset;
 	}
@@ -1527,6 +1923,25 @@ public class Model implements IdContainer<ModelException>, Storable {
 		return new ArrayList<>(dataSets.values());
 	}
 	
+	/**
+	 * Reads calculation results of the given Nodes for the given DataSets into primitive blocks, one per Node.
+	 * <br>
+	 * Use instead of DataSet.getCalculationResults() when exporting results of many DataSets, as no CalculationResult objects are created.
+	 * 
+	 * @param dataSets DataSets of this Model, which become rows of every block in the order provided
+	 * @param nodes Nodes of this Model to read results for
+	 * 
+	 * @return map of Nodes to their result blocks, in the order of Nodes provided
+	 * 
+	 * @see CalculationResultBlock
+	 */
+	public Map<Node, CalculationResultBlock> getCalculationResultBlocks(List<DataSet> dataSets, Collection<Node> nodes) {
+		if (!dataSets.isEmpty() && !Objects.equals(this, dataSets.get(0).getModel())){
+			throw new AgenaRiskRuntimeException("DataSet `" + dataSets.get(0).getId() + "` belongs to a different Model");
+		}
+		return CalculationResultBlock.getCalculationResultBlocks(dataSets, nodes);
+	}
+	
 	/**
 	 * Creates a Link between two nodes in same or different Networks.
 	 * 
@@ -1656,13 +2071,29 @@ public class Model implements IdContainer<ModelException>, Storable {
 	
 	/**
 	 * Performs binary factorization on the model if there are any simulation nodes with more than 3 parents.<br>
-	 * This involves the model being recreated from scratch and all previously held references to pre-existing objects in the Model will become invalid and should be released.
+	 * This involves the model being recreated from scratch and all previously held references to pre-existing objects in the Model will become invalid and should be released.<br>
+	 * The factorised model is kept in {@link FactorisationCache}, so factorising another model with the same content (apart from DataSets) is done in memory. DataSet observations and calculation results are kept.
 	 * 
 	 * @return false if no factorization was required, true if successfully factorized
 	 * 
 	 * @throws com.agenarisk.api.exception.ModelException if failed to factorize
 	 */
 	public boolean factorize() throws ModelException{
+		CalculationEvent.Builder event = CalculationEvent.start(this, CalculationEvent.Phase.FACTORISATION);
+		boolean successful = false;
+		try {
+			boolean factorized = factorize(event);
+			successful = true;
+			return factorized;
+		}
+		finally {
+			if (event != null){
+				event.successful(successful).fire();
+			}
+		}
+	}
+	
+	private boolean factorize(CalculationEvent.Builder event) throws ModelException{
 		
 		BinaryBNConverter converter = new BinaryBNConverter(getLogicModel(), false);
 		
@@ -1725,12 +2156,49 @@ public class Model implements IdContainer<ModelException>, Storable {
 			}
 		}
 		
+		if (event != null){
+			event.networks(networksList).detail("factorised", factorizeAny);
+		}
+		
 		if (!factorizeAny){
 			return false;
 		}
 		
 		JSONObject settingsOriginal = Settings.toJson(logicModel);
 		
+		String cacheKey;
+		try {
+			cacheKey = FactorisationCache.key(this) + Arrays.toString(factorizeFlags);
+		}
+		catch (AdapterException ex){
+			throw new ModelException("Failed to factorize", ex);
+		}
+		
+		String jsonCached = FactorisationCache.get(cacheKey);
+		if (event != null){
+			event.detail("cached", jsonCached != null);
+		}
+		if (jsonCached != null){
+			try {
+				// Same model was factorised before, rebuild from the cached model and carry over this model's DataSets with their results, same as the converter does
+				JSONArray jsonDataSets = new JSONArray();
+				getDataSetList().forEach(dataSet -> jsonDataSets.put(dataSet.toJson()));
+				
+				JSONObject jsonBinary = new JSONObject(jsonCached);
+				factorisedModelJson(jsonBinary).put(DataSet.Field.dataSets.toString(), jsonDataSets);
+				
+				reset();
+				absorb(jsonBinary);
+				
+				Settings.loadSettings(this, settingsOriginal);
+			}
+			catch (Exception ex){
+				throw new ModelException("Failed to factorize", ex);
+			}
+			
+			return true;
+		}
+		
 		try {
 			// Reset MessagePassingLinks.iterationCounter
 			((List<uk.co.agena.minerva.model.MessagePassingLinks>) logicModel.getMessagePassingLinks())
@@ -1746,6 +2214,11 @@ public class Model implements IdContainer<ModelException>, Storable {
 			uk.co.agena.minerva.model.Model binaryModel = uk.co.agena.minerva.model.Model.load(logicModel.getFactorizedBFModelPath());
 			JSONObject jsonBinary = JSONAdapter.toJSONObject(binaryModel);
 			
+			// Cache the factorised structure without DataSets for models with the same structure
+			JSONObject jsonStructure = JSONUtils.copy(jsonBinary);
+			factorisedModelJson(jsonStructure).remove(DataSet.Field.dataSets.toString());
+			FactorisationCache.put(cacheKey, jsonStructure.toString());
+			
 			// Reset the current model and rebuild from the JSON structure
 			// We do this to preserve the reference to this object and keep using this instance
 			reset();
@@ -1760,6 +2233,16 @@ public class Model implements IdContainer<ModelException>, Storable {
 		return true;
 	}
 	
+	/**
+	 * Returns the model object within factorised model JSON, which may or may not be wrapped in a model field.
+	 */
+	private static JSONObject factorisedModelJson(JSONObject json){
+		if (!json.has(Field.model.toString()) && json.has(Network.Field.networks.toString())){
+			return json;
+		}
+		return json.getJSONObject(Field.model.toString());
+	}
+	
 	/**
 	 * Removes the provided DataSet from the model
 	 * 
@@ -1771,13 +2254,188 @@ public class Model implements IdContainer<ModelException>, Storable {
 		try {
 			this.logicModel.removeScenario(dataSet.getLogicScenario());
 			this.dataSets.remove(new Id(dataSet.getId()));
+			calculationTracker.forget(dataSet);
 		}
 		catch (ScenarioNotFoundException ex){
 			return false;
 		}
+		finally {
+			invalidateScenarioIndex();
+		}
 		return true;
 	}
 	
+	/**
+	 * Clears calculation results of the provided DataSet and removes it from the model together with its logic scenario.
+	 * 
+	 * @param dataSet DataSet to release
+	 * 
+	 * @return true if the DataSet was removed
+	 */
+	public boolean releaseDataSet(DataSet dataSet){
+		if (!Objects.equals(this, dataSet.getModel()) || getDataSet(dataSet.getId()) != dataSet){
+			return false;
+		}
+		calculationTracker.forget(dataSet);
+		dataSet.clearCalculationResults();
+		return removeDataSet(dataSet);
+	}
+	
+	/**
+	 * Notifies the model that calculation results of the DataSet were consumed and are no longer needed.
+	 * <br>
+	 * If the ResultRetention policy releases DataSets on consume, the DataSet is released with releaseDataSet(DataSet); otherwise this has no effect.
+	 * 
+	 * @param dataSet DataSet which results were consumed
+	 * 
+	 * @return true if the DataSet was released
+	 */
+	public boolean resultsConsumed(DataSet dataSet){
+		ResultRetention retention = resultRetention;
+		if (retention == null || !retention.isReleaseOnConsume()){
+			return false;
+		}
+		return releaseDataSet(dataSet);
+	}
+	
+	/**
+	 * Sets the policy for releasing calculation results.
+	 * <br>
+	 * Monitored Nodes are applied to results of each subsequent calculation; results already calculated are not affected.
+	 * <br>
+	 * Since results released under the previous policy may be needed under the new one, all DataSets are recalculated in full by the next calculation with {@link CalculationFlag#SKIP_UNCHANGED}.
+	 * 
+	 * @param resultRetention the policy, or null to keep all results
+	 */
+	public void setResultRetention(ResultRetention resultRetention){
+		this.resultRetention = resultRetention;
+		calculationTracker.clear();
+	}
+	
+	/**
+	 * Returns the policy for releasing calculation results.
+	 * 
+	 * @return the policy, or null if all results are kept
+	 */
+	public ResultRetention getResultRetention(){
+		return resultRetention;
+	}
+	
+	/**
+	 * Looks up the index of the logic scenario in the logic model scenario list.
+	 * <br>
+	 * The index is cached and verified against the scenario list on every lookup, so it is rebuilt if scenarios were added, removed or reordered in the logic model directly. It does not depend on DataSet IDs, so renaming a DataSet does not affect it.
+	 * 
+	 * @param scenario the logic scenario
+	 * 
+	 * @return index of the scenario or -1 if it is not in the logic model
+	 */
+	protected int getScenarioIndex(Scenario scenario){
+		List<Scenario> scenarios = (List<Scenario>) getLogicModel().getScenarioList().getScenarios();
+		
+		Map<Scenario, Integer> index = scenarioIndex;
+		Integer position = (index == null) ? null : index.get(scenario);
+		
+		if (position == null || position >= scenarios.size() || scenarios.get(position) != scenario){
+			index = new IdentityHashMap<>();
+			for (int i = 0; i < scenarios.size(); i++) {
+				index.putIfAbsent(scenarios.get(i), i);
+			}
+			scenarioIndex = index;
+			position = index.get(scenario);
+		}
+		
+		return (position == null) ? -1 : position;
+	}
+	
+	/**
+	 * Registers a listener to receive timings of calculation phases of this Model.
+	 * 
+	 * @param listener the listener to add
+	 * 
+	 * @see CalculationListener
+	 */
+	public void addCalculationListener(CalculationListener listener){
+		calculationListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener previously added to this Model.
+	 * 
+	 * @param listener the listener to remove
+	 * 
+	 * @return true if the listener was registered
+	 */
+	public boolean removeCalculationListener(CalculationListener listener){
+		return calculationListeners.remove(listener);
+	}
+	
+	/**
+	 * Checks whether there are any listeners for this Model, registered directly or through ServiceLoader.
+	 * 
+	 * @return true if events of this Model are listened to
+	 */
+	protected boolean hasCalculationListeners(){
+		return !calculationListeners.isEmpty() || !getServiceCalculationListeners().isEmpty();
+	}
+	
+	/**
+	 * Passes the event to all listeners of this Model. Exceptions thrown by listeners are logged and ignored.
+	 * 
+	 * @param event the event to pass
+	 */
+	protected void fireCalculationEvent(CalculationEvent event){
+		List<CalculationListener> listeners = new ArrayList<>(getServiceCalculationListeners());
+		listeners.addAll(calculationListeners);
+		for(CalculationListener listener: listeners){
+			try {
+				listener.onEvent(event);
+			}
+			catch (RuntimeException ex){
+				Logger.logIfDebug("Calculation listener failed: " + ex.getMessage());
+			}
+		}
+	}
+	
+	private static List<CalculationListener> getServiceCalculationListeners(){
+		List<CalculationListener> listeners = serviceCalculationListeners;
+		if (listeners == null){
+			synchronized (Model.class){
+				listeners = serviceCalculationListeners;
+				if (listeners == null){
+					listeners = new ArrayList<>();
+					try {
+						for(CalculationListener listener: ServiceLoader.load(CalculationListener.class)){
+							listeners.add(listener);
+						}
+					}
+					catch (java.util.ServiceConfigurationError ex){
+						Logger.logIfDebug("Failed to load calculation listeners: " + ex.getMessage());
+					}
+					listeners = Collections.unmodifiableList(listeners);
+					serviceCalculationListeners = listeners;
+				}
+			}
+		}
+		return listeners;
+	}
+	
+	/**
+	 * Forgets that the DataSet was calculated, so that it is recalculated in full by the next calculation with {@link CalculationFlag#SKIP_UNCHANGED}.
+	 * 
+	 * @param dataSet the DataSet whose results were changed or cleared
+	 */
+	protected void forgetCalculated(DataSet dataSet){
+		calculationTracker.forget(dataSet);
+	}
+	
+	/**
+	 * Drops the cached scenario index so that it is rebuilt on next lookup.
+	 */
+	protected void invalidateScenarioIndex(){
+		scenarioIndex = null;
+	}
+	
 	/**
 	 * Make all states of dynamically discretized nodes static as they currently are in the provided DataSet.<br>
 	 * No action will be performed if no nodes are simulated.<br>
@@ -1819,6 +2477,8 @@ public class Model implements IdContainer<ModelException>, Storable {
 	public void reset(){
 		networks.clear();
 		dataSets.clear();
+		invalidateScenarioIndex();
+		calculationTracker.clear();
 		jsonTexts = null;
 		jsonPictures = null;
 		jsonGraphics = null;
@@ -1893,7 +2553,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 * @return new available DataSet ID
 	 */
 	public String getAvailableDataSetId(String prefix){
-		synchronized (IdContainer.class){
+		synchronized (dataSets){
 			if (prefix == null || prefix.trim().isEmpty()){
 				prefix = "Data Set";
 			}
@@ -1915,15 +2575,10 @@ public class Model implements IdContainer<ModelException>, Storable {
 	 */
 	private void regenerateLogicTables(){
 		Logger.logIfDebug("Regenerating NPTs", 3);
-		boolean SimulationSettingWarningMessage = getLogicModel().SimulationSettingWarningMessage;
-		boolean checkMonitorsOpen = uk.co.agena.minerva.model.Model.checkMonitorsOpen;
-		String suppressMessages = uk.co.agena.minerva.model.Model.suppressMessages;
-		getLogicModel().SimulationSettingWarningMessage = false;
-		uk.co.agena.minerva.model.Model.checkMonitorsOpen = false;
-		uk.co.agena.minerva.model.Model.suppressMessages = "system";
 		StreamInterceptor.output_capture();
 		String outputCaptured = "";
 		Throwable exception = null;
+		CalculationContext.Scope scope = CalculationContext.headless().enter(getLogicModel());
 		try {
 			getLogicModel().getExtendedBNList().regenerateNPTforEveryExtendedNode(false);
 			getLogicModel().fireModelChangedEvent(getLogicModel(), uk.co.agena.minerva.model.ModelEvent.ALL_NPTS_CHANGED, new ArrayList());
@@ -1933,9 +2588,7 @@ public class Model implements IdContainer<ModelException>, Storable {
 		}
 		finally {
 			outputCaptured += StreamInterceptor.output_release();
-			getLogicModel().SimulationSettingWarningMessage = SimulationSettingWarningMessage;
-			uk.co.agena.minerva.model.Model.checkMonitorsOpen = checkMonitorsOpen;
-			uk.co.agena.minerva.model.Model.suppressMessages = suppressMessages;
+			scope.close();
 		}
 		
 		if (exception != null){
@@ -0,0 +1,460 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import com.agenarisk.api.exception.ModelException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.json.JSONException;
+import org.json.JSONObject;
+import uk.co.agena.minerva.util.Logger;
+
+/**
+ * ModelPool keeps a number of preloaded replicas of the same Model and lends them out to callers, so that concurrent requests against a model do not each pay for loading it.
+ * <br>
+ * A replica is held in the pool without DataSets. A borrower creates the DataSets it needs, calculates and reads results, then releases the replica, at which point all its DataSets with their observations and results are removed.
+ * <br>
+ * Replicas that fail to reset, or that the borrower invalidates after a failure, are discarded and rebuilt.
+ * <br>
+ * All methods are thread-safe.
+ *
+ * @author Eugene Dementiev
+ */
+public class ModelPool implements AutoCloseable {
+
+	/**
+	 * Creates a new Model replica for the pool
+	 */
+	@FunctionalInterface
+	public interface ReplicaFactory {
+
+		/**
+		 * Creates a new Model replica.
+		 *
+		 * @return new Model
+		 *
+		 * @throws ModelException if the replica could not be created
+		 */
+		Model create() throws ModelException;
+	}
+
+	private final ReplicaFactory factory;
+	private final int size;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+
+	/**
+	 * Replicas ready to be borrowed, most recently released first
+	 */
+	private final Deque<Model> idle = new ArrayDeque<>();
+
+	/**
+	 * Replicas currently borrowed
+	 */
+	private final Set<Model> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * Number of replicas that exist or are being created, never exceeds size
+	 */
+	private int replicas = 0;
+
+	private long acquisitions = 0;
+	private long waits = 0;
+	private long timeouts = 0;
+	private long rebuilds = 0;
+	private boolean closed = false;
+
+	/**
+	 * Creates a pool and preloads all of its replicas.
+	 *
+	 * @param size number of replicas
+	 * @param factory factory creating replicas
+	 *
+	 * @throws ModelException if any replica fails to be created
+	 */
+	public ModelPool(int size, ReplicaFactory factory) throws ModelException {
+		if (size < 1){
+			throw new ModelException("Pool size must be positive");
+		}
+		this.size = size;
+		this.factory = factory;
+
+		try {
+			for (int i = 0; i < size; i++) {
+				idle.push(createReplica());
+				replicas++;
+			}
+		}
+		catch (ModelException | RuntimeException ex){
+			close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Creates a pool of replicas of a model loaded from the provided path.
+	 *
+	 * @param path path to model file
+	 * @param size number of replicas
+	 *
+	 * @return new pool
+	 *
+	 * @throws ModelException if the model fails to load
+	 *
+	 * @see Model#loadModel(String)
+	 */
+	public static ModelPool fromFile(String path, int size) throws ModelException {
+		return new ModelPool(size, () -> Model.loadModel(path));
+	}
+
+	/**
+	 * Creates a pool of replicas of a model created from the provided JSON.
+	 *
+	 * @param json model JSON
+	 * @param size number of replicas
+	 *
+	 * @return new pool
+	 *
+	 * @throws ModelException if the model fails to be created
+	 *
+	 * @see Model#createModel(JSONObject)
+	 */
+	public static ModelPool fromJson(JSONObject json, int size) throws ModelException {
+		String text = json.toString();
+		return new ModelPool(size, () -> {
+			try {
+				return Model.createModel(new JSONObject(text));
+			}
+			catch (JSONException ex){
+				throw new ModelException("Model data is invalid", ex);
+			}
+		});
+	}
+
+	/**
+	 * Borrows a replica, waiting for one to be released if all are in use.
+	 *
+	 * @return replica without DataSets
+	 *
+	 * @throws ModelException if the pool is closed or a replica had to be rebuilt and that failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Model acquire() throws ModelException, InterruptedException {
+		return acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Borrows a replica, waiting up to the provided time for one to be released if all are in use.
+	 * <br>
+	 * The replica must be returned with {@link #release(Model)} or {@link #invalidate(Model)}.
+	 *
+	 * @param timeout maximum time to wait
+	 * @param unit unit of timeout
+	 *
+	 * @return replica without DataSets, or null if timed out
+	 *
+	 * @throws ModelException if the pool is closed or a replica had to be rebuilt and that failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Model acquire(long timeout, TimeUnit unit) throws ModelException, InterruptedException {
+		long remaining = unit.toNanos(timeout);
+
+		lock.lockInterruptibly();
+		try {
+			acquisitions++;
+			boolean waited = false;
+			while(true){
+				if (closed){
+					throw new ModelException("Model pool is closed");
+				}
+				if (!idle.isEmpty()){
+					Model replica = idle.pop();
+					borrowed.add(replica);
+					return replica;
+				}
+				if (replicas < size){
+					// A replica was discarded earlier and could not be rebuilt then, reserve a slot and rebuild below
+					replicas++;
+					break;
+				}
+				if (remaining <= 0){
+					timeouts++;
+					return null;
+				}
+				if (!waited){
+					waits++;
+					waited = true;
+				}
+				remaining = available.awaitNanos(remaining);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+
+		Model replica;
+		try {
+			replica = createReplica();
+		}
+		catch (ModelException | RuntimeException ex){
+			lock.lock();
+			try {
+				replicas--;
+				available.signal();
+			}
+			finally {
+				lock.unlock();
+			}
+			throw ex;
+		}
+
+		lock.lock();
+		try {
+			rebuilds++;
+			borrowed.add(replica);
+		}
+		finally {
+			lock.unlock();
+		}
+		return replica;
+	}
+
+	/**
+	 * Returns a borrowed replica to the pool, removing all of its DataSets.
+	 * <br>
+	 * If the replica fails to reset, it is discarded and rebuilt.
+	 *
+	 * @param replica replica to return
+	 *
+	 * @throws AgenaRiskRuntimeException if the replica is not currently borrowed from this pool
+	 */
+	public void release(Model replica){
+		unborrow(replica);
+
+		if (resetReplica(replica)){
+			lock.lock();
+			try {
+				if (!closed){
+					idle.push(replica);
+					available.signal();
+					return;
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		discard(replica);
+	}
+
+	/**
+	 * Returns a borrowed replica that should not be reused, e.g. after a calculation failed in a way that may have left it inconsistent.
+	 * <br>
+	 * The replica is discarded and a new one is built in its place.
+	 *
+	 * @param replica replica to discard
+	 *
+	 * @throws AgenaRiskRuntimeException if the replica is not currently borrowed from this pool
+	 */
+	public void invalidate(Model replica){
+		unborrow(replica);
+		discard(replica);
+	}
+
+	/**
+	 * Returns the total number of replicas the pool holds when full.
+	 *
+	 * @return pool size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of replicas currently borrowed.
+	 *
+	 * @return number of borrowed replicas
+	 */
+	public int getInUse() {
+		lock.lock();
+		try {
+			return borrowed.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of replicas ready to be borrowed.
+	 *
+	 * @return number of idle replicas
+	 */
+	public int getIdle() {
+		lock.lock();
+		try {
+			return idle.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the share of the pool currently borrowed.
+	 *
+	 * @return utilisation between 0 and 1
+	 */
+	public double getUtilisation() {
+		return (double) getInUse() / size;
+	}
+
+	/**
+	 * Returns pool utilisation and counters as JSON: size, inUse, idle, utilisation, acquisitions, waits, timeouts and rebuilds.
+	 *
+	 * @return pool statistics
+	 */
+	public JSONObject getStatistics() {
+		lock.lock();
+		try {
+			JSONObject json = new JSONObject();
+			json.put("size", size);
+			json.put("inUse", borrowed.size());
+			json.put("idle", idle.size());
+			json.put("utilisation", (double) borrowed.size() / size);
+			json.put("acquisitions", acquisitions);
+			json.put("waits", waits);
+			json.put("timeouts", timeouts);
+			json.put("rebuilds", rebuilds);
+			return json;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the pool, destroying idle replicas. Borrowed replicas are destroyed when released.
+	 * <br>
+	 * Threads waiting to acquire a replica fail with ModelException.
+	 */
+	@Override
+	public void close() {
+		Deque<Model> toDestroy;
+		lock.lock();
+		try {
+			closed = true;
+			toDestroy = new ArrayDeque<>(idle);
+			replicas -= idle.size();
+			idle.clear();
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+		toDestroy.forEach(ModelPool::destroy);
+	}
+
+	private void unborrow(Model replica){
+		lock.lock();
+		try {
+			if (!borrowed.remove(replica)){
+				throw new AgenaRiskRuntimeException("Model is not borrowed from this pool");
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Destroys the replica and rebuilds one in its place unless the pool is closed.
+	 * <br>
+	 * If rebuilding fails, the slot stays empty and the next acquisition that finds no idle replicas will try again.
+	 */
+	private void discard(Model replica){
+		destroy(replica);
+
+		lock.lock();
+		try {
+			replicas--;
+			if (closed){
+				return;
+			}
+			replicas++;
+		}
+		finally {
+			lock.unlock();
+		}
+
+		Model rebuilt = null;
+		try {
+			rebuilt = createReplica();
+		}
+		catch (ModelException | RuntimeException ex){
+			Logger.logIfDebug("Failed to rebuild model replica: " + ex.getMessage());
+		}
+
+		boolean closedMeanwhile;
+		lock.lock();
+		try {
+			closedMeanwhile = closed;
+			if (rebuilt == null || closed){
+				replicas--;
+			}
+			else {
+				rebuilds++;
+				idle.push(rebuilt);
+			}
+			available.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+
+		if (rebuilt != null && closedMeanwhile){
+			destroy(rebuilt);
+		}
+	}
+
+	private Model createReplica() throws ModelException {
+		Model replica = factory.create();
+		if (!resetReplica(replica)){
+			destroy(replica);
+			throw new ModelException("Failed to remove DataSets from model replica");
+		}
+		return replica;
+	}
+
+	/**
+	 * Removes all DataSets from the replica.
+	 *
+	 * @return true if the replica was left without DataSets
+	 */
+	private static boolean resetReplica(Model replica){
+		try {
+			replica.getDataSetList().forEach(replica::removeDataSet);
+			return replica.getDataSets().isEmpty() && replica.getLogicModel().getScenarioList().getScenarios().isEmpty();
+		}
+		catch (RuntimeException ex){
+			Logger.logIfDebug("Failed to reset model replica: " + ex.getMessage());
+			return false;
+		}
+	}
+
+	private static void destroy(Model replica){
+		try {
+			replica.getLogicModel().destroy();
+		}
+		catch (RuntimeException ex){
+			Logger.logIfDebug("Failed to destroy model replica: " + ex.getMessage());
+		}
+	}
+}
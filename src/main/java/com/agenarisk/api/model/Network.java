@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.json.JSONArray;
@@ -31,6 +32,7 @@ import uk.co.agena.minerva.model.extendedbn.ExtendedBN;
 import uk.co.agena.minerva.model.extendedbn.ExtendedBNException;
 import com.agenarisk.api.model.interfaces.IdContainer;
 import com.agenarisk.api.util.Advisory;
+import com.agenarisk.api.util.JSONUtils;
 import java.util.Optional;
 
 /**
@@ -80,10 +82,20 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 	/**
 	 * ID-Node map of this Network
 	 * <br>
-	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on IDContainer.class
+	 * This should not be directly returned to other components and should be modified only by this class in a block synchronized on the map itself
 	 */
 	private final Map<Id, Node> nodes = Collections.synchronizedMap(new LinkedHashMap<>());
 	
+	/**
+	 * Incremented on every change of Nodes or Links in this Network
+	 */
+	private final AtomicInteger graphVersion = new AtomicInteger();
+	
+	/**
+	 * Graph index built for the last requested version, or null
+	 */
+	private volatile GraphIndex graphIndex = null;
+	
 	/**
 	 * Factory method to be called by a Model object that is trying to add a Network to itself.
 	 * 
@@ -260,6 +272,88 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 		
 	}
 	
+	/**
+	 * Constructor for Network class, to be used by copyTo method.
+	 * <br>
+	 * Links the Network with an existing logic network without modifying it.
+	 * 
+	 * @param model the Model that this Network belongs to
+	 * @param logicNetwork the corresponding logic network
+	 */
+	private Network(Model model, ExtendedBN logicNetwork) {
+		this.model = model;
+		this.logicNetwork = logicNetwork;
+	}
+	
+	/**
+	 * Creates a copy of this Network in the provided Model, linked to the provided logic network which should be a copy of this Network's logic network.
+	 * <br>
+	 * Copies graphics, texts and pictures, and the risk table if requested; Nodes are not copied.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param model the Model the copy belongs to
+	 * @param logicNetwork copy of the logic network
+	 * @param keepRiskTable whether to copy the risk table, as with KEEP_RISK_TABLE
+	 * 
+	 * @return the Network copy
+	 */
+	protected Network copyTo(Model model, ExtendedBN logicNetwork, boolean keepRiskTable) {
+		Network network = new Network(model, logicNetwork);
+		network.jsonGraphics = JSONUtils.copy(jsonGraphics);
+		if (keepRiskTable){
+			network.riskTable = JSONUtils.copy(riskTable);
+		}
+		network.texts = JSONUtils.copy(texts);
+		network.pictures = JSONUtils.copy(pictures);
+		return network;
+	}
+	
+	/**
+	 * Adds an existing Node to this Network without modifying the logic network.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param node the Node to add
+	 */
+	protected void addCopiedNode(Node node) {
+		nodes.put(new Id(node.getId()), node);
+		invalidateGraphIndex();
+	}
+	
+	/**
+	 * Returns the graph index of this Network, building it if Nodes or Links have changed since it was last built.
+	 * 
+	 * @return the graph index, valid at the time of request
+	 * 
+	 * @throws AgenaRiskRuntimeException if the Network contains a cycle
+	 */
+	public GraphIndex getGraphIndex() {
+		int version = graphVersion.get();
+		GraphIndex index = graphIndex;
+		if (index == null || index.getVersion() != version){
+			index = new GraphIndex(this, version);
+			graphIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Marks the graph index as outdated, to be called on any change of Nodes, their states or Links in this Network.
+	 */
+	protected void invalidateGraphIndex() {
+		graphVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns a number that changes whenever Nodes, their states or Links in this Network change through the API.
+	 * 
+	 * @return structure version
+	 */
+	protected int getGraphVersion() {
+		return graphVersion.get();
+	}
+	
 	/**
 	 * Creates a Node and adds it to this Network.
 	 * 
@@ -272,7 +366,7 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 	 * @throws NetworkException if Node creation failed
 	 */
 	public Node createNode(String id, String name, Node.Type type) throws NetworkException {
-		synchronized (IdContainer.class){
+		synchronized (nodes){
 			if (nodes.containsKey(new Id(id))){
 				throw new NetworkException("Node with id `" + id + "` already exists");
 			}
@@ -284,6 +378,7 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 		try {
 			node = Node.createNode(this, id, name, type);
 			nodes.put(new Id(id), node);
+			invalidateGraphIndex();
 		}
 		catch (AgenaRiskRuntimeException ex){
 			nodes.remove(new Id(id));
@@ -364,7 +459,7 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 	/**
 	 * Changes the ID of this Network to the provided ID, if the new ID is not already taken.
 	 * <br>
-	 * Will lock IDContainer.class while doing so.
+	 * Will lock the Network map of the Model while doing so.
 	 * 
 	 * @param id the new ID
 	 * 
@@ -644,6 +739,15 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 	public JSONObject getGraphicsJson(){
 		return jsonGraphics;
 	}
+	
+	/**
+	 * Returns the risk table this Network was loaded with, if any.
+	 * 
+	 * @return risk table JSON or null
+	 */
+	public JSONObject getRiskTableJson(){
+		return riskTable;
+	}
 
 	/**
 	 * Returns this Network's simulation setting overrides.
@@ -734,6 +838,7 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 			node.getParents().forEach(np -> Node.unlinkNodes(node, np));
 			node.getChildren().forEach(nc -> Node.unlinkNodes(node, nc));
 			nodes.remove(new Id(node.getId()));
+			invalidateGraphIndex();
 			getLogicNetwork().removeExtendedNode(node.getLogicNode());
 		}
 		catch (ExtendedBNException ex){
@@ -749,8 +854,9 @@ public class Network implements Networked<Network>, Comparable<Network>, Identif
 	 */
 	protected void regenerateNPTs() throws NetworkException {
 		
-		nodes.values().stream().filter(n -> !n.isSimulated() && !n.isConnectedInput()).sorted((n1, n2) -> {
-			return n1.getAncestors().size() - n2.getAncestors().size();
+		GraphIndex index = getGraphIndex();
+		index.getTopologicalOrder().stream().filter(n -> !n.isSimulated() && !n.isConnectedInput()).sorted((n1, n2) -> {
+			return index.getAncestorCount(n1) - index.getAncestorCount(n2);
 		}).forEach(n -> {
 			try {
 				getLogicNetwork().regenerateNPT(n.getLogicNode());
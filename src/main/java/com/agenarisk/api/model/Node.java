@@ -191,11 +191,13 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 	protected final boolean addLink(Link link){
 		if (link.getFromNode().equals(this)){
 			linksOut.add(link);
+			network.invalidateGraphIndex();
 			return true;
 		}
 		
 		if (link.getToNode().equals(this)){
 			linksIn.add(link);
+			network.invalidateGraphIndex();
 			return true;
 		}
 		
@@ -213,11 +215,13 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 	protected final boolean removeLink(Link link){
 		if (link.getFromNode().equals(this)){
 			linksOut.remove(link);
+			network.invalidateGraphIndex();
 			return true;
 		}
 		
 		if (link.getToNode().equals(this)){
 			linksIn.remove(link);
+			network.invalidateGraphIndex();
 			return true;
 		}
 		
@@ -421,8 +425,8 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 	 *                       nodes in the same network, or the link is otherwise not permitted
 	 */
 	public static Link linkNodes(Node fromNode, Node toNode, CrossNetworkLink.Type type, String stateToPass, Double percentile) throws LinkException {
-		// Sync on class to prevent multiple links established by multiple threads
-		synchronized(Network.class){
+		// Sync on the owning Model to prevent multiple links established by multiple threads, without blocking other Models
+		synchronized(fromNode.getNetwork().getModel()){
 			
 			if (fromNode.getChildren().contains(toNode)){
 				throw new LinkException("Link already exists");
@@ -538,6 +542,38 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 		return new Node(network, id, name, type);
 	}
 	
+	/**
+	 * Constructor for the Node class, to be used by copyTo method.
+	 * <br>
+	 * Links the Node with an existing logic node without modifying it.
+	 * 
+	 * @param network the Network that will contain this Node
+	 * @param logicNode the Node's corresponding logic Node
+	 */
+	private Node(Network network, ExtendedNode logicNode) {
+		this.network = network;
+		this.logicNode = logicNode;
+	}
+	
+	/**
+	 * Creates a copy of this Node in the provided Network, linked to the provided logic node which should be a copy of this Node's logic node.
+	 * <br>
+	 * Copies meta and graphics; Links are not copied.
+	 * <br>
+	 * To be used by Model.copy().
+	 * 
+	 * @param network the Network the copy belongs to
+	 * @param logicNode copy of the logic node
+	 * 
+	 * @return the Node copy
+	 */
+	protected Node copyTo(Network network, ExtendedNode logicNode) {
+		Node node = new Node(network, logicNode);
+		node.jsonMeta = JSONUtils.copy(jsonMeta);
+		node.jsonGraphics = JSONUtils.copy(jsonGraphics);
+		return node;
+	}
+	
 		/**
 	 * Factory method to create a Node for use by the Network class.
 	 * <br>
@@ -1255,6 +1291,9 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 		catch (ExtendedStateNumberingException | ExtendedStateException ex){
 			throw new NodeException("Failed to parse states", ex);
 		}
+		finally {
+			network.invalidateGraphIndex();
+		}
 	}
 	
 	/**
@@ -1298,6 +1337,7 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 		NodeConfiguration.setDefaultIntervalStates(this);
 		ContinuousEN cien = (ContinuousEN)this.getLogicNode();
 		cien.setSimulationNode(true);
+		network.invalidateGraphIndex();
 		if (cien.getExpression() == null) {
 			this.setTableFunction("Arithmetic(0)");
 		}
@@ -1358,6 +1398,8 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 			throw new NodeException("Failed to retrieve calculation result from Data Set", ex);
 		}
 		
+		network.invalidateGraphIndex();
+		
 		// Restore observation from JSON
 		if (jObservation != null){
 			dataSet.setObservation(jObservation);
@@ -1439,7 +1481,7 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 	/**
 	 * Changes the ID of this Node to the provided ID, if the new ID is not already taken.
 	 * <br>
-	 * Will lock IDContainer.class while doing so.
+	 * Will lock the Node map of the Network while doing so.
 	 * 
 	 * @param newId the new ID
 	 * 
@@ -1705,33 +1747,29 @@ public class Node implements Networked<Node>, Comparable<Node>, Identifiable<Nod
 	/**
 	 * Builds and returns a set of ancestors for this Node.<br>
 	 * Does not include itself.<br>
-	 * Does not follow cross-network links (only includes Nodes in the same Network).
+	 * Does not follow cross-network links (only includes Nodes in the same Network).<br>
+	 * Ancestors are listed in topological order.
 	 * 
 	 * @return HashSet of ancestors for this Node
+	 * 
+	 * @see Network#getGraphIndex()
 	 */
 	public Set<Node> getAncestors(){
-		Set set = new LinkedHashSet();
-		getParents().stream().filter(n -> Objects.equals(getNetwork(), n.getNetwork())).forEach(n -> {
-			set.add(n);
-			set.addAll(n.getAncestors());
-		});
-		return set;
+		return getNetwork().getGraphIndex().getAncestors(this);
 	}
 	
 	/**
 	 * Builds and returns a set of descendants for this Node.<br>
 	 * Does not include itself.<br>
-	 * Does not follow cross-network links (only includes Nodes in the same Network).
+	 * Does not follow cross-network links (only includes Nodes in the same Network).<br>
+	 * Descendants are listed in topological order.
 	 * 
 	 * @return HashSet of descendants for this Node
+	 * 
+	 * @see Network#getGraphIndex()
 	 */
 	public Set<Node> getDescendants(){
-		Set set = new LinkedHashSet();
-		getChildren().stream().filter(n -> Objects.equals(getNetwork(), n.getNetwork())).forEach(n -> {
-			set.add(n);
-			set.addAll(n.getDescendants());
-		});
-		return set;
+		return getNetwork().getGraphIndex().getDescendants(this);
 	}
 	
 	/**
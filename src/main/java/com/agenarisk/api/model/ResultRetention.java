@@ -0,0 +1,87 @@
+package com.agenarisk.api.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * ResultRetention is a policy for how long a Model keeps calculation results, set with {@link Model#setResultRetention(ResultRetention)}.
+ * <br>
+ * By default a Model keeps marginals of every Node for every DataSet until they are recalculated or cleared. A policy can limit this in two ways:
+ * <br>
+ * ∙ Monitored Nodes: after each calculation, marginals are kept only for the monitored Nodes and for Nodes that feed cross-network links, the rest are released
+ * <br>
+ * ∙ Release on consume: once {@link Model#resultsConsumed(DataSet)} is called for a DataSet, its marginals are released and the DataSet is removed from the Model together with its logic scenario
+ * <br>
+ * This way a long batch of DataSets only needs memory for the DataSets in flight.
+ *
+ * @author Eugene Dementiev
+ */
+public class ResultRetention {
+
+	/**
+	 * Nodes to keep marginals for, or null to keep all
+	 */
+	private Set<Node> monitoredNodes = null;
+
+	/**
+	 * Whether to release DataSets once their results are consumed
+	 */
+	private boolean releaseOnConsume = false;
+
+	/**
+	 * Sets the Nodes to keep marginals for after each calculation.
+	 * <br>
+	 * Marginals of Nodes that feed cross-network links are always kept, so that Networks can still be calculated separately.
+	 *
+	 * @param nodes Nodes to keep marginals for, or null to keep marginals of all Nodes
+	 *
+	 * @return this ResultRetention
+	 */
+	public ResultRetention withMonitoredNodes(Collection<Node> nodes) {
+		this.monitoredNodes = (nodes == null) ? null : Collections.unmodifiableSet(new LinkedHashSet<>(nodes));
+		return this;
+	}
+
+	/**
+	 * Sets whether DataSets should be released once their results are consumed.
+	 *
+	 * @param releaseOnConsume true to release DataSets on {@link Model#resultsConsumed(DataSet)}
+	 *
+	 * @return this ResultRetention
+	 */
+	public ResultRetention withReleaseOnConsume(boolean releaseOnConsume) {
+		this.releaseOnConsume = releaseOnConsume;
+		return this;
+	}
+
+	/**
+	 * Returns the Nodes to keep marginals for.
+	 *
+	 * @return unmodifiable set of monitored Nodes, or null if marginals of all Nodes are kept
+	 */
+	public Set<Node> getMonitoredNodes() {
+		return monitoredNodes;
+	}
+
+	/**
+	 * Checks whether marginals of the Node are kept after calculation.
+	 *
+	 * @param node the Node to check
+	 *
+	 * @return true if the Node is monitored, feeds a cross-network link or all Nodes are kept
+	 */
+	public boolean isRetained(Node node) {
+		return monitoredNodes == null || monitoredNodes.contains(node) || node.isConnectedOutput();
+	}
+
+	/**
+	 * Returns whether DataSets are released once their results are consumed.
+	 *
+	 * @return true if DataSets are released on {@link Model#resultsConsumed(DataSet)}
+	 */
+	public boolean isReleaseOnConsume() {
+		return releaseOnConsume;
+	}
+}
@@ -41,6 +41,8 @@ public interface IdContainer <E extends Exception> {
 	 * Changes the ID of the Identifiable in some mapped reference of the IDContainer.
 	 * <br>
 	 * Does not actually modify Identifiable, which should be done externally.
+	 * <br>
+	 * Synchronizes on the ID map, so that only registrations in the same container are serialised.
 	 * 
 	 * @param <I> Type of the identifiable object
 	 * @param identifiable the object which ID needs updating
@@ -51,9 +53,9 @@ public interface IdContainer <E extends Exception> {
 	 */
 	@Deprecated
 	default <I extends Identifiable> boolean changeContainedId(I identifiable, String id) throws E {
-		synchronized (IdContainer.class){
-			
-			Map map = getIdMap(identifiable.getClass());
+		Map map = getIdMap(identifiable.getClass());
+		
+		synchronized (map){
 			
 			if (map.containsKey(new Id(id))){
 				throwIdExistsException(id);
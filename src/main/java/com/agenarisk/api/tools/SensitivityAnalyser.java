@@ -1,11 +1,11 @@
 package com.agenarisk.api.tools;
 
-import com.agenarisk.api.exception.AdapterException;
 import com.agenarisk.api.exception.AgenaRiskRuntimeException;
 import com.agenarisk.api.exception.CalculationException;
 import com.agenarisk.api.exception.InconsistentEvidenceException;
 import com.agenarisk.api.exception.ModelException;
 import com.agenarisk.api.exception.NodeException;
+import com.agenarisk.api.model.CalculationContext;
 import com.agenarisk.api.model.CalculationResult;
 import com.agenarisk.api.model.DataSet;
 import com.agenarisk.api.model.Model;
@@ -25,7 +25,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 import uk.co.agena.minerva.util.helpers.MathsHelper;
 import uk.co.agena.minerva.util.model.IntervalDataPoint;
@@ -140,9 +139,9 @@ public class SensitivityAnalyser {
 
 		// Create a copy of the original model
 		try {
-			model = Model.createModel(model.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META));
+			model = model.copy(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META);
 		}
-		catch (AdapterException | JSONException | ModelException ex) {
+		catch (ModelException ex) {
 			throw new SensitivityAnalyserException("Initialization failed", ex);
 		}
 		
@@ -234,45 +233,42 @@ public class SensitivityAnalyser {
 			throw new SensitivityAnalyserException("Target node can not also be selected as sensitivity node");
 		}
 
-		// Precalculate for static conversion (compulsory due to KEEP_TAILS_ZERO_REGIONS flag required
-		/* If optimisation is needed in future and we want to sometimes avoid pre-calculation
-		 * we can skip pre-calculation if the model is already calculated
-		 * model.isCalculated() and model.getDataSetList().get(0).getCalculationResults() no exceptions
-		 * and there are no simulation nodes without observations (if all simulated nodes are observed, we can assume the model is static)
-		 */
-		try {
-			uk.co.agena.minerva.model.Model.SMA = true;
-			model.calculate(
-					Arrays.asList(targetNode.getNetwork()),
-					Arrays.asList(dataSet),
-					Model.CalculationFlag.WITH_ANCESTORS,
-					Model.CalculationFlag.KEEP_TAILS_ZERO_REGIONS
-			);
-			uk.co.agena.minerva.model.Model.SMA = false;
-		}
-		catch (CalculationException ex){
-			uk.co.agena.minerva.model.Model.SMA = false;
-			throw new SensitivityAnalyserException("Failed to precalculate the model during initialization", ex);
-		}
-		
-		// Convert to static and calculate to get baseline calculation results
-		try {
-			uk.co.agena.minerva.model.Model.SMA = true;
-			model.convertToStatic(dataSet, Model.ConversionFlag.IgnoreErrors);
-			model.calculate(
-					Arrays.asList(targetNode.getNetwork()),
-					Arrays.asList(dataSet),
-					Model.CalculationFlag.WITH_ANCESTORS,
-					Model.CalculationFlag.KEEP_TAILS_ZERO_REGIONS
-			);
-			uk.co.agena.minerva.model.Model.SMA = false;
-		}
-		catch (AgenaRiskRuntimeException | CalculationException ex) {
-			uk.co.agena.minerva.model.Model.SMA = false;
-			throw new SensitivityAnalyserException("Static conversion failed", ex);
-		}
+		// Keep the engine in sensitivity analysis mode for the whole analysis; calculations below join this context
+		try (CalculationContext.Scope scope = CalculationContext.headless().withSensitivityAnalysis(true).enter(model)){
+			// Precalculate for static conversion (compulsory due to KEEP_TAILS_ZERO_REGIONS flag required
+			/* If optimisation is needed in future and we want to sometimes avoid pre-calculation
+			 * we can skip pre-calculation if the model is already calculated
+			 * model.isCalculated() and model.getDataSetList().get(0).getCalculationResults() no exceptions
+			 * and there are no simulation nodes without observations (if all simulated nodes are observed, we can assume the model is static)
+			 */
+			try {
+				model.calculate(
+						Arrays.asList(targetNode.getNetwork()),
+						Arrays.asList(dataSet),
+						Model.CalculationFlag.WITH_ANCESTORS,
+						Model.CalculationFlag.KEEP_TAILS_ZERO_REGIONS
+				);
+			}
+			catch (CalculationException ex){
+				throw new SensitivityAnalyserException("Failed to precalculate the model during initialization", ex);
+			}
 
-		analyse();
+			// Convert to static and calculate to get baseline calculation results
+			try {
+				model.convertToStatic(dataSet, Model.ConversionFlag.IgnoreErrors);
+				model.calculate(
+						Arrays.asList(targetNode.getNetwork()),
+						Arrays.asList(dataSet),
+						Model.CalculationFlag.WITH_ANCESTORS,
+						Model.CalculationFlag.KEEP_TAILS_ZERO_REGIONS
+				);
+			}
+			catch (AgenaRiskRuntimeException | CalculationException ex) {
+				throw new SensitivityAnalyserException("Static conversion failed", ex);
+			}
+
+			analyse();
+		}
 		
 	}
 	
@@ -282,18 +278,12 @@ public class SensitivityAnalyser {
 	 * @throws SensitivityAnalyserException upon failure
 	 */
 	private void analyse() throws SensitivityAnalyserException {
-		uk.co.agena.minerva.model.Model.SMA = true;
-		try {
+		try (CalculationContext.Scope scope = CalculationContext.headless().withSensitivityAnalysis(true).enter(model)){
 			calculateCombinations();
 			if (targetNode.isNumericInterval()){
 				calculateStats();
 			}
 		}
-		catch (Throwable ex){
-			uk.co.agena.minerva.model.Model.SMA = false;
-			throw ex;
-		}
-		uk.co.agena.minerva.model.Model.SMA = false;
 	}
 	
 	/**
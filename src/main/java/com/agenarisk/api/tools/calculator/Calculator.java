@@ -3,14 +3,33 @@ package com.agenarisk.api.tools.calculator;
 import com.agenarisk.api.exception.ModelException;
 import com.agenarisk.api.model.DataSet;
 import com.agenarisk.api.model.Model;
+import com.agenarisk.api.model.Node;
 import com.agenarisk.api.model.Observation;
+import com.agenarisk.api.model.ResultRetention;
 import com.agenarisk.api.tools.Utils;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import uk.co.agena.minerva.util.Config;
@@ -27,12 +46,26 @@ public class Calculator {
 	private Path pathOut = null;
 	private boolean useCache = false;
 	private boolean exitOnError = true;
+	private int threads = 1;
+	private boolean ndjson = false;
+	private boolean streamData = false;
+	private Path pathResultCache = null;
+	private long resultCacheBytes = 1024L * 1024 * 1024;
+	private ResultCache resultCache = null;
+	private List<String> outputs = null;
+	private List<String> statistics = null;
+	private ResultProjection projection = null;
 	
 	private Model model;
 	
 	private final HashSet<String> calculatedIds = new HashSet<>();
 	private JSONArray jResults = new JSONArray();
 	
+	/**
+	 * Writer for NDJSON output, open only for the duration of execute()
+	 */
+	private BufferedWriter ndjsonWriter = null;
+	
 	public Calculator(){}
 	
 	public Calculator withModel(String path){
@@ -68,6 +101,26 @@ public class Calculator {
 		return this;
 	}
 	
+	/**
+	 * Uses the data file as a stream of DataSets instead of loading it in full.
+	 * <br>
+	 * The file may be a JSON array of DataSets or NDJSON with one DataSet per line.
+	 * <br>
+	 * DataSets are read one at a time during execution, each is created in the model, calculated, written to results and removed from the model before the next one is read, so memory use does not depend on the size of the data file.
+	 * <br>
+	 * Results are always written as NDJSON in this mode, since a JSON array would have to be held in memory and rewritten after each DataSet.
+	 * 
+	 * @param path path to data file
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withDataStream(String path){
+		pathDataSets = Utils.resolve(path);
+		streamData = true;
+		Logger.out().println("Data (streamed): " + pathDataSets);
+		return this;
+	}
+	
 	public Calculator usingCache(boolean useCache){
 		this.useCache = useCache;
 		return this;
@@ -78,6 +131,86 @@ public class Calculator {
 		return this;
 	}
 	
+	/**
+	 * Sets the number of worker threads to calculate DataSets with.
+	 * <br>
+	 * With more than one thread, each worker loads its own replica of the model from the model file once and calculates DataSets on it.
+	 * <br>
+	 * Results are still written in the input order.
+	 * 
+	 * @param threads number of worker threads, at least 1
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withThreads(int threads){
+		if (threads < 1){
+			throw new CalculatorException("Number of threads must be at least 1");
+		}
+		this.threads = threads;
+		return this;
+	}
+	
+	/**
+	 * Sets whether results should be written as NDJSON: one JSON object per line, appended and flushed once per DataSet.
+	 * <br>
+	 * Otherwise results are written as a single JSON array which is rewritten in full after each DataSet.
+	 * 
+	 * @param ndjson true to write NDJSON
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withNdjson(boolean ndjson){
+		this.ndjson = ndjson;
+		return this;
+	}
+	
+	/**
+	 * Enables a persistent content-addressed result cache in the provided directory.
+	 * <br>
+	 * Results are looked up by a hash of the model structure and settings and the DataSet observations, so identical evidence is not recalculated regardless of DataSet ID, data file or run, as long as the model is unchanged.
+	 * 
+	 * @param path cache directory
+	 * @param maxBytes maximum total size of cached results, least recently used results are evicted beyond this
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withResultCache(String path, long maxBytes){
+		pathResultCache = Utils.resolve(path);
+		resultCacheBytes = maxBytes;
+		Logger.out().println("Result cache: " + pathResultCache);
+		return this;
+	}
+	
+	/**
+	 * Limits results written to the selected Nodes.
+	 * <br>
+	 * Results of other Nodes are not retrieved from the model at all, which reduces both conversion time and output size.
+	 * <br>
+	 * Summary statistics are only written if requested with withStatistics(List).
+	 * 
+	 * @param outputs Nodes in the form <code>network.node</code>, or null for all Nodes
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withOutputs(List<String> outputs){
+		this.outputs = outputs;
+		Logger.out().println("Outputs: " + (outputs == null ? "all" : String.join(", ", outputs)));
+		return this;
+	}
+	
+	/**
+	 * Sets summary statistics to write for each non-labelled Node result, instead of the full set written by default.
+	 * 
+	 * @param statistics statistic names such as mean, variance, median, standardDeviation, or percentiles as <code>pNN</code>, e.g. p05 and p95
+	 * 
+	 * @return this Calculator
+	 */
+	public Calculator withStatistics(List<String> statistics){
+		this.statistics = statistics;
+		Logger.out().println("Statistics: " + (statistics == null ? "default" : String.join(", ", statistics)));
+		return this;
+	}
+	
 	public Calculator savingTo(String path) {
 		pathOut = Utils.resolve(path);
 		Logger.out().println("Results: " + pathOut);
@@ -85,56 +218,393 @@ public class Calculator {
 	}
 	
 	public void execute(){
+		if (streamData && !ndjson){
+			Logger.out().println("Streamed data, writing results as NDJSON");
+			ndjson = true;
+		}
+		
 		Logger.out().println("Using cache: " + useCache);
+		Logger.out().println("Threads: " + threads);
+		Logger.out().println("NDJSON: " + ndjson);
+		
+		if (outputs != null || statistics != null){
+			projection = new ResultProjection(model, outputs, statistics);
+		}
+		
+		if (pathResultCache != null){
+			resultCache = new ResultCache(pathResultCache, resultCacheBytes, model, projection == null ? null : projection.getSignature());
+		}
+		
+		model.setResultRetention(resultRetention(model));
 		
 		if (useCache){
-			readCache();
+			if (ndjson){
+				readCacheNdjson();
+			}
+			else {
+				readCache();
+			}
 		}
 		
-		model.getDataSets().values().stream()
-				.filter(dataSet -> !calculatedIds.contains(dataSet.getId()))
-				.forEach(dataSet -> {
-					calculateDataset(dataSet);
-				});
+		try {
+			if (ndjson){
+				StandardOpenOption mode = useCache ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+				ndjsonWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(pathOut, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode), StandardCharsets.UTF_8));
+			}
+		}
+		catch (IOException ex){
+			throw new CalculatorException("Failed to open results file: " + pathOut, ex);
+		}
+		
+		try {
+			if (streamData){
+				executeStream();
+			}
+			else {
+				List<DataSet> pending = model.getDataSets().values().stream()
+						.filter(dataSet -> !calculatedIds.contains(dataSet.getId()))
+						.collect(Collectors.toList());
+				
+				if (threads > 1){
+					executeParallel(pending.stream().map(dataSet -> toInputJson(dataSet)).iterator());
+				}
+				else {
+					pending.forEach(dataSet -> {
+						calculateDataset(dataSet);
+					});
+				}
+			}
+		}
+		finally {
+			closeNdjsonWriter();
+		}
+		
+		if (resultCache != null){
+			Logger.out().println("Result cache hits: " + resultCache.getHits() + ", misses: " + resultCache.getMisses());
+		}
 		
 		Logger.out().println("All done");
 	}
 	
+	/**
+	 * Reads DataSets from the data file one at a time and calculates them, skipping those found in cache.
+	 */
+	private void executeStream(){
+		DataSetReader reader;
+		try {
+			reader = new DataSetReader(pathDataSets);
+		}
+		catch (Exception ex){
+			throw new CalculatorException("Failed to read data from input file: " + pathDataSets, ex);
+		}
+		
+		Iterator<JSONObject> inputs = new Iterator<JSONObject>() {
+			@Override
+			public boolean hasNext() {
+				try {
+					return reader.hasNext();
+				}
+				catch (Exception ex){
+					throw new CalculatorException("Failed to read data from input file at index " + reader.getIndex(), ex);
+				}
+			}
+
+			@Override
+			public JSONObject next() {
+				return reader.next();
+			}
+		};
+		
+		try {
+			if (threads > 1){
+				executeParallel(inputs);
+			}
+			else {
+				while(inputs.hasNext()){
+					JSONObject jInput = inputs.next();
+					String id = jInput.optString(DataSet.Field.id.toString());
+					if (calculatedIds.contains(id)){
+						continue;
+					}
+					try {
+						writeResult(id, calculateAndRemove(model, jInput));
+						Logger.log("Success");
+					}
+					catch (Exception ex){
+						handleFailure(ex);
+					}
+					catch (Error ex){
+						handleFailure(ex);
+					}
+				}
+			}
+		}
+		finally {
+			try {
+				reader.close();
+			}
+			catch (IOException ex){
+				Logger.printThrowableIfDebug(ex);
+			}
+		}
+	}
+	
+	private void closeNdjsonWriter(){
+		if (ndjsonWriter == null){
+			return;
+		}
+		try {
+			ndjsonWriter.close();
+		}
+		catch (IOException ex){
+			Logger.printThrowableIfDebug(ex);
+		}
+		ndjsonWriter = null;
+	}
+	
 	private void calculateDataset(DataSet dataSet){
-		Logger.log("Calculating: " + dataSet.getId());
 		try {
+			String key = null;
+			if (resultCache != null){
+				key = resultCache.key(toInputJson(dataSet));
+				JSONObject jCached = resultCache.get(key);
+				if (jCached != null){
+					jCached.put(DataSet.Field.id.toString(), dataSet.getId());
+					writeResult(dataSet.getId(), jCached);
+					Logger.log("Cached: " + dataSet.getId());
+					return;
+				}
+			}
+			
+			Logger.log("Calculating: " + dataSet.getId());
 			model.calculate(null, Arrays.asList(dataSet));
-			writeResult(dataSet);
+			JSONObject jResult = toResultJson(dataSet);
+			if (key != null){
+				resultCache.put(key, jResult);
+			}
+			writeResult(dataSet.getId(), jResult);
 			Logger.log("Success");
 			
 		}
 		catch (Exception ex){
-			Logger.log("Failure: " + ex.getMessage());
-			Logger.printThrowableIfDebug(ex);
-			if (exitOnError){
-				System.exit(1);
-			}
+			handleFailure(ex);
 		}
 		catch (Error ex){
-			Logger.log("Failure: " + ex.getMessage());
-			Logger.printThrowableIfDebug(ex);
-			if (exitOnError){
-				System.exit(3);
+			handleFailure(ex);
+		}
+		finally {
+			model.resultsConsumed(dataSet);
+		}
+	}
+	
+	/**
+	 * Calculates DataSets on worker model replicas, one replica per worker thread.
+	 * <br>
+	 * Results are collected and written in the order of the provided DataSets regardless of the order in which workers complete them.
+	 * <br>
+	 * At most two DataSets per worker are read ahead of the oldest unwritten result.
+	 * 
+	 * @param inputs DataSet JSON objects to calculate
+	 */
+	private void executeParallel(Iterator<JSONObject> inputs){
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ThreadLocal<Model> replicas = ThreadLocal.withInitial(() -> loadReplica());
+		
+		Deque<String> ids = new ArrayDeque<>();
+		Deque<Future<JSONObject>> futures = new ArrayDeque<>();
+		
+		try {
+			while(inputs.hasNext()){
+				JSONObject jInput = inputs.next();
+				String id = jInput.optString(DataSet.Field.id.toString());
+				if (calculatedIds.contains(id)){
+					continue;
+				}
+				
+				if (futures.size() >= threads * 2){
+					writeNextResult(ids, futures);
+				}
+				
+				ids.add(id);
+				futures.add(executor.submit(() -> calculateAndRemove(replicas.get(), jInput)));
+			}
+			
+			while(!futures.isEmpty()){
+				writeNextResult(ids, futures);
 			}
 		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 	
-	private void writeResult(DataSet dataSet){
+	/**
+	 * Waits for the oldest submitted calculation and writes its result.
+	 * 
+	 * @param ids IDs of DataSets submitted for calculation, in submission order
+	 * @param futures futures of submitted calculations, in submission order
+	 */
+	private void writeNextResult(Deque<String> ids, Deque<Future<JSONObject>> futures){
+		String id = ids.poll();
+		Future<JSONObject> future = futures.poll();
 		try {
-			JSONObject jResult = dataSet.toJson();
-			jResult.remove(DataSet.Field.active.toString());
-			jResult.remove(DataSet.Field.displayable.toString());
-			jResult.remove(Observation.Field.observations.toString());
+			JSONObject jResult = future.get();
+			writeResult(id, jResult);
+			Logger.log("Success: " + id);
+		}
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new CalculatorException("Interrupted while waiting for result of " + id, ex);
+		}
+		catch (ExecutionException ex){
+			handleFailure(id, ex.getCause());
+		}
+		catch (CalculatorException ex){
+			handleFailure(id, ex);
+		}
+	}
+	
+	/**
+	 * Creates the result retention policy for the main model or a replica.
+	 * <br>
+	 * Results are written out as soon as each DataSet is calculated, so there is no need to keep them in the model, and with output projection only results of the output Nodes are needed at all.
+	 * 
+	 * @param target the main model or a replica
+	 * 
+	 * @return retention policy with output Nodes of the target monitored
+	 */
+	private ResultRetention resultRetention(Model target){
+		List<Node> outputs = null;
+		if (projection != null && projection.getOutputs() != null){
+			// Replicas have their own Node instances, match them by IDs
+			outputs = projection.getOutputs().stream()
+					.map(node -> target.getNetwork(node.getNetwork().getId()).getNode(node.getId()))
+					.collect(Collectors.toList());
+		}
+		return new ResultRetention().withMonitoredNodes(outputs).withReleaseOnConsume(true);
+	}
+	
+	/**
+	 * Loads a fresh replica of the model from the model file, without any DataSets.
+	 * 
+	 * @return model replica
+	 */
+	private Model loadReplica(){
+		try {
+			Model replica = Model.loadModel(pathModel.toString());
+			replica.getDataSetList().forEach(ds -> replica.removeDataSet(ds));
+			replica.setResultRetention(resultRetention(replica));
+			return replica;
+		}
+		catch (ModelException ex){
+			throw new CalculatorException("Failed to load model replica from file", ex);
+		}
+	}
+	
+	/**
+	 * Creates the DataSet from JSON in the model, calculates it and releases it from the model again so that the model can be reused and only holds results of the DataSet in flight.
+	 * <br>
+	 * If the result cache is enabled and has a result for the same observations, it is returned instead without creating the DataSet.
+	 * 
+	 * @param target model to calculate in, either the main model or a worker's replica
+	 * @param jInput DataSet JSON with observations
+	 * 
+	 * @return result JSON to be written to the output
+	 * 
+	 * @throws Exception if calculation or result conversion failed
+	 */
+	private JSONObject calculateAndRemove(Model target, JSONObject jInput) throws Exception {
+		String id = jInput.optString(DataSet.Field.id.toString());
+		String key = null;
+		if (resultCache != null){
+			key = resultCache.key(jInput);
+			JSONObject jCached = resultCache.get(key);
+			if (jCached != null){
+				Logger.log("Cached: " + id);
+				jCached.put(DataSet.Field.id.toString(), id);
+				return jCached;
+			}
+		}
+		
+		Logger.log("Calculating: " + id);
+		DataSet dataSet = target.createDataSet(jInput);
+		try {
+			target.calculate(null, Arrays.asList(dataSet));
+			JSONObject jResult = toResultJson(dataSet);
+			if (key != null){
+				resultCache.put(key, jResult);
+			}
+			return jResult;
+		}
+		finally {
+			if (!target.resultsConsumed(dataSet)){
+				target.releaseDataSet(dataSet);
+			}
+		}
+	}
+	
+	private void handleFailure(Throwable ex){
+		handleFailure(null, ex);
+	}
+	
+	/**
+	 * Logs the failure once and exits if configured to exit on error.
+	 * 
+	 * @param id ID of the failed DataSet, to tell failures apart when DataSets are calculated in parallel; or null
+	 * @param ex cause of the failure
+	 */
+	private void handleFailure(String id, Throwable ex){
+		Logger.log("Failure: " + (id == null ? "" : id + ": ") + ex.getMessage());
+		Logger.printThrowableIfDebug(ex);
+		if (exitOnError){
+			closeNdjsonWriter();
+			System.exit(ex instanceof Error ? 3 : 1);
+		}
+	}
+	
+	/**
+	 * Creates JSON of the DataSet with its ID, flags, observations and variable observations only, suitable for recreating it in a model replica.
+	 * 
+	 * @param dataSet DataSet to convert
+	 * 
+	 * @return DataSet input JSON
+	 */
+	private JSONObject toInputJson(DataSet dataSet){
+		JSONObject jInput = new JSONObject();
+		jInput.put(DataSet.Field.id.toString(), dataSet.getId());
+		jInput.put(DataSet.Field.active.toString(), dataSet.getLogicScenario().isReportable());
+		jInput.put(DataSet.Field.displayable.toString(), dataSet.getLogicScenario().isDisplayOnRiskGraphs());
+		JSONArray jObservations = new JSONArray();
+		dataSet.getObservationsAndVariables().forEach(obs -> jObservations.put(obs.toJson()));
+		jInput.put(Observation.Field.observations.toString(), jObservations);
+		return jInput;
+	}
+	
+	private JSONObject toResultJson(DataSet dataSet){
+		if (projection != null){
+			return projection.toJson(dataSet);
+		}
+		JSONObject jResult = dataSet.toJson();
+		jResult.remove(DataSet.Field.active.toString());
+		jResult.remove(DataSet.Field.displayable.toString());
+		jResult.remove(Observation.Field.observations.toString());
+		return jResult;
+	}
+	
+	private void writeResult(String id, JSONObject jResult){
+		try {
+			if (ndjson){
+				// Each result is a single line, so a crash can at worst leave the last line truncated
+				ndjsonWriter.write(jResult.toString());
+				ndjsonWriter.write('\n');
+				ndjsonWriter.flush();
+				return;
+			}
 			jResults.put(jResult);
 			Files.write(pathOut, jResults.toString().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
 		}
 		catch (Exception ex){
-			throw new CalculatorException("Failed to write result for " + dataSet.getId(), ex);
+			throw new CalculatorException("Failed to write result for " + id, ex);
 		}
 	}
 	
@@ -162,4 +632,79 @@ public class Calculator {
 			throw new CalculatorException("Result cache corrupted at index " + i, ex);
 		}
 	}
+	
+	/**
+	 * Reads IDs of calculated DataSets from an NDJSON results file line by line.
+	 * <br>
+	 * An incomplete last line, e.g. left over by a crash while writing, is dropped from the file so that new results can be appended after the last complete one.
+	 */
+	private void readCacheNdjson(){
+		if (!Files.exists(pathOut)){
+			return;
+		}
+		
+		int line = 0;
+		long validBytes = 0;
+		boolean truncated = false;
+		
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(pathOut))){
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			
+			while(true){
+				int b = is.read();
+				
+				if (b != -1 && b != '\n'){
+					buffer.write(b);
+					continue;
+				}
+				
+				boolean terminated = b == '\n';
+				String text = new String(buffer.toByteArray(), StandardCharsets.UTF_8).trim();
+				long lineBytes = buffer.size() + (terminated ? 1 : 0);
+				buffer.reset();
+				
+				if (!text.isEmpty()){
+					line++;
+					String id = null;
+					try {
+						id = new JSONObject(text).getString(DataSet.Field.id.toString());
+					}
+					catch (Exception ex){
+						if (terminated){
+							throw new CalculatorException("Result cache corrupted at line " + line, ex);
+						}
+					}
+					
+					if (id == null || !terminated){
+						// Only the final line may be incomplete
+						truncated = true;
+						break;
+					}
+					
+					calculatedIds.add(id);
+				}
+				
+				validBytes += lineBytes;
+				
+				if (!terminated){
+					break;
+				}
+			}
+		}
+		catch (IOException ex){
+			throw new CalculatorException("Failed to read result cache from: " + pathOut, ex);
+		}
+		
+		if (truncated){
+			Logger.log("Discarding incomplete last line " + line + " of result cache");
+			try (FileChannel channel = FileChannel.open(pathOut, StandardOpenOption.WRITE)){
+				channel.truncate(validBytes);
+			}
+			catch (IOException ex){
+				throw new CalculatorException("Failed to repair result cache: " + pathOut, ex);
+			}
+		}
+		
+		Logger.log("Read " + calculatedIds.size() + " entries from cache");
+	}
 }
@@ -0,0 +1,130 @@
+package com.agenarisk.api.tools.calculator;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Reads DataSet JSON objects from a data file one at a time, without loading the whole file into memory.
+ * <br>
+ * Supports a JSON array of DataSet objects <code>[{...}, {...}]</code> and NDJSON with one DataSet object per line.
+ * <br>
+ * The format is detected from the first non-whitespace character of the file.
+ *
+ * @author Eugene Dementiev
+ */
+class DataSetReader implements Iterator<JSONObject>, Closeable {
+
+	private final BufferedReader reader;
+	private final JSONTokener tokener;
+	private final boolean array;
+
+	private JSONObject next = null;
+	private boolean finished = false;
+	private int index = 0;
+
+	/**
+	 * Opens the data file for reading.
+	 *
+	 * @param path path to the data file
+	 *
+	 * @throws IOException if the file can't be opened
+	 * @throws JSONException if the file is neither a JSON array nor NDJSON
+	 */
+	DataSetReader(Path path) throws IOException {
+		reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+		tokener = new JSONTokener(reader);
+
+		char c = tokener.nextClean();
+		if (c == '['){
+			array = true;
+			if (tokener.nextClean() == ']'){
+				finished = true;
+			}
+			else {
+				tokener.back();
+			}
+		}
+		else if (c == '{'){
+			array = false;
+			tokener.back();
+		}
+		else if (c == 0){
+			array = false;
+			finished = true;
+		}
+		else {
+			reader.close();
+			throw tokener.syntaxError("Data file must contain a JSON array or one JSON object per line");
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null){
+			return true;
+		}
+		if (finished){
+			return false;
+		}
+
+		Object value = tokener.nextValue();
+		if (!(value instanceof JSONObject)){
+			throw tokener.syntaxError("Expected a DataSet object at index " + index);
+		}
+		next = (JSONObject) value;
+
+		char c = tokener.nextClean();
+		if (array){
+			if (c == ']'){
+				finished = true;
+			}
+			else if (c != ','){
+				throw tokener.syntaxError("Expected ',' or ']' after DataSet at index " + index);
+			}
+		}
+		else if (c == 0){
+			finished = true;
+		}
+		else {
+			tokener.back();
+		}
+
+		return true;
+	}
+
+	@Override
+	public JSONObject next() {
+		if (!hasNext()){
+			throw new NoSuchElementException();
+		}
+		JSONObject current = next;
+		next = null;
+		index++;
+		return current;
+	}
+
+	/**
+	 * Returns the number of DataSets returned so far.
+	 *
+	 * @return number of DataSets read
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
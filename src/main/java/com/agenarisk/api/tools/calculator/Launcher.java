@@ -1,6 +1,8 @@
 package com.agenarisk.api.tools.calculator;
 
+import com.agenarisk.api.tools.Utils;
 import com.agenarisk.api.util.*;
+import java.util.Arrays;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -32,6 +34,13 @@ public class Launcher {
 		OPTIONS.addOption(Option.builder().longOpt("data").hasArg().argName("path").desc("path to data file").build());
 		OPTIONS.addOption(Option.builder().longOpt("out").hasArg().argName("path").desc("path to results file").build());
 		OPTIONS.addOption(Option.builder().longOpt("use-cache").desc("Skip data recalculation if found in results file [default: false]").build());
+		OPTIONS.addOption(Option.builder().longOpt("stream").desc("Read data file one DataSet at a time instead of loading it in full; data can be a JSON array or one JSON object per line; results are written as NDJSON [default: false]").build());
+		OPTIONS.addOption(Option.builder().longOpt("ndjson").desc("Write results as one JSON object per line, appending each result once [default: true with --stream and for .ndjson and .jsonl output files]").build());
+		OPTIONS.addOption(Option.builder().longOpt("result-cache").hasArg().argName("path").desc("Directory of persistent result cache keyed by model and observations").build());
+		OPTIONS.addOption(Option.builder().longOpt("result-cache-size").hasArg().argName("MB").desc("Maximum size of result cache, least recently used results are evicted beyond it [default: 1024]").build());
+		OPTIONS.addOption(Option.builder().longOpt("outputs").hasArg().argName("network.node,...").desc("Write results only for these nodes [default: all nodes]").build());
+		OPTIONS.addOption(Option.builder().longOpt("stats").hasArg().argName("names").desc("Summary statistics to write for selected nodes, e.g. mean,variance,p05,p95 [default: as in full results without --outputs, none with it]").build());
+		OPTIONS.addOption(Option.builder().longOpt("threads").hasArg().argName("n").desc("Number of worker threads, each with its own model replica [default: 1]").build());
 		
 		Logger.getOptions().getOptions().stream().forEach(option -> OPTIONS.addOption(option));
 		Config.getOptions().getOptions().stream().forEach(option -> OPTIONS.addOption(option));
@@ -84,12 +93,48 @@ public class Launcher {
 			System.exit(1);
 		}
 		
+		String pathOut = cmd.getOptionValue("out");
+		String fileOut = Utils.resolve(pathOut).getFileName().toString().toLowerCase();
+		boolean ndjson = cmd.hasOption("ndjson") || fileOut.endsWith(".ndjson") || fileOut.endsWith(".jsonl");
+		
+		int threads = 1;
+		long resultCacheSize = 1024;
+		try {
+			threads = Integer.parseInt(cmd.getOptionValue("threads", "1"));
+			resultCacheSize = Long.parseLong(cmd.getOptionValue("result-cache-size", "1024"));
+		}
+		catch (NumberFormatException ex){
+			Logger.err().println("Parameters threads and result-cache-size must be integers");
+			System.exit(1);
+		}
+		
 		try {
-			new Calculator()
-				.withModel(cmd.getOptionValue("model"))
-				.withData(cmd.getOptionValue("data"))
-				.savingTo(cmd.getOptionValue("out"))
+			Calculator calculator = new Calculator().withModel(cmd.getOptionValue("model"));
+			
+			if (cmd.hasOption("stream")){
+				calculator.withDataStream(cmd.getOptionValue("data"));
+			}
+			else {
+				calculator.withData(cmd.getOptionValue("data"));
+			}
+			
+			if (cmd.hasOption("result-cache")){
+				calculator.withResultCache(cmd.getOptionValue("result-cache"), resultCacheSize * 1024 * 1024);
+			}
+			
+			if (cmd.hasOption("outputs")){
+				calculator.withOutputs(Arrays.asList(cmd.getOptionValue("outputs").split(",")));
+			}
+			
+			if (cmd.hasOption("stats")){
+				calculator.withStatistics(Arrays.asList(cmd.getOptionValue("stats").split(",")));
+			}
+			
+			calculator
+				.savingTo(pathOut)
 				.usingCache(cmd.hasOption("use-cache"))
+				.withThreads(threads)
+				.withNdjson(ndjson)
 				.execute();
 		}
 		catch(Exception ex){
@@ -0,0 +1,301 @@
+package com.agenarisk.api.tools.calculator;
+
+import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.io.JSONAdapter;
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Model;
+import com.agenarisk.api.model.Observation;
+import com.agenarisk.api.util.JSONUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import uk.co.agena.minerva.util.Logger;
+
+/**
+ * Persistent content-addressed cache of DataSet calculation results.
+ * <br>
+ * An entry is keyed by a hash of the model structure and settings combined with the canonicalised observations of a DataSet, so identical evidence is served from cache across runs, data files and DataSet IDs, while any change to the model invalidates all of its entries.
+ * <br>
+ * Entries are stored as individual files in the cache directory. When the total size of entries exceeds the cap, least recently used entries are evicted.
+ * <br>
+ * All methods are thread-safe.
+ *
+ * @author Eugene Dementiev
+ */
+public class ResultCache {
+
+	private static final String EXTENSION = ".json";
+
+	private final Path directory;
+	private final long maxBytes;
+	private final String modelHash;
+
+	/**
+	 * Entry key to entry size in bytes, in access order from least to most recently used
+	 */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Opens the cache in the provided directory for the provided Model, creating the directory if it does not exist.
+	 * <br>
+	 * Existing entries are ordered for eviction by their last modification time, which is updated on every cache hit.
+	 *
+	 * @param directory cache directory
+	 * @param maxBytes maximum total size of entries in bytes
+	 * @param model model whose results will be cached
+	 *
+	 * @throws CalculatorException if the directory is not accessible or the model can't be hashed
+	 */
+	public ResultCache(Path directory, long maxBytes, Model model){
+		this(directory, maxBytes, model, null);
+	}
+
+	/**
+	 * Opens the cache in the provided directory for the provided Model, keeping entries separate from those cached with a different variant.
+	 * <br>
+	 * A variant is needed when the same model and observations produce differently shaped results, e.g. with a ResultProjection.
+	 *
+	 * @param directory cache directory
+	 * @param maxBytes maximum total size of entries in bytes
+	 * @param model model whose results will be cached
+	 * @param variant variant of results, or null for full results
+	 *
+	 * @throws CalculatorException if the directory is not accessible or the model can't be hashed
+	 */
+	public ResultCache(Path directory, long maxBytes, Model model, String variant){
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.modelHash = (variant == null) ? hashModel(model) : JSONUtils.sha256(hashModel(model) + "\n" + variant);
+
+		List<Path> files = new ArrayList<>();
+		try {
+			Files.createDirectories(directory);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)){
+				stream.forEach(files::add);
+			}
+			files.sort((a, b) -> lastModified(a).compareTo(lastModified(b)));
+			for(Path file: files){
+				String fileName = file.getFileName().toString();
+				long size = Files.size(file);
+				entries.put(fileName.substring(0, fileName.length() - EXTENSION.length()), size);
+				totalBytes += size;
+			}
+		}
+		catch (IOException ex){
+			throw new CalculatorException("Failed to open result cache: " + directory, ex);
+		}
+
+		evict();
+		Logger.logIfDebug("Result cache has " + entries.size() + " entries, " + totalBytes + " bytes");
+	}
+
+	/**
+	 * Computes the cache key for the provided DataSet JSON.
+	 * <br>
+	 * DataSet ID and display flags do not contribute to the key, and neither does the order of observations or of soft observation entries.
+	 *
+	 * @param jDataSet DataSet JSON with observations
+	 *
+	 * @return cache key
+	 */
+	public String key(JSONObject jDataSet){
+		List<String> observations = new ArrayList<>();
+		JSONArray jObservations = jDataSet.optJSONArray(Observation.Field.observations.toString());
+		if (jObservations != null){
+			for (int i = 0; i < jObservations.length(); i++) {
+				JSONObject jObservation = jObservations.optJSONObject(i);
+				if (jObservation != null){
+					observations.add(canonicalObservation(jObservation));
+				}
+			}
+		}
+		observations.sort(null);
+		return JSONUtils.sha256(modelHash + "\n" + String.join("\n", observations));
+	}
+
+	/**
+	 * Looks up a cached result.
+	 *
+	 * @param key cache key
+	 *
+	 * @return copy of the cached result without DataSet ID, or null if not cached or the entry is unreadable
+	 */
+	public synchronized JSONObject get(String key){
+		// Lookup through get() to mark the entry as most recently used
+		if (entries.get(key) == null){
+			misses++;
+			return null;
+		}
+
+		Path file = directory.resolve(key + EXTENSION);
+		try {
+			JSONObject jResult = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			hits++;
+			return jResult;
+		}
+		catch (Exception ex){
+			// Treat a missing or corrupted entry as a miss and drop it
+			Logger.logIfDebug("Dropping unreadable result cache entry " + key + ": " + ex.getMessage());
+			remove(key);
+			misses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a result in the cache, then evicts least recently used entries if the size cap is exceeded.
+	 *
+	 * @param key cache key
+	 * @param jResult result JSON; DataSet ID is not stored
+	 */
+	public synchronized void put(String key, JSONObject jResult){
+		Object id = jResult.remove(DataSet.Field.id.toString());
+		byte[] bytes = jResult.toString().getBytes(StandardCharsets.UTF_8);
+		if (id != null){
+			jResult.put(DataSet.Field.id.toString(), id);
+		}
+
+		Path file = directory.resolve(key + EXTENSION);
+		try {
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			Files.write(temp, bytes);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex){
+			// Caching is an optimisation, failure to store should not fail the calculation
+			Logger.logIfDebug("Failed to store result cache entry " + key + ": " + ex.getMessage());
+			return;
+		}
+
+		Long previous = entries.put(key, (long) bytes.length);
+		totalBytes += bytes.length - (previous == null ? 0 : previous);
+		evict();
+	}
+
+	/**
+	 * Returns the number of lookups served from cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups not served from cache.
+	 *
+	 * @return number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private void evict(){
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while(totalBytes > maxBytes && iterator.hasNext()){
+			Map.Entry<String, Long> entry = iterator.next();
+			iterator.remove();
+			totalBytes -= entry.getValue();
+			deleteFile(entry.getKey());
+		}
+	}
+
+	private void remove(String key){
+		Long size = entries.remove(key);
+		if (size != null){
+			totalBytes -= size;
+		}
+		deleteFile(key);
+	}
+
+	private void deleteFile(String key){
+		try {
+			Files.deleteIfExists(directory.resolve(key + EXTENSION));
+		}
+		catch (IOException ex){
+			Logger.logIfDebug("Failed to delete result cache entry " + key + ": " + ex.getMessage());
+		}
+	}
+
+	private static FileTime lastModified(Path path){
+		try {
+			return Files.getLastModifiedTime(path);
+		}
+		catch (IOException ex){
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	/**
+	 * Canonicalises an observation so that equivalent observations produce the same String.
+	 * <br>
+	 * Entry values are compared as Strings so that e.g. 5 and "5" are treated the same, and missing weights default to 1.
+	 *
+	 * @param jObservation observation JSON
+	 *
+	 * @return canonical String
+	 */
+	private static String canonicalObservation(JSONObject jObservation){
+		JSONObject jCanonical = new JSONObject();
+		jCanonical.put(Observation.Field.network.toString(), jObservation.optString(Observation.Field.network.toString()));
+		jCanonical.put(Observation.Field.node.toString(), jObservation.optString(Observation.Field.node.toString()));
+		jCanonical.put(Observation.Field.constantName.toString(), jObservation.optString(Observation.Field.constantName.toString()));
+
+		List<String> entryStrings = new ArrayList<>();
+		JSONArray jEntries = jObservation.optJSONArray(Observation.Field.entries.toString());
+		if (jEntries != null){
+			for (int i = 0; i < jEntries.length(); i++) {
+				JSONObject jEntry = jEntries.optJSONObject(i);
+				if (jEntry == null){
+					continue;
+				}
+				Object value = jEntry.opt(Observation.Field.value.toString());
+				String valueString = value instanceof Number ? JSONObject.numberToString((Number) value) : String.valueOf(value);
+				double weight = jEntries.length() == 1 ? 1 : jEntry.optDouble(Observation.Field.weight.toString(), 1.0);
+				JSONObject jCanonicalEntry = new JSONObject();
+				jCanonicalEntry.put(Observation.Field.value.toString(), valueString);
+				jCanonicalEntry.put(Observation.Field.weight.toString(), weight);
+				entryStrings.add(JSONUtils.toCanonicalString(jCanonicalEntry));
+			}
+		}
+		entryStrings.sort(null);
+		jCanonical.put(Observation.Field.entries.toString(), new JSONArray(entryStrings));
+
+		return JSONUtils.toCanonicalString(jCanonical);
+	}
+
+	/**
+	 * Hashes the model structure and settings, ignoring DataSets, graphics, meta and generated tables.
+	 *
+	 * @param model model to hash
+	 *
+	 * @return model hash
+	 */
+	private static String hashModel(Model model){
+		try {
+			// Converted directly rather than with Model.export(), which would report an EXPORT event to the model's listeners for every calculation
+			return JSONUtils.sha256(JSONUtils.toCanonicalString(JSONAdapter.toJSONObject(model.getLogicModel(), EnumSet.noneOf(Model.ExportFlag.class))));
+		}
+		catch (AdapterException | JSONException ex){
+			throw new CalculatorException("Failed to hash the model for result cache", ex);
+		}
+	}
+}
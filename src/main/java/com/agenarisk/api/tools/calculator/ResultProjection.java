@@ -0,0 +1,243 @@
+package com.agenarisk.api.tools.calculator;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import com.agenarisk.api.io.stub.SummaryStatistic;
+import com.agenarisk.api.model.CalculationResult;
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Model;
+import com.agenarisk.api.model.Network;
+import com.agenarisk.api.model.Node;
+import com.agenarisk.api.model.ResultValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import uk.co.agena.minerva.model.extendedbn.LabelledEN;
+
+/**
+ * Selects which Nodes and summary statistics are written to Calculator results.
+ * <br>
+ * Only results of the selected Nodes are retrieved from the model, so unselected Nodes cost neither conversion time nor output size.
+ * <br>
+ * Summary statistics are written only if requested, and only for Nodes that are not labelled. Supported statistics are the fields of SummaryStatistic (e.g. mean, variance, median) and arbitrary percentiles in the form <code>pNN</code>, e.g. <code>p05</code> or <code>p97.5</code>.
+ *
+ * @author Eugene Dementiev
+ */
+public class ResultProjection {
+
+	private static final Pattern PERCENTILE = Pattern.compile("p(\\d+(?:\\.\\d+)?)");
+
+	/**
+	 * Nodes to write results for, or null for all Nodes
+	 */
+	private final List<Node> outputs;
+
+	/**
+	 * Summary statistics to write, in the order requested
+	 */
+	private final List<String> statistics;
+
+	/**
+	 * Creates a projection for the model.
+	 *
+	 * @param model the model results will be written for
+	 * @param outputs Nodes to write results for in the form <code>network.node</code>, or null for all Nodes
+	 * @param statistics summary statistics to write, or null to write none
+	 *
+	 * @throws CalculatorException if a Node is not found or a statistic is not supported
+	 */
+	public ResultProjection(Model model, List<String> outputs, List<String> statistics){
+		if (outputs == null){
+			this.outputs = null;
+		}
+		else {
+			List<Node> nodes = new ArrayList<>();
+			for(String output: outputs){
+				nodes.add(resolveNode(model, output.trim()));
+			}
+			this.outputs = Collections.unmodifiableList(nodes);
+		}
+
+		List<String> stats = new ArrayList<>();
+		if (statistics != null){
+			for(String statistic: statistics){
+				stats.add(validateStatistic(statistic.trim()));
+			}
+		}
+		this.statistics = Collections.unmodifiableList(stats);
+	}
+
+	/**
+	 * Resolves a Node from <code>network.node</code>, trying every dot as the separator since IDs may contain dots.
+	 */
+	private static Node resolveNode(Model model, String output){
+		for(int i = output.indexOf('.'); i > 0; i = output.indexOf('.', i + 1)){
+			Network network = model.getNetwork(output.substring(0, i));
+			Node node = (network == null) ? null : network.getNode(output.substring(i + 1));
+			if (node != null){
+				return node;
+			}
+		}
+		throw new CalculatorException("Output node `" + output + "` not found, expected format is network.node");
+	}
+
+	private static String validateStatistic(String statistic){
+		Matcher matcher = PERCENTILE.matcher(statistic);
+		if (matcher.matches()){
+			double percentile = Double.parseDouble(matcher.group(1));
+			if (percentile > 100){
+				throw new CalculatorException("Percentile out of range: " + statistic);
+			}
+			return statistic;
+		}
+
+		try {
+			if (SummaryStatistic.Field.valueOf(statistic) != SummaryStatistic.Field.summaryStatistics){
+				return statistic;
+			}
+		}
+		catch (IllegalArgumentException ex){
+			// Reported below
+		}
+		throw new CalculatorException("Unsupported summary statistic: " + statistic);
+	}
+
+	/**
+	 * Returns the Nodes results are written for.
+	 * <br>
+	 * The Nodes belong to the model the projection was created for; results of DataSets in other models loaded from the same file are matched by Network and Node IDs.
+	 *
+	 * @return list of Nodes or null if results are written for all Nodes
+	 */
+	public List<Node> getOutputs(){
+		return outputs;
+	}
+
+	/**
+	 * Returns a string that uniquely identifies this projection, to distinguish results of different projections.
+	 *
+	 * @return projection signature
+	 */
+	public String getSignature(){
+		StringBuilder sb = new StringBuilder("outputs=");
+		if (outputs == null){
+			sb.append("*");
+		}
+		else {
+			outputs.forEach(node -> sb.append(node.getNetwork().getId()).append('/').append(node.getId()).append(','));
+		}
+		sb.append(";stats=").append(String.join(",", statistics));
+		return sb.toString();
+	}
+
+	/**
+	 * Builds result JSON for the DataSet with the selected Nodes and statistics.
+	 *
+	 * @param dataSet calculated DataSet
+	 *
+	 * @return result JSON in the same format as written by Calculator without projection
+	 */
+	public JSONObject toJson(DataSet dataSet){
+		JSONObject jResult = new JSONObject();
+		jResult.put(DataSet.Field.id.toString(), dataSet.getId());
+
+		List<Node> nodes = new ArrayList<>();
+		Model model = dataSet.getModel();
+		if (outputs == null){
+			for(Network network: model.getNetworkList()){
+				nodes.addAll(network.getNodeList());
+			}
+		}
+		else if (outputs.isEmpty() || outputs.get(0).getNetwork().getModel() == model){
+			nodes.addAll(outputs);
+		}
+		else {
+			// DataSet of a model replica
+			for(Node output: outputs){
+				nodes.add(model.getNetwork(output.getNetwork().getId()).getNode(output.getId()));
+			}
+		}
+
+		JSONArray jResults = new JSONArray();
+		for(Node node: nodes){
+			CalculationResult result = dataSet.getCalculationResult(node);
+			if (result != null){
+				jResults.put(toJson(result));
+			}
+		}
+		jResult.put(CalculationResult.Field.results.toString(), jResults);
+		jResult.put(DataSet.Field.logPe.toString(), new JSONObject(dataSet.getLogicScenario().getLogPeMap()));
+
+		return jResult;
+	}
+
+	private JSONObject toJson(CalculationResult result){
+		Node node = result.getNode();
+		JSONObject json = new JSONObject();
+		json.put(CalculationResult.Field.node.toString(), node.getId());
+		json.put(CalculationResult.Field.network.toString(), node.getNetwork().getId());
+
+		JSONArray jValues = new JSONArray();
+		for(ResultValue rv: result.getResultValues()){
+			jValues.put(rv.toJson());
+		}
+		json.put(ResultValue.Field.resultValues.toString(), jValues);
+
+		if (!statistics.isEmpty() && !(node.getLogicNode() instanceof LabelledEN)){
+			JSONObject ssJson = new JSONObject();
+			for(String statistic: statistics){
+				putStatistic(ssJson, statistic, getStatistic(result, statistic));
+			}
+			json.put(SummaryStatistic.Field.summaryStatistics.toString(), ssJson);
+		}
+
+		return json;
+	}
+
+	private static double getStatistic(CalculationResult result, String statistic){
+		Matcher matcher = PERCENTILE.matcher(statistic);
+		if (matcher.matches()){
+			try {
+				return result.getPercentile(Double.parseDouble(matcher.group(1)));
+			}
+			catch (AgenaRiskRuntimeException ex){
+				return Double.NaN;
+			}
+		}
+
+		switch (SummaryStatistic.Field.valueOf(statistic)) {
+			case confidenceInterval:
+				return result.getConfidenceInterval();
+			case mean:
+				return result.getMean();
+			case median:
+				return result.getMedian();
+			case standardDeviation:
+				return result.getStandardDeviation();
+			case variance:
+				return result.getVariance();
+			case entropy:
+				return result.getEntropy();
+			case percentile:
+				return result.getPercentile();
+			case lowerPercentile:
+				return result.getLowerPercentile();
+			case upperPercentile:
+				return result.getUpperPercentile();
+			default:
+				return Double.NaN;
+		}
+	}
+
+	private static void putStatistic(JSONObject json, String field, double value){
+		if (Double.isFinite(value)){
+			json.put(field, value);
+		}
+		else {
+			json.put(field, Double.toString(value));
+		}
+	}
+}
@@ -185,11 +185,9 @@ public class MultivariateAnalyser implements Progressable {
                     com.agenarisk.api.model.Model.CalculationFlag.KEEP_TAILS_ZERO_REGIONS
             );
             japiModel.convertToStatic(ds, com.agenarisk.api.model.Model.ConversionFlag.IgnoreErrors);
-            japiModel = com.agenarisk.api.model.Model.createModel(
-                    japiModel.export(
-                            com.agenarisk.api.model.Model.ExportFlag.KEEP_OBSERVATIONS,
-                            com.agenarisk.api.model.Model.ExportFlag.KEEP_META
-                    )
+            japiModel = japiModel.copy(
+                    com.agenarisk.api.model.Model.ExportFlag.KEEP_OBSERVATIONS,
+                    com.agenarisk.api.model.Model.ExportFlag.KEEP_META
             );
             connModel = japiModel.getLogicModel();
         } catch (Exception ex) {
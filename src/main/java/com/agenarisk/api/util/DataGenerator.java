@@ -11,9 +11,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -436,7 +434,7 @@ public class DataGenerator {
 			}
 		}
 
-		List<Node> ordered = topologicalOrder(network, nodes);
+		List<Node> ordered = network.getGraphIndex().sort(nodes);
 
 		List<NodeSampler> samplers = new ArrayList<>(ordered.size());
 		for (Node node : ordered) {
@@ -452,55 +450,6 @@ public class DataGenerator {
 		return new PreparedNetwork(header, samplers);
 	}
 
-	/**
-	 * Computes a topological order (parents before children) using Kahn's algorithm, considering only intra-Network
-	 * parents.
-	 */
-	private List<Node> topologicalOrder(Network network, List<Node> nodes) {
-		Map<Node, Integer> inDegree = new LinkedHashMap<>();
-		Map<Node, List<Node>> children = new LinkedHashMap<>();
-		for (Node node : nodes) {
-			inDegree.put(node, 0);
-			children.put(node, new ArrayList<>());
-		}
-
-		for (Node node : nodes) {
-			for (Node parent : node.getParents()) {
-				if (!Objects.equals(parent.getNetwork(), network) || !inDegree.containsKey(parent)) {
-					continue;
-				}
-				inDegree.put(node, inDegree.get(node) + 1);
-				children.get(parent).add(node);
-			}
-		}
-
-		Deque<Node> ready = new ArrayDeque<>();
-		for (Node node : nodes) {
-			if (inDegree.get(node) == 0) {
-				ready.add(node);
-			}
-		}
-
-		List<Node> ordered = new ArrayList<>(nodes.size());
-		while (!ready.isEmpty()) {
-			Node node = ready.poll();
-			ordered.add(node);
-			for (Node child : children.get(node)) {
-				int remaining = inDegree.get(child) - 1;
-				inDegree.put(child, remaining);
-				if (remaining == 0) {
-					ready.add(child);
-				}
-			}
-		}
-
-		if (ordered.size() != nodes.size()) {
-			throw new AgenaRiskRuntimeException("Network `" + network.getId() + "` appears to contain a cycle; "
-					+ "cannot compute a sampling order");
-		}
-		return ordered;
-	}
-
 	/**
 	 * Formats a sampled continuous value for output.
 	 */
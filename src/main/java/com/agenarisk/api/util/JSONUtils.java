@@ -1,6 +1,9 @@
 package com.agenarisk.api.util;
 
 import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -456,4 +459,106 @@ public class JSONUtils {
 		}
 		// Don't do anything special for other types
 	}
+	
+	/**
+	 * Creates a deep copy of the provided JSONObject.
+	 * 
+	 * @param jo JSONObject to copy
+	 * 
+	 * @return copy of the JSONObject or null if provided with null
+	 */
+	public static JSONObject copy(JSONObject jo){
+		return (jo == null) ? null : new JSONObject(jo.toString());
+	}
+	
+	/**
+	 * Creates a deep copy of the provided JSONArray.
+	 * 
+	 * @param ja JSONArray to copy
+	 * 
+	 * @return copy of the JSONArray or null if provided with null
+	 */
+	public static JSONArray copy(JSONArray ja){
+		return (ja == null) ? null : new JSONArray(ja.toString());
+	}
+	
+	/**
+	 * Creates a canonical String representation of the provided JSON value, where keys of every JSONObject are written in sorted order.
+	 * <br>
+	 * Array elements keep their order.
+	 * <br>
+	 * Equal JSON structures produce equal Strings regardless of the order in which their keys were put, which makes the result suitable for hashing.
+	 * 
+	 * @param o JSONObject, JSONArray or a JSON primitive value
+	 * 
+	 * @return canonical JSON String
+	 */
+	public static String toCanonicalString(Object o){
+		StringBuilder sb = new StringBuilder();
+		appendCanonical(sb, o);
+		return sb.toString();
+	}
+	
+	/**
+	 * Computes the SHA-256 digest of the text encoded in UTF-8, e.g. of a canonical JSON String from {@link #toCanonicalString(Object)}.
+	 * 
+	 * @param text text to hash
+	 * 
+	 * @return lower case hexadecimal digest
+	 */
+	public static String sha256(String text){
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+		}
+		catch (NoSuchAlgorithmException ex){
+			throw new AgenaRiskRuntimeException("SHA-256 not available", ex);
+		}
+		
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for(byte b: digest){
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+	
+	private static void appendCanonical(StringBuilder sb, Object o){
+		if (o == null || JSONObject.NULL.equals(o)){
+			sb.append("null");
+		}
+		else if (o instanceof JSONObject){
+			JSONObject jo = (JSONObject) o;
+			List<String> keys = new ArrayList<>(jo.keySet());
+			keys.sort(null);
+			sb.append('{');
+			for (int i = 0; i < keys.size(); i++) {
+				if (i > 0){
+					sb.append(',');
+				}
+				sb.append(JSONObject.quote(keys.get(i))).append(':');
+				appendCanonical(sb, jo.opt(keys.get(i)));
+			}
+			sb.append('}');
+		}
+		else if (o instanceof JSONArray){
+			JSONArray ja = (JSONArray) o;
+			sb.append('[');
+			for (int i = 0; i < ja.length(); i++) {
+				if (i > 0){
+					sb.append(',');
+				}
+				appendCanonical(sb, ja.opt(i));
+			}
+			sb.append(']');
+		}
+		else if (o instanceof Number){
+			sb.append(JSONObject.numberToString((Number) o));
+		}
+		else if (o instanceof Boolean){
+			sb.append(o);
+		}
+		else {
+			sb.append(JSONObject.quote(o.toString()));
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package com.agenarisk.learning.structure.config;
 
+import com.agenarisk.api.model.CalculationContext;
 import com.agenarisk.api.model.Model;
 import com.agenarisk.api.model.Network;
 import com.agenarisk.learning.structure.exception.StructureLearningException;
@@ -59,27 +60,27 @@ public class EMParameterLearningExecutor extends Configurer<EMParameterLearningE
 //			model.getLogicModel().setEMLogging(true);
 			model.getNetworkList().get(0).getLogicNetwork().reinitialise(false);
 			
-			uk.co.agena.minerva.model.Model.EM_ON = true;
-			EMCal emcal = new EMCal(model.getLogicModel(),
-					model.getNetworkList().get(0).getLogicNetwork(),
-					data,
-					originalConfigurer.getMissingValue(),
-					originalConfigurer.getModelPrefix()+".cmp",
-					skipNodes,
-					true);
-			emcal.setMaxIterations(originalConfigurer.getMaxIterations());
-			emcal.threshold = originalConfigurer.getConvergenceThreshold();
+			// Only the EM switch is applied, other engine switches are left as configured
+			CalculationContext context = CalculationContext.headless().withSuppressMessages(null).withCheckMonitorsOpen(null).withExpectationMaximisation(true);
+			try (CalculationContext.Scope scope = context.enter((uk.co.agena.minerva.model.Model) null)){
+				EMCal emcal = new EMCal(model.getLogicModel(),
+						model.getNetworkList().get(0).getLogicNetwork(),
+						data,
+						originalConfigurer.getMissingValue(),
+						originalConfigurer.getModelPrefix()+".cmp",
+						skipNodes,
+						true);
+				emcal.setMaxIterations(originalConfigurer.getMaxIterations());
+				emcal.threshold = originalConfigurer.getConvergenceThreshold();
 
-			runWithProgressPolling(emcal);
+				runWithProgressPolling(emcal);
 
-			byte[] bytes = model.export(Model.ExportFlag.KEEP_META, Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS).toString().getBytes();
-			Files.write(originalConfigurer.getModelPath(), bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-			
+				byte[] bytes = model.export(Model.ExportFlag.KEEP_META, Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS).toString().getBytes();
+				Files.write(originalConfigurer.getModelPath(), bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			}
 			originalConfigurer.setModel(model);
-			uk.co.agena.minerva.model.Model.EM_ON = false;
 		}
 		catch (Exception ex){
-			uk.co.agena.minerva.model.Model.EM_ON = false;
 			throw new StructureLearningException(ex.getMessage(), ex);
 		}
 	}
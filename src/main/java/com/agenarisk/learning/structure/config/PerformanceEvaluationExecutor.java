@@ -3,6 +3,7 @@ package com.agenarisk.learning.structure.config;
 import com.agenarisk.api.exception.InconsistentEvidenceException;
 import com.agenarisk.api.model.CalculationResult;
 import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.EvidenceTemplate;
 import com.agenarisk.api.model.Model;
 import com.agenarisk.api.model.Network;
 import com.agenarisk.api.model.Node;
@@ -22,7 +23,6 @@ import java.util.OptionalDouble;
 import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
-import uk.co.agena.minerva.model.extendedbn.ExtendedStateNotFoundException;
 
 /**
  *
@@ -225,34 +225,14 @@ public class PerformanceEvaluationExecutor extends Configurer<PerformanceEvaluat
 	}
 
 	/**
-	 * Walks up the target's ancestry and returns the IDs of every true root (parentless) ancestor - the
+	 * Looks up the target's ancestry in the graph index and returns the IDs of every true root (parentless) ancestor - the
 	 * network's exogenous inputs. Excludes the target itself even if it happens to have no parents (nothing to
 	 * clamp there; its own prediction is what's being evaluated). Any intermediate ancestor (one that has
 	 * parents of its own) is deliberately excluded - its value should come from the model's own learned
 	 * equation for it, not be clamped to the row's raw observation.
 	 */
 	private static Set<String> collectRootAncestorIds(Node target) {
-		Set<String> roots = new java.util.LinkedHashSet<>();
-		Set<Node> visited = new java.util.HashSet<>();
-		java.util.Deque<Node> stack = new java.util.ArrayDeque<>();
-		visited.add(target);
-		stack.push(target);
-		while (!stack.isEmpty()){
-			Node current = stack.pop();
-			Set<Node> parents = current.getParents();
-			if (parents.isEmpty()){
-				if (current != target){
-					roots.add(current.getId());
-				}
-				continue;
-			}
-			for (Node parent : parents){
-				if (visited.add(parent)){
-					stack.push(parent);
-				}
-			}
-		}
-		return roots;
+		return target.getNetwork().getGraphIndex().getRootAncestors(target).stream().map(Node::getId).collect(Collectors.toCollection(java.util.LinkedHashSet::new));
 	}
 
 	/**
@@ -337,6 +317,9 @@ public class PerformanceEvaluationExecutor extends Configurer<PerformanceEvaluat
 		// the log for a fast model or staying silent for minutes on a slow one.
 		long lastProgressEmitMs = System.currentTimeMillis();
 
+		// Nodes and states of the data columns are resolved once for all rows
+		EvidenceTemplate evidenceTemplate = EvidenceTemplate.compile(network, dataHeaders);
+
 		for (int rowIndex = 0; rowIndex < data.size(); rowIndex += 1){
 			long nowMs = System.currentTimeMillis();
 			if (nowMs - lastProgressEmitMs >= 1000){
@@ -365,6 +348,7 @@ public class PerformanceEvaluationExecutor extends Configurer<PerformanceEvaluat
 				// enter cannot leave a stale observation on this row.
 				dataCase.clearObservations();
 				String actualValue = "";
+				Object[] evidence = new Object[dataHeaders.size()];
 				for (int observationIndex = 0; observationIndex < row.size(); observationIndex += 1){
 					String nodeId = dataHeaders.get(observationIndex);
 					String value = row.get(observationIndex);
@@ -381,16 +365,17 @@ public class PerformanceEvaluationExecutor extends Configurer<PerformanceEvaluat
 						// raw observation.
 						continue;
 					}
-					try {
-						dataCase.setObservation(network.getNode(nodeId), value);
+					evidence[observationIndex] = value;
+				}
+
+				EvidenceTemplate.Status[] statuses = evidenceTemplate.apply(dataCase, evidence);
+				for (int observationIndex = 0; observationIndex < statuses.length; observationIndex += 1){
+					EvidenceTemplate.Status status = statuses[observationIndex];
+					if (status == EvidenceTemplate.Status.UNKNOWN_STATE){
+						evaluation.setMessage("Evaluation case data contains states that are missing in model, e.g. " + evidence[observationIndex] + " in " + dataHeaders.get(observationIndex));
 					}
-					catch (Exception ex){
-						if (ex.getCause() instanceof ExtendedStateNotFoundException){
-							evaluation.setMessage("Evaluation case data contains states that are missing in model, e.g. " + value + " in " + nodeId);
-						}
-						else {
-							evaluation.setMessage("Some evaluation case data failed to enter the model, e.g. row " + rowIndex + ": " + ex.getMessage());
-						}
+					else if (status != EvidenceTemplate.Status.ENTERED && status != EvidenceTemplate.Status.SKIPPED){
+						evaluation.setMessage("Some evaluation case data failed to enter the model, e.g. row " + rowIndex + ": " + status + " for " + dataHeaders.get(observationIndex));
 					}
 				}
 
@@ -0,0 +1,65 @@
+package com.agenarisk.api.io;
+
+import com.agenarisk.api.exception.AdapterException;
+import com.agenarisk.api.model.Model;
+import com.agenarisk.api.util.JSONUtils;
+import com.agenarisk.test.TestHelper;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class BinaryModelAdapterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testSaveLoadRoundTrip() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		model.calculate();
+
+		Path path = tempDir.resolve("model" + BinaryModelAdapter.EXTENSION);
+		model.save(path.toString());
+
+		byte[] bytes = Files.readAllBytes(path);
+		assertEquals("AGNB", new String(bytes, 0, 4, "US-ASCII"));
+
+		Model loaded = Model.loadModel(path.toString());
+		assertEquals(
+				JSONUtils.toCanonicalString(model.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS)),
+				JSONUtils.toCanonicalString(loaded.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS))
+		);
+	}
+
+	@Test
+	public void testFileReleasedAfterLoad() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		Path path = tempDir.resolve("model" + BinaryModelAdapter.EXTENSION);
+		model.save(path.toString());
+
+		// Saving back to where the model was loaded from must not fail on a file still held by the reader
+		Model loaded = Model.loadModel(path.toString());
+		loaded.save(path.toString());
+		assertEquals(model.getDataSetList().size(), Model.loadModel(path.toString()).getDataSetList().size());
+		Files.delete(path);
+	}
+
+	@Test
+	public void testRejectsOtherContent() throws Exception {
+		assertThrows(AdapterException.class, () -> BinaryModelAdapter.read(ByteBuffer.wrap("{\"model\":{}}".getBytes("UTF-8"))));
+
+		ByteBuffer future = ByteBuffer.allocate(12);
+		future.put("AGNB".getBytes("US-ASCII"));
+		future.put(new byte[]{(byte) (BinaryModelAdapter.VERSION + 1), 0, 0, 0});
+		future.flip();
+		AdapterException ex = assertThrows(AdapterException.class, () -> BinaryModelAdapter.read(future));
+		assertTrue(ex.getMessage().contains("version"));
+	}
+}
@@ -0,0 +1,146 @@
+package com.agenarisk.api.io;
+
+import com.agenarisk.api.model.Model;
+import com.agenarisk.api.util.JSONUtils;
+import com.agenarisk.test.TestHelper;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class JSONModelReaderTest {
+
+	private static final String RESOURCE = "/common/Biased Coin Flip Experiment.cmpx";
+
+	/**
+	 * Puts the DataSets back into the structure so that it can be compared to the original JSON
+	 */
+	private static JSONObject join(JSONModelReader.Content content) {
+		JSONArray dataSets = new JSONArray();
+		content.getDataSets().forEach(dataSets::put);
+		JSONObject json = JSONUtils.copy(content.getStructure());
+		json.getJSONObject(Model.Field.model.toString()).put("dataSets", dataSets);
+		return json;
+	}
+
+	@Test
+	public void testReadFile() throws Exception {
+		Path path = TestHelper.tempFileCopyOfResource(RESOURCE);
+		JSONObject expected = new JSONObject(TestHelper.readResourceContent(RESOURCE));
+
+		assertTrue(JSONModelReader.isJson(path, Charset.defaultCharset()));
+
+		JSONModelReader.Content content = JSONModelReader.read(path, Charset.defaultCharset());
+		assertFalse(content.getStructure().getJSONObject(Model.Field.model.toString()).has("dataSets"));
+
+		List<JSONObject> dataSets = new ArrayList<>();
+		content.getDataSets().forEach(dataSets::add);
+		assertEquals(expected.getJSONObject("model").getJSONArray("dataSets").length(), dataSets.size());
+
+		// DataSets can be streamed again
+		assertEquals(JSONUtils.toCanonicalString(expected), JSONUtils.toCanonicalString(join(content)));
+	}
+
+	@Test
+	public void testReadStream() throws Exception {
+		String text = TestHelper.readResourceContent(RESOURCE);
+		JSONObject expected = new JSONObject(text);
+
+		try (InputStream stream = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))){
+			JSONModelReader.Content content = JSONModelReader.read(stream, StandardCharsets.UTF_8);
+			assertEquals(JSONUtils.toCanonicalString(expected), JSONUtils.toCanonicalString(join(content)));
+		}
+	}
+
+	@Test
+	public void testPartialIterationClosed() throws Exception {
+		Path path = TestHelper.tempFileCopyOfResource(RESOURCE);
+
+		try (JSONModelReader.Content content = JSONModelReader.read(path, Charset.defaultCharset())){
+			Iterator<JSONObject> iterator = content.getDataSets().iterator();
+			assertTrue(iterator.hasNext());
+			iterator.next();
+		}
+
+		// File is released and can be replaced, e.g. when saving the model back to where it was loaded from
+		Model model = Model.loadModel(path.toString());
+		model.save(path.toString());
+		Files.delete(path);
+	}
+
+	@Test
+	public void testMalformedInputReplaced() throws Exception {
+		byte[] prefix = "{\"model\": {\"meta\": {\"notes\": [{\"text\": \"".getBytes(StandardCharsets.UTF_8);
+		byte[] suffix = "\"}]}, \"dataSets\": [{\"id\": \"a\"}]}}".getBytes(StandardCharsets.UTF_8);
+		byte[] bytes = new byte[prefix.length + 1 + suffix.length];
+		System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+		bytes[prefix.length] = (byte) 0xFF;
+		System.arraycopy(suffix, 0, bytes, prefix.length + 1, suffix.length);
+
+		Path path = Files.createTempFile("malformed", ".json");
+		try {
+			Files.write(path, bytes);
+			try (JSONModelReader.Content content = JSONModelReader.read(path, StandardCharsets.UTF_8)){
+				assertTrue(content.getStructure().getJSONObject(Model.Field.model.toString()).has("meta"));
+				assertEquals("a", content.getDataSets().iterator().next().getString("id"));
+			}
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testUnwrappedModelKeepsDataSets() throws Exception {
+		JSONObject expected = new JSONObject(TestHelper.readResourceContent(RESOURCE));
+		JSONObject unwrapped = expected.getJSONObject(Model.Field.model.toString());
+		int count = unwrapped.getJSONArray("dataSets").length();
+		assertTrue(count > 0);
+
+		Path path = Files.createTempFile("unwrapped", ".json");
+		try {
+			Files.write(path, unwrapped.toString().getBytes(Charset.defaultCharset()));
+			try (JSONModelReader.Content content = JSONModelReader.read(path, Charset.defaultCharset())){
+				assertNull(content.getDataSets());
+				assertEquals(count, content.getStructure().getJSONArray("dataSets").length());
+			}
+
+			Model model = Model.loadModel(path.toString());
+			assertEquals(count, model.getDataSetList().size());
+
+			try (InputStream stream = Files.newInputStream(path)){
+				assertEquals(count, Model.createModel(JSONModelReader.read(stream, Charset.defaultCharset())).getDataSetList().size());
+			}
+		}
+		finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testLoadModelSameAsCreateModel() throws Exception {
+		Path path = TestHelper.tempFileCopyOfResource(RESOURCE);
+
+		Model expected = Model.createModel(new JSONObject(TestHelper.readResourceContent(RESOURCE)));
+		Model streamed = Model.loadModel(path.toString());
+
+		assertEquals(expected.getDataSetList().size(), streamed.getDataSetList().size());
+		assertEquals(
+				JSONUtils.toCanonicalString(expected.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS)),
+				JSONUtils.toCanonicalString(streamed.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS))
+		);
+	}
+}
@@ -4,12 +4,15 @@ import com.agenarisk.api.exception.AdapterException;
 import com.agenarisk.api.util.JSONUtils;
 import com.agenarisk.test.TestHelper;
 import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.XML;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -120,4 +123,40 @@ public class XMLAdapterTest {
 //			Files.write(Paths.get("d:\\work\\repos\\agenarisk\\sdk\\test\\com\\agenarisk\\api\\io\\out"+i+".xml"), output.getBytes());
 		}
 	}
+	
+	@Test
+	public void testStreamingReaderSameAsStringParser() throws Exception {
+		List<String> pathsIn = new ArrayList<>();
+		List<String> pathsOut = new ArrayList<>();
+		
+		TestHelper.copyInputOuputResources(Paths.get("com", "agenarisk", "api", "io", "FileAdapterTest"), "xml", "cmpx", pathsIn, pathsOut);
+		assertTrue(!pathsIn.isEmpty());
+		
+		Method convert = XMLAdapter.class.getDeclaredMethod("convertXmlJson", Object.class);
+		convert.setAccessible(true);
+		
+		for (String pathIn: pathsIn) {
+			String input = new String(Files.readAllBytes(Paths.get(pathIn)), "UTF-8");
+			
+			JSONObject expected = XML.toJSONObject(input);
+			convert.invoke(null, expected);
+			
+			JSONObject actual = XMLAdapter.xmlToJson(new StringReader("<?xml version=\"1.0\"?>\n" + input));
+			assertEquals(JSONUtils.toCanonicalString(expected), JSONUtils.toCanonicalString(actual), pathIn);
+		}
+	}
+	
+	@Test
+	public void testCDataEndMarkerRoundTrip() throws Exception {
+		JSONObject json = new JSONObject();
+		json.put("text", "a]]>b");
+		json.put("number", 1.5);
+		
+		String xml = XMLAdapter.toXMLString(json);
+		assertTrue(xml.contains("<number>1.5</number>"));
+		
+		JSONObject back = XMLAdapter.xmlToJson(xml);
+		assertEquals("a]]>b", back.getString("text"));
+		assertEquals(1.5, back.getDouble("number"), 0);
+	}
 }
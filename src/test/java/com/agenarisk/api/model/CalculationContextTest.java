@@ -0,0 +1,123 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.CalculationCancelledException;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationContextTest {
+
+	@Test
+	public void testApplyAndRestore() {
+		boolean sma = uk.co.agena.minerva.model.Model.SMA;
+		String suppressMessages = uk.co.agena.minerva.model.Model.suppressMessages;
+
+		try (CalculationContext.Scope outer = CalculationContext.headless().withSensitivityAnalysis(!sma).enter((uk.co.agena.minerva.model.Model) null)){
+			assertEquals(!sma, uk.co.agena.minerva.model.Model.SMA);
+			assertEquals("system", uk.co.agena.minerva.model.Model.suppressMessages);
+
+			// Nested context in the same thread joins the outer one
+			try (CalculationContext.Scope inner = CalculationContext.headless().enter((uk.co.agena.minerva.model.Model) null)){
+				assertEquals(!sma, uk.co.agena.minerva.model.Model.SMA);
+			}
+			assertEquals(!sma, uk.co.agena.minerva.model.Model.SMA);
+		}
+
+		assertEquals(sma, uk.co.agena.minerva.model.Model.SMA);
+		assertEquals(suppressMessages, uk.co.agena.minerva.model.Model.suppressMessages);
+	}
+
+	@Test
+	public void testConflictingContextWaits() throws Exception {
+		boolean sma = uk.co.agena.minerva.model.Model.SMA;
+		CountDownLatch entered = new CountDownLatch(1);
+		AtomicBoolean observedOuterSwitch = new AtomicBoolean(true);
+
+		Thread other;
+		try (CalculationContext.Scope scope = CalculationContext.headless().withSensitivityAnalysis(true).enter((uk.co.agena.minerva.model.Model) null)){
+			other = new Thread(() -> {
+				try (CalculationContext.Scope otherScope = CalculationContext.headless().withSensitivityAnalysis(false).enter((uk.co.agena.minerva.model.Model) null)){
+					observedOuterSwitch.set(uk.co.agena.minerva.model.Model.SMA);
+					entered.countDown();
+				}
+			});
+			other.start();
+			assertFalse(entered.await(200, TimeUnit.MILLISECONDS));
+			assertTrue(uk.co.agena.minerva.model.Model.SMA);
+		}
+
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		other.join();
+		assertFalse(observedOuterSwitch.get());
+		assertEquals(sma, uk.co.agena.minerva.model.Model.SMA);
+	}
+
+	@Test
+	public void testAdmissionInArrivalOrder() throws Exception {
+		CountDownLatch conflictingEntered = new CountDownLatch(1);
+		CountDownLatch laterEntered = new CountDownLatch(1);
+		AtomicBoolean overtaken = new AtomicBoolean(false);
+
+		Thread conflicting;
+		Thread later;
+		try (CalculationContext.Scope scope = CalculationContext.headless().withSensitivityAnalysis(true).enter((uk.co.agena.minerva.model.Model) null)){
+			conflicting = new Thread(() -> {
+				try (CalculationContext.Scope otherScope = CalculationContext.headless().withSensitivityAnalysis(false).enter((uk.co.agena.minerva.model.Model) null)){
+					conflictingEntered.countDown();
+				}
+			});
+			conflicting.start();
+			assertFalse(conflictingEntered.await(200, TimeUnit.MILLISECONDS));
+
+			// Same switches as the active scope, but arrives after the conflicting call and must not overtake it
+			later = new Thread(() -> {
+				try (CalculationContext.Scope otherScope = CalculationContext.headless().withSensitivityAnalysis(true).enter((uk.co.agena.minerva.model.Model) null)){
+					overtaken.set(conflictingEntered.getCount() > 0);
+					laterEntered.countDown();
+				}
+			});
+			later.start();
+			assertFalse(laterEntered.await(200, TimeUnit.MILLISECONDS));
+		}
+
+		assertTrue(conflictingEntered.await(5, TimeUnit.SECONDS));
+		assertTrue(laterEntered.await(5, TimeUnit.SECONDS));
+		conflicting.join();
+		later.join();
+		assertFalse(overtaken.get());
+	}
+
+	@Test
+	public void testDeadlineWhileWaiting() throws Exception {
+		CountDownLatch laterEntered = new CountDownLatch(1);
+
+		Thread later;
+		try (CalculationContext.Scope scope = CalculationContext.headless().withSensitivityAnalysis(true).enter((uk.co.agena.minerva.model.Model) null)){
+			CalculationCancelledException ex = assertThrows(CalculationCancelledException.class, () -> {
+				CalculationContext.headless().withSensitivityAnalysis(false).enter(null, Instant.now().plusMillis(200));
+			});
+			assertTrue(ex.isTimedOut());
+
+			// The call that timed out left the queue and does not hold up calls behind it
+			later = new Thread(() -> {
+				try (CalculationContext.Scope otherScope = CalculationContext.headless().withSensitivityAnalysis(true).enter((uk.co.agena.minerva.model.Model) null)){
+					laterEntered.countDown();
+				}
+			});
+			later.start();
+			assertTrue(laterEntered.await(5, TimeUnit.SECONDS));
+		}
+
+		later.join();
+	}
+}
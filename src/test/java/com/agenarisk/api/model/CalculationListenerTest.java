@@ -0,0 +1,70 @@
+package com.agenarisk.api.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationListenerTest {
+
+	@Test
+	public void testEvents() throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node a = net.createNode("a", Node.Type.Boolean);
+		Node b = net.createNode("b", Node.Type.Boolean);
+		Node.linkNodes(a, b);
+		DataSet ds = model.createDataSet("ds");
+
+		List<CalculationEvent> events = new ArrayList<>();
+		CalculationListener listener = events::add;
+		model.addCalculationListener(listener);
+
+		model.calculate();
+		ds.getCalculationResults();
+		model.export();
+		model.inspectJunctionTrees(20);
+
+		List<CalculationEvent.Phase> phases = events.stream().map(CalculationEvent::getPhase).collect(Collectors.toList());
+		assertTrue(phases.contains(CalculationEvent.Phase.PROPAGATION));
+		assertTrue(phases.contains(CalculationEvent.Phase.RESULT_MATERIALISATION));
+		assertTrue(phases.contains(CalculationEvent.Phase.EXPORT));
+		assertTrue(phases.contains(CalculationEvent.Phase.JUNCTION_TREE_COMPILATION));
+
+		CalculationEvent propagation = events.stream().filter(e -> e.getPhase() == CalculationEvent.Phase.PROPAGATION).findFirst().get();
+		assertTrue(propagation.isSuccessful());
+		assertEquals("net", propagation.getNetworks().get(0));
+		assertEquals("ds", propagation.getDataSets().get(0));
+		assertFalse(propagation.getWallTime().isNegative());
+
+		CalculationEvent compilation = events.stream().filter(e -> e.getPhase() == CalculationEvent.Phase.JUNCTION_TREE_COMPILATION).findFirst().get();
+		assertTrue(compilation.getMaxCliqueCells() > 0);
+
+		events.clear();
+		assertTrue(model.removeCalculationListener(listener));
+		model.calculate();
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void testInternalExportsNotReported() throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node.linkNodes(net.createNode("a", Node.Type.Boolean), net.createNode("b", Node.Type.Boolean));
+
+		List<CalculationEvent> events = new ArrayList<>();
+		model.addCalculationListener(events::add);
+
+		FactorisationCache.key(model);
+		model.factorize();
+
+		List<CalculationEvent.Phase> phases = events.stream().map(CalculationEvent::getPhase).collect(Collectors.toList());
+		assertFalse(phases.contains(CalculationEvent.Phase.EXPORT));
+		assertTrue(phases.contains(CalculationEvent.Phase.FACTORISATION));
+	}
+}
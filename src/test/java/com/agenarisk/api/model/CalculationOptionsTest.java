@@ -0,0 +1,96 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.CalculationCancelledException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationOptionsTest {
+
+	Model model;
+	DataSet ds;
+	Node nodeA;
+
+	@BeforeEach
+	public void setupLocal() throws Exception {
+		model = Model.createModel();
+		ds = model.createDataSet("ds");
+		Network net = model.createNetwork("net");
+		nodeA = net.createNode("a", Node.Type.ContinuousInterval);
+		nodeA.convertToSimulated();
+		nodeA.setTableFunction("Normal(0,1)");
+	}
+
+	@Test
+	public void testCancelledBeforeStart() throws Exception {
+		CalculationOptions.CancellationToken token = new CalculationOptions.CancellationToken();
+		token.cancel();
+
+		CalculationCancelledException ex = assertThrows(CalculationCancelledException.class, () -> {
+			model.calculate(null, null, new CalculationOptions().withCancellationToken(token));
+		});
+		assertFalse(ex.isTimedOut());
+
+		// Model is still usable
+		model.calculate(null, null, new CalculationOptions());
+		assertEquals(0, ds.getCalculationResult(nodeA).getMean(), 0.1);
+	}
+
+	@Test
+	public void testCancelledWhileRunning() throws Exception {
+		// Enough simulation work that the calculation is still running when the first progress is reported
+		Network net = nodeA.getNetwork();
+		Node previous = nodeA;
+		for(int i = 0; i < 12; i++){
+			Node node = net.createNode("n" + i, Node.Type.ContinuousInterval);
+			node.convertToSimulated();
+			Node.linkNodes(previous, node);
+			Node.linkNodes(nodeA, node);
+			node.setTableFunction("Normal(" + previous.getId() + "*" + nodeA.getId() + ", 1)");
+			previous = node;
+		}
+		model.getSettings().setIterations(500);
+		model.getSettings().setConvergence(0.000001);
+
+		CalculationOptions.CancellationToken token = new CalculationOptions.CancellationToken();
+		AtomicBoolean progressed = new AtomicBoolean(false);
+		CalculationCancelledException ex = assertThrows(CalculationCancelledException.class, () -> {
+			model.calculate(null, null, new CalculationOptions()
+					.withCancellationToken(token)
+					.withPollInterval(1, TimeUnit.MILLISECONDS)
+					.withProgressListener(progress -> {
+						progressed.set(true);
+						token.cancel();
+					}));
+		});
+		assertTrue(progressed.get(), "Cancelled from a running calculation");
+		assertFalse(ex.isTimedOut());
+
+		// Termination request must not leak into the next calculation of the same model
+		model.getSettings().setIterations(25);
+		model.getSettings().setConvergence(0.01);
+		model.calculate(null, null, new CalculationOptions().withTimeout(5, TimeUnit.MINUTES));
+		assertEquals(0, ds.getCalculationResult(nodeA).getMean(), 0.1);
+		assertNotNull(ds.getCalculationResult(previous));
+	}
+
+	@Test
+	public void testDeadlinePassed() throws Exception {
+		CalculationCancelledException ex = assertThrows(CalculationCancelledException.class, () -> {
+			model.calculate(null, null, new CalculationOptions().withDeadline(Instant.now().minusSeconds(1)));
+		});
+		assertTrue(ex.isTimedOut());
+
+		model.calculate(null, null, new CalculationOptions().withTimeout(1, TimeUnit.MINUTES).withProgressListener(progress -> {
+			assertTrue(progress.getFraction() >= 0 && progress.getFraction() <= 1);
+		}));
+		assertEquals(0, ds.getCalculationResult(nodeA).getMean(), 0.1);
+	}
+}
@@ -0,0 +1,58 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.test.TestHelper;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationResultBlockTest {
+
+	@Test
+	public void testBlocksSameAsCalculationResults() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		model.calculate();
+
+		List<DataSet> dataSets = model.getDataSetList();
+		List<Node> nodes = model.getNetworkList().get(0).getNodeList();
+		Map<Node, CalculationResultBlock> blocks = model.getCalculationResultBlocks(dataSets, nodes);
+		assertEquals(nodes.size(), blocks.size());
+
+		for(Node node: nodes){
+			CalculationResultBlock block = blocks.get(node);
+			assertEquals(dataSets.size(), block.getDataSetCount());
+
+			for(int d = 0; d < dataSets.size(); d++){
+				CalculationResult result = dataSets.get(d).getCalculationResult(node);
+				List<ResultValue> resultValues = result.getResultValues();
+
+				assertEquals(resultValues.size(), block.getSize(d));
+				for(int s = 0; s < resultValues.size(); s++){
+					assertEquals(resultValues.get(s).getValue(), block.getValue(d, s), 0);
+					if (block.isIntervals()){
+						ResultInterval interval = (ResultInterval) resultValues.get(s);
+						assertEquals(interval.getLowerBound(), block.getLowerBounds()[d * block.getWidth() + s], 0);
+						assertEquals(interval.getUpperBound(), block.getUpperBounds()[d * block.getWidth() + s], 0);
+					}
+				}
+				for(int s = resultValues.size(); s < block.getWidth(); s++){
+					assertTrue(Double.isNaN(block.getValue(d, s)));
+				}
+
+				assertEquals(result.getMean(), block.getMean()[d], 0);
+				assertEquals(result.getVariance(), block.getVariance()[d], 0);
+				assertEquals(result.getMedian(), block.getMedian()[d], 0);
+				assertEquals(result.getLowerPercentile(), block.getLowerPercentile()[d], 0);
+				assertEquals(result.getUpperPercentile(), block.getUpperPercentile()[d], 0);
+			}
+		}
+
+		Node type = model.getNetworkList().get(0).getNode("Type");
+		assertEquals(3, blocks.get(type).getLabels().size());
+		assertFalse(blocks.get(type).isIntervals());
+	}
+}
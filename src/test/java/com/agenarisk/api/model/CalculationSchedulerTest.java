@@ -0,0 +1,84 @@
+package com.agenarisk.api.model;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculationSchedulerTest {
+
+	private static Model createModel() throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node a = net.createNode("a", Node.Type.Boolean);
+		Node b = net.createNode("b", Node.Type.Boolean);
+		Node.linkNodes(a, b);
+		return model;
+	}
+
+	@Test
+	public void testEstimateCachedPerStructure() throws Exception {
+		CalculationScheduler scheduler = new CalculationScheduler(1L << 30);
+		long estimate = scheduler.estimate(createModel());
+		assertTrue(estimate > 0);
+
+		assertEquals(estimate, scheduler.estimate(createModel()), "Identical structure is served from cache");
+		assertEquals(1, scheduler.getStatistics().getInt("estimateHits"));
+		assertEquals(1, scheduler.getStatistics().getInt("estimateMisses"));
+	}
+
+	@Test
+	public void testEstimateIgnoresCosmeticChanges() throws Exception {
+		CalculationScheduler scheduler = new CalculationScheduler(1L << 30);
+		Model model = createModel();
+		long estimate = scheduler.estimate(model);
+
+		Node a = model.getNetwork("net").getNode("a");
+		a.setName("renamed");
+		a.setDescription("described");
+		assertEquals(estimate, scheduler.estimate(model));
+		assertEquals(1, scheduler.getStatistics().getInt("estimateHits"));
+
+		// A new Node makes a different structure
+		Node.linkNodes(a, model.getNetwork("net").createNode("c", Node.Type.Boolean));
+		scheduler.estimate(model);
+		assertEquals(2, scheduler.getStatistics().getInt("estimateMisses"));
+	}
+
+	@Test
+	public void testQueuesWhenBudgetExceeded() throws Exception {
+		Model model = createModel();
+		long estimate = new CalculationScheduler(1L << 30).estimate(model);
+
+		// Room for exactly one calculation of this model
+		CalculationScheduler scheduler = new CalculationScheduler(estimate + estimate / 2);
+
+		try (CalculationScheduler.Permit first = scheduler.admit(model)){
+			assertEquals(estimate, scheduler.getReserved());
+			assertNull(scheduler.admit(model, 50, TimeUnit.MILLISECONDS));
+			assertEquals(1, scheduler.getStatistics().getInt("timeouts"));
+		}
+
+		assertEquals(0, scheduler.getReserved());
+		try (CalculationScheduler.Permit second = scheduler.admit(model, 50, TimeUnit.MILLISECONDS)){
+			assertNotNull(second);
+		}
+
+		scheduler.calculate(model);
+		assertEquals(3, scheduler.getStatistics().getInt("admissions"));
+	}
+
+	@Test
+	public void testOversizedRunsAlone() throws Exception {
+		Model model = createModel();
+		CalculationScheduler scheduler = new CalculationScheduler(1);
+
+		try (CalculationScheduler.Permit permit = scheduler.admit(model, 50, TimeUnit.MILLISECONDS)){
+			assertNotNull(permit, "Nothing else is running");
+			assertNull(scheduler.admit(model, 50, TimeUnit.MILLISECONDS));
+		}
+	}
+}
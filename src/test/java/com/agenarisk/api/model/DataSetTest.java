@@ -1,9 +1,13 @@
 package com.agenarisk.api.model;
 
 import com.agenarisk.test.TestHelper;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -269,4 +273,42 @@ public class DataSetTest {
 		
 	}
 	
+	@Test
+	public void testObservationIndex() throws Exception {
+		Model m = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		Network net = m.getNetworkList().get(0);
+		Node type = net.getNode("Type");
+		Node trials = net.getNode("Trials");
+		
+		// Observations loaded from file are indexed
+		DataSet loaded = m.getDataSet("Ignorant - 10 trials 5 heads");
+		assertEquals(loaded.getLogicScenario().getObservations().size(), loaded.getObservations().size());
+		assertNotNull(loaded.getObservation(type));
+		assertNotNull(loaded.getObservation(trials));
+		
+		DataSet ds = m.createDataSet("indexed");
+		ds.setObservation(type, "Ignorant");
+		ds.setObservation(trials, 10);
+		assertEquals(Arrays.asList(type, trials), ds.getObservations().stream().map(Observation::getNode).collect(Collectors.toList()));
+		
+		ds.setObservation(type, "Strong");
+		assertEquals(2, ds.getObservations().size());
+		assertTrue(ds.getObservation(type).getEntries().containsKey("Strong"));
+		
+		// Changes made to the logic scenario directly are picked up
+		ds.getLogicScenario().clearAllObservations(false);
+		assertFalse(ds.hasObservation(type));
+		assertEquals(0, ds.getObservations().size());
+		
+		// Replacing an observation directly keeps the count but is picked up too
+		ds.setObservation(type, "Ignorant");
+		DataSet other = m.createDataSet("other");
+		other.setObservation(type, "Strong");
+		uk.co.agena.minerva.model.scenario.Observation replaced = ds.getObservation(type).getLogicObservation();
+		ds.getLogicScenario().removeObservation(replaced, false);
+		ds.getLogicScenario().addObservation(other.getObservation(type).getLogicObservation(), false);
+		assertEquals(1, ds.getLogicScenario().getObservations().size());
+		assertTrue(ds.getObservation(type).getEntries().containsKey("Strong"));
+	}
+	
 }
@@ -0,0 +1,80 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.DataSetException;
+import com.agenarisk.test.TestHelper;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class EvidenceTemplateTest {
+
+	Model model;
+	Network network;
+	DataSet dataSet;
+	EvidenceTemplate template;
+
+	@BeforeEach
+	public void setupLocal() {
+		model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		network = model.getNetworkList().get(0);
+		dataSet = model.createDataSet("template");
+		template = EvidenceTemplate.compile(network, Arrays.asList("Type", "Trials", "heads", "missing"));
+	}
+
+	@Test
+	public void testApplySameAsSetObservation() throws Exception {
+		EvidenceTemplate.Status[] statuses = template.apply(dataSet, new Object[]{"Strong", 100, "50", null});
+		assertArrayEquals(new EvidenceTemplate.Status[]{
+			EvidenceTemplate.Status.ENTERED,
+			EvidenceTemplate.Status.ENTERED,
+			EvidenceTemplate.Status.ENTERED,
+			EvidenceTemplate.Status.SKIPPED
+		}, statuses);
+
+		DataSet expected = model.createDataSet("expected");
+		expected.setObservation(network.getNode("Type"), "Strong");
+		expected.setObservation(network.getNode("Trials"), 100);
+		expected.setObservation(network.getNode("heads"), "50");
+
+		for(String nodeId: Arrays.asList("Type", "Trials", "heads")){
+			Node node = network.getNode(nodeId);
+			assertEquals(expected.getObservation(node).getEntries(), dataSet.getObservation(node).getEntries(), nodeId);
+		}
+		assertEquals(3, dataSet.getObservations().size());
+	}
+
+	@Test
+	public void testFailuresReported() {
+		EvidenceTemplate.Status[] statuses = template.apply(dataSet, new Object[]{"Unknown", 1000, "many", 5});
+		assertArrayEquals(new EvidenceTemplate.Status[]{
+			EvidenceTemplate.Status.UNKNOWN_STATE,
+			EvidenceTemplate.Status.UNKNOWN_STATE,
+			EvidenceTemplate.Status.INVALID_VALUE,
+			EvidenceTemplate.Status.UNKNOWN_NODE
+		}, statuses);
+		assertTrue(dataSet.getObservations().isEmpty());
+
+		assertThrows(DataSetException.class, () -> template.apply(dataSet, new Object[]{"Strong"}));
+	}
+
+	@Test
+	public void testSoftAndReplace() {
+		Map<String, Double> weights = new LinkedHashMap<>();
+		weights.put("Ignorant", 0.5);
+		weights.put("Biased", 0.5);
+
+		template.apply(dataSet, new Object[]{"Strong", null, null, null});
+		assertEquals(EvidenceTemplate.Status.ENTERED, template.apply(dataSet, new Object[]{weights, null, null, null})[0]);
+
+		Observation observation = dataSet.getObservation(network.getNode("Type"));
+		assertEquals(0.5, observation.getEntries().get("Biased"), 1e-9);
+		assertEquals(1, dataSet.getObservations().size());
+	}
+}
@@ -0,0 +1,113 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.util.JSONUtils;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class FactorisationCacheTest {
+
+	@BeforeEach
+	public void setupLocal() {
+		FactorisationCache.clear();
+	}
+
+	@AfterEach
+	public void tearDownLocal() {
+		FactorisationCache.clear();
+	}
+
+	private static Model createModel() throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node sum = net.createNode("sum", Node.Type.ContinuousInterval);
+		sum.convertToSimulated();
+		for(String id: new String[]{"a", "b", "c"}){
+			Node parent = net.createNode(id, Node.Type.ContinuousInterval);
+			parent.convertToSimulated();
+			parent.setTableFunction("Normal(0,1)");
+			Node.linkNodes(parent, sum);
+		}
+		sum.setTableFunction("Arithmetic(a+b+c)");
+
+		DataSet dataSet = model.createDataSet("ds");
+		dataSet.setObservationHard(net.getNode("a"), 1);
+		return model;
+	}
+
+	@Test
+	public void testRepeatFactorisationServedFromCache() throws Exception {
+		Model first = createModel();
+		assertTrue(first.factorize());
+		assertEquals(0, FactorisationCache.getHits());
+		assertEquals(1, FactorisationCache.getMisses());
+
+		Model second = createModel();
+		assertTrue(second.factorize());
+		assertEquals(1, FactorisationCache.getHits());
+
+		assertEquals(JSONUtils.toCanonicalString(first.export(Model.ExportFlag.KEEP_OBSERVATIONS)), JSONUtils.toCanonicalString(second.export(Model.ExportFlag.KEEP_OBSERVATIONS)));
+		assertTrue(second.getDataSet("ds").hasObservation(second.getNetwork("net").getNode("a")));
+
+		second.calculate();
+	}
+
+	@Test
+	public void testLabelsNotShared() throws Exception {
+		Model first = createModel();
+		first.getNetwork("net").getNode("a").setName("First name");
+		first.getNetwork("net").getNode("a").setDescription("First description");
+		assertTrue(first.factorize());
+
+		Model second = createModel();
+		second.getNetwork("net").getNode("a").setName("Second name");
+		second.getNetwork("net").getNode("a").setDescription("Second description");
+		assertTrue(second.factorize());
+
+		assertEquals(0, FactorisationCache.getHits());
+		assertEquals("First name", first.getNetwork("net").getNode("a").getName());
+		assertEquals("Second name", second.getNetwork("net").getNode("a").getName());
+		assertEquals("Second description", second.getNetwork("net").getNode("a").getDescription());
+
+		Model third = createModel();
+		third.getNetwork("net").getNode("a").setName("Second name");
+		third.getNetwork("net").getNode("a").setDescription("Second description");
+		assertTrue(third.factorize());
+		assertEquals(1, FactorisationCache.getHits());
+		assertEquals(JSONUtils.toCanonicalString(second.export(Model.ExportFlag.KEEP_META)), JSONUtils.toCanonicalString(third.export(Model.ExportFlag.KEEP_META)));
+	}
+
+	@Test
+	public void testResultsKeptOnHit() throws Exception {
+		Model first = createModel();
+		first.calculate();
+		assertTrue(first.factorize());
+
+		Model second = createModel();
+		second.calculate();
+		assertTrue(second.factorize());
+		assertEquals(1, FactorisationCache.getHits());
+
+		Node a = second.getNetwork("net").getNode("a");
+		assertEquals(first.getDataSet("ds").getCalculationResult(first.getNetwork("net").getNode("a")) != null, second.getDataSet("ds").getCalculationResult(a) != null);
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		FactorisationCache.setCapacity(0);
+		try {
+			createModel().factorize();
+			createModel().factorize();
+			assertEquals(0, FactorisationCache.getHits());
+			assertEquals(2, FactorisationCache.getMisses());
+		}
+		finally {
+			FactorisationCache.setCapacity(16);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.agenarisk.api.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class GraphIndexTest {
+
+	Model model;
+	Network net;
+	Node a, b, c, d, e;
+
+	/**
+	 * Diamond a -> b, a -> c, b -> d, c -> d; e is unconnected
+	 */
+	@BeforeEach
+	public void setupLocal() throws Exception {
+		model = Model.createModel();
+		net = model.createNetwork("net");
+		d = net.createNode("d", Node.Type.Boolean);
+		c = net.createNode("c", Node.Type.Boolean);
+		b = net.createNode("b", Node.Type.Boolean);
+		a = net.createNode("a", Node.Type.Boolean);
+		e = net.createNode("e", Node.Type.Boolean);
+		a.linkTo(b);
+		a.linkTo(c);
+		b.linkTo(d);
+		c.linkTo(d);
+	}
+
+	private static void assertTopological(List<Node> order) {
+		for(int i = 0; i < order.size(); i++){
+			for(Node parent: order.get(i).getParents()){
+				assertTrue(order.indexOf(parent) < i, parent + " after " + order.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testClosures() {
+		GraphIndex index = net.getGraphIndex();
+
+		assertEquals(5, index.getTopologicalOrder().size());
+		assertTopological(index.getTopologicalOrder());
+
+		assertEquals(new LinkedHashSet<>(Arrays.asList(a, b, c)), d.getAncestors());
+		assertEquals(new LinkedHashSet<>(Arrays.asList(b, c, d)), a.getDescendants());
+		assertTrue(e.getAncestors().isEmpty());
+		assertTrue(e.getDescendants().isEmpty());
+
+		assertEquals(new LinkedHashSet<>(Arrays.asList(a)), index.getRootAncestors(d));
+		assertEquals(3, index.getAncestorCount(d));
+		assertTrue(index.isAncestor(a, d));
+		assertFalse(index.isAncestor(d, a));
+
+		List<Node> sorted = index.sort(Arrays.asList(d, b, a));
+		assertEquals(Arrays.asList(a, b, d), sorted);
+	}
+
+	@Test
+	public void testInvalidatedOnChange() throws Exception {
+		GraphIndex index = net.getGraphIndex();
+		assertSame(index, net.getGraphIndex());
+
+		d.linkTo(e);
+		assertNotSame(index, net.getGraphIndex());
+		assertTrue(e.getAncestors().contains(a));
+
+		index = net.getGraphIndex();
+		Node.unlinkNodes(a, b);
+		assertNotSame(index, net.getGraphIndex());
+		assertFalse(b.getAncestors().contains(a));
+		assertTrue(e.getAncestors().contains(a));
+
+		Node f = net.createNode("f", Node.Type.Boolean);
+		assertTrue(net.getGraphIndex().contains(f));
+
+		net.removeNode(f);
+		assertFalse(net.getGraphIndex().contains(f));
+		assertTopological(net.getGraphIndex().getTopologicalOrder());
+	}
+
+	@Test
+	public void testCopy() throws Exception {
+		Model copy = model.copy();
+		Node dCopy = copy.getNetwork("net").getNode("d");
+		assertEquals(3, dCopy.getAncestors().size());
+		assertTrue(dCopy.getAncestors().stream().allMatch(n -> n.getNetwork() == dCopy.getNetwork()));
+	}
+}
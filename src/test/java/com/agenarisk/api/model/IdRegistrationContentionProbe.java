@@ -0,0 +1,128 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.DataSetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ID registration in Models and Networks used to synchronize on IdContainer.class, a single JVM-wide monitor, so
+ * building unrelated Models in parallel serialised on it. Registration is now scoped to the owning container's map.
+ * <ol>
+ *   <li>Registration in the SAME container must still be atomic: of many threads racing for one ID, exactly one wins.</li>
+ *   <li>Registration in DIFFERENT containers should no longer contend: throughput of building independent Models
+ *       should grow with threads instead of staying flat.</li>
+ * </ol>
+ */
+public class IdRegistrationContentionProbe {
+
+	private static final int THREADS = 8;
+
+	/**
+	 * Q1: many threads racing to create the same DataSet ID in one Model; exactly one must succeed.
+	 */
+	@Test
+	public void sameContainerRegistrationIsStillAtomic() throws Exception {
+		Model model = Model.createModel();
+		model.createNetwork("net").createNode("a", Node.Type.Boolean);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int round = 0; round < 20; round++) {
+				String id = "ds" + round;
+				CountDownLatch start = new CountDownLatch(1);
+				AtomicInteger created = new AtomicInteger();
+				AtomicInteger rejected = new AtomicInteger();
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					futures.add(executor.submit(() -> {
+						start.await();
+						try {
+							model.createDataSet(id);
+							created.incrementAndGet();
+						}
+						catch (DataSetException ex) {
+							rejected.incrementAndGet();
+						}
+						return null;
+					}));
+				}
+				start.countDown();
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				assertEquals(1, created.get(), "exactly one thread must register `" + id + "`");
+				assertEquals(THREADS - 1, rejected.get());
+				assertNotNull(model.getDataSet(id));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Q2: builds independent Models with networks, nodes, links and DataSets on 1..N threads and prints throughput.
+	 * With a JVM-wide monitor models/s stays flat as threads are added; with per-container locking it should scale
+	 * until the core engine's own work saturates the cores.
+	 */
+	@Test
+	@Disabled("measurement, not a regression test: builds several thousand models (~1 min). Run on demand.")
+	public void independentModelsScaleWithThreads() throws Exception {
+		int modelsPerRun = 400;
+		// Warm up JIT and core class loading so the first measured run is not penalised
+		buildModels(1, 50);
+
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			long t0 = System.nanoTime();
+			buildModels(threads, modelsPerRun);
+			double seconds = (System.nanoTime() - t0) / 1e9;
+			System.out.println(String.format("[contention] threads=%d models=%d time=%.2fs throughput=%.1f models/s",
+					threads, modelsPerRun, seconds, modelsPerRun / seconds));
+		}
+	}
+
+	private static void buildModels(int threads, int count) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				futures.add(executor.submit(() -> {
+					buildModel();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Registration-heavy: a chain of nodes and many DataSets, each needing a fresh ID. */
+	private static Model buildModel() throws Exception {
+		Model model = Model.createModel();
+		Network net = model.createNetwork("net");
+		Node previous = null;
+		for (int n = 0; n < 10; n++) {
+			Node node = net.createNode("n" + n, Node.Type.Boolean);
+			if (previous != null) {
+				Node.linkNodes(previous, node);
+			}
+			previous = node;
+		}
+		for (int d = 0; d < 20; d++) {
+			model.createDataSet(model.getAvailableDataSetId("case"));
+		}
+		return model;
+	}
+}
@@ -0,0 +1,133 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.util.JSONUtils;
+import com.agenarisk.test.TestHelper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Model.copy() duplicates a Model in memory instead of the export + createModel round trip the analysers used.
+ * <ol>
+ *   <li>Is the copy the same model? Its export must match the original's export, including cross network links.</li>
+ *   <li>Is the copy isolated? Changing it must not touch the original.</li>
+ *   <li>Is the risk table copied only when requested?</li>
+ *   <li>How much faster is it than the JSON round trip?</li>
+ * </ol>
+ */
+public class ModelCopyProbe {
+
+	private static final String RESOURCE = "/calc/ok/crossNetworkLinkTest.json";
+
+	private static Model load() throws Exception {
+		return Model.createModel(new JSONObject(TestHelper.readResourceContent(RESOURCE)));
+	}
+
+	/**
+	 * Q1: the copy exports exactly what the original exports, and DataSets follow the flags.
+	 */
+	@Test
+	public void copyExportsTheSameModel() throws Exception {
+		Model original = load();
+		original.calculate();
+
+		Model copy = original.copy(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META);
+		assertEquals(
+				JSONUtils.toCanonicalString(original.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META)),
+				JSONUtils.toCanonicalString(copy.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META))
+		);
+
+		for (Network network : original.getNetworkList()) {
+			Network networkCopy = copy.getNetwork(network.getId());
+			assertNotNull(networkCopy);
+			for (Node node : network.getNodeList()) {
+				Node nodeCopy = networkCopy.getNode(node.getId());
+				assertNotNull(nodeCopy);
+				assertNotSame(node.getLogicNode(), nodeCopy.getLogicNode());
+				assertEquals(node.getLinksIn().size(), nodeCopy.getLinksIn().size());
+				assertEquals(node.getLinksOut().size(), nodeCopy.getLinksOut().size());
+			}
+		}
+
+		assertEquals(original.getDataSetList().size(), copy.getDataSetList().size());
+		assertTrue(original.copy().getDataSets().isEmpty(), "DataSets are only copied with observations or results");
+
+		// The copy must calculate on its own
+		copy.calculate();
+	}
+
+	/**
+	 * Q2: changes to the copy do not leak into the original.
+	 */
+	@Test
+	public void copyIsIsolated() throws Exception {
+		Model original = load();
+		Model copy = original.copy(Model.ExportFlag.KEEP_OBSERVATIONS);
+
+		Network network = copy.getNetworkList().get(0);
+		network.createNode("copy_only", Node.Type.Boolean);
+		copy.createDataSet("copy_only");
+
+		assertNull(original.getNetwork(network.getId()).getNode("copy_only"));
+		assertNull(original.getDataSet("copy_only"));
+	}
+
+	/**
+	 * Q3: the risk table is copied only with KEEP_RISK_TABLE, both the Model's and the Networks'.
+	 */
+	@Test
+	public void copyKeepsRiskTableOnlyWithFlag() throws Exception {
+		JSONObject json = new JSONObject(TestHelper.readResourceContent("/common/Biased Coin Flip Experiment.cmpx"));
+		JSONObject jNetwork = json.getJSONObject("model").getJSONArray("networks").getJSONObject(0);
+		jNetwork.put("riskTable", new JSONObject().put("name", "network risk table"));
+		Model original = Model.createModel(json);
+		String networkId = jNetwork.getString("id");
+		assertTrue(original.export(Model.ExportFlag.KEEP_RISK_TABLE).getJSONObject("model").getJSONArray("riskTable").length() > 0);
+
+		Model kept = original.copy(Model.ExportFlag.KEEP_RISK_TABLE);
+		assertEquals(
+				JSONUtils.toCanonicalString(original.export(Model.ExportFlag.KEEP_RISK_TABLE).getJSONObject("model").get("riskTable")),
+				JSONUtils.toCanonicalString(kept.export(Model.ExportFlag.KEEP_RISK_TABLE).getJSONObject("model").get("riskTable"))
+		);
+		assertEquals("network risk table", kept.getNetwork(networkId).getRiskTableJson().getString("name"));
+		assertNotSame(original.getNetwork(networkId).getRiskTableJson(), kept.getNetwork(networkId).getRiskTableJson());
+
+		Model dropped = original.copy();
+		JSONArray jRiskTable = dropped.export(Model.ExportFlag.KEEP_RISK_TABLE).getJSONObject("model").optJSONArray("riskTable");
+		assertTrue(jRiskTable == null || jRiskTable.length() == 0);
+		assertNull(dropped.getNetwork(networkId).getRiskTableJson());
+	}
+
+	/**
+	 * Q4: copy() against export + createModel, on the same model, after warm up.
+	 */
+	@Test
+	@Disabled("measurement, not a regression test. Run on demand, ideally against a large model.")
+	public void copyAgainstJsonRoundTrip() throws Exception {
+		Model original = load();
+		original.calculate();
+		int runs = 50;
+
+		for (int i = 0; i < 5; i++) {
+			Model.createModel(original.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META));
+			original.copy(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META);
+		}
+
+		long t0 = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			Model.createModel(original.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META));
+		}
+		long roundTripMs = (System.nanoTime() - t0) / 1_000_000;
+
+		t0 = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			original.copy(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_META);
+		}
+		long copyMs = (System.nanoTime() - t0) / 1_000_000;
+
+		System.out.println("[copy] runs=" + runs + " export+createModel=" + roundTripMs + "ms copy=" + copyMs + "ms"
+				+ " speedup=" + String.format("%.1f", (double) roundTripMs / Math.max(copyMs, 1)) + "x");
+	}
+}
@@ -0,0 +1,136 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.io.JSONAdapter;
+import com.agenarisk.api.io.stub.Audit;
+import com.agenarisk.api.io.stub.Graphics;
+import com.agenarisk.api.io.stub.Meta;
+import com.agenarisk.api.io.stub.RiskTable;
+import com.agenarisk.api.util.JSONUtils;
+import com.agenarisk.test.TestHelper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that direct export produces the same JSON as building the full JSON and pruning it.
+ *
+ * @author Eugene Dementiev
+ */
+public class ModelExportTest {
+
+	private static final Model.ExportFlag[][] FLAG_SETS = new Model.ExportFlag[][]{
+		{},
+		{Model.ExportFlag.KEEP_META},
+		{Model.ExportFlag.KEEP_RESULTS},
+		{Model.ExportFlag.KEEP_OBSERVATIONS},
+		{Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS, Model.ExportFlag.KEEP_GRAPHICS},
+		{Model.ExportFlag.KEEP_RISK_TABLE, Model.ExportFlag.KEEP_TABLES},
+		{Model.ExportFlag.CLOUD_DATASET},
+		{Model.ExportFlag.CLOUD_DATASET, Model.ExportFlag.KEEP_META},
+		{Model.ExportFlag.CLOUD_DATASET, Model.ExportFlag.KEEP_RESULTS},
+		Model.ExportFlag.values()
+	};
+
+	/**
+	 * Builds the full JSON and removes what the flags exclude
+	 */
+	private static JSONObject prune(Model model, Model.ExportFlag... flags) throws Exception {
+		JSONObject json = JSONAdapter.toJSONObject(model.getLogicModel());
+		EnumSet<Model.ExportFlag> xflags = (flags.length > 0) ? EnumSet.copyOf(Arrays.asList(flags)) : EnumSet.noneOf(Model.ExportFlag.class);
+
+		JSONObject jsonModel = json.optJSONObject(Model.Field.model.toString());
+		JSONArray jsonDataSets = jsonModel.optJSONArray(DataSet.Field.dataSets.toString());
+		if (jsonDataSets != null){
+			if (jsonDataSets.length() > 0 && xflags.contains(Model.ExportFlag.CLOUD_DATASET)){
+				JSONObject jDataSet = jsonDataSets.optJSONObject(0);
+				json.put(DataSet.Field.dataSet.toString(), jDataSet);
+				jDataSet.remove(CalculationResult.Field.results.toString());
+			}
+			if (!xflags.contains(Model.ExportFlag.KEEP_RESULTS) && !xflags.contains(Model.ExportFlag.KEEP_OBSERVATIONS)){
+				jsonModel.remove(DataSet.Field.dataSets.toString());
+			}
+			else {
+				jsonDataSets.forEach(o -> {
+					JSONObject jDataSet = (JSONObject) o;
+					if (!xflags.contains(Model.ExportFlag.KEEP_RESULTS)){
+						jDataSet.remove(CalculationResult.Field.results.toString());
+					}
+					if (!xflags.contains(Model.ExportFlag.KEEP_OBSERVATIONS)){
+						jDataSet.remove(Observation.Field.observations.toString());
+					}
+				});
+			}
+		}
+
+		if (!xflags.contains(Model.ExportFlag.KEEP_RISK_TABLE)){
+			jsonModel.remove(RiskTable.Field.riskTable.toString());
+		}
+
+		if (!xflags.contains(Model.ExportFlag.KEEP_META)){
+			jsonModel.remove(Audit.Field.audit.toString());
+			jsonModel.remove(Meta.Field.meta.toString());
+		}
+
+		JSONUtils.traverse(json, (obj -> {
+			if (obj instanceof JSONObject){
+				JSONObject jo = ((JSONObject) obj);
+				if (!xflags.contains(Model.ExportFlag.KEEP_META)){
+					if (jo.has(Network.Field.id.toString())){
+						jo.remove(Network.Field.name.toString());
+						jo.remove(Network.Field.description.toString());
+					}
+					jo.remove(Meta.Field.meta.toString());
+				}
+				if (!xflags.contains(Model.ExportFlag.KEEP_GRAPHICS)){
+					jo.remove(Graphics.Field.graphics.toString());
+				}
+				jo.remove(Network.ModificationLog.modificationLog.toString());
+
+				JSONObject jsonConfiguration = jo.optJSONObject(NodeConfiguration.Field.configuration.toString());
+				if (jsonConfiguration != null && jsonConfiguration.has(NodeConfiguration.Table.table.toString())){
+					JSONObject jsonTable = jsonConfiguration.optJSONObject(NodeConfiguration.Table.table.toString());
+					String tableType = jsonTable.optString(NodeConfiguration.Table.type.toString());
+					boolean inputNode = jsonConfiguration.optBoolean(NodeConfiguration.Field.input.toString(), false);
+					if (inputNode || !Objects.equals(tableType, NodeConfiguration.TableType.Manual.toString()) && !xflags.contains(Model.ExportFlag.KEEP_TABLES)){
+						jsonTable.remove(NodeConfiguration.Table.nptCompiled.toString());
+						jsonTable.remove(NodeConfiguration.Table.probabilities.toString());
+					}
+				}
+			}
+		}));
+
+		return json;
+	}
+
+	private static String canonical(JSONObject json) {
+		json.remove(Model.Field.lastSaved.toString());
+		return JSONUtils.toCanonicalString(json);
+	}
+
+	@Test
+	public void testExportSameAsPruned() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		model.calculate();
+
+		for(Model.ExportFlag[] flags: FLAG_SETS){
+			assertEquals(canonical(prune(model, flags)), canonical(model.export(flags)), Arrays.toString(flags));
+		}
+	}
+
+	@Test
+	public void testExportToStream() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		model.export(stream, Model.ExportFlag.KEEP_OBSERVATIONS);
+
+		JSONObject json = new JSONObject(new String(stream.toByteArray(), Charset.defaultCharset()));
+		assertEquals(canonical(model.export(Model.ExportFlag.KEEP_OBSERVATIONS)), canonical(json));
+	}
+}
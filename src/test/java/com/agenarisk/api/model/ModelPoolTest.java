@@ -0,0 +1,96 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.exception.AgenaRiskRuntimeException;
+import com.agenarisk.api.exception.ModelException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class ModelPoolTest {
+
+	private static Model createModel() throws ModelException {
+		Model model = Model.createModel();
+		try {
+			model.createNetwork("net").createNode("a", Node.Type.Boolean);
+			model.createDataSet("Case 1");
+		}
+		catch (Exception ex){
+			throw new ModelException("Failed to build test model", ex);
+		}
+		return model;
+	}
+
+	@Test
+	public void testAcquireRelease() throws Exception {
+		try (ModelPool pool = new ModelPool(2, ModelPoolTest::createModel)){
+			assertEquals(2, pool.getIdle());
+			assertEquals(0, pool.getInUse());
+
+			Model replica = pool.acquire();
+			assertTrue(replica.getDataSets().isEmpty());
+			assertEquals(0.5, pool.getUtilisation());
+
+			Node node = replica.getNetwork("net").getNode("a");
+			DataSet dataSet = replica.createDataSet("query");
+			dataSet.setObservationHard(node, "True");
+			replica.calculate();
+
+			pool.release(replica);
+			assertEquals(0, pool.getInUse());
+
+			Model again = pool.acquire();
+			assertSame(replica, again);
+			assertTrue(again.getDataSets().isEmpty());
+			pool.release(again);
+
+			assertThrows(AgenaRiskRuntimeException.class, () -> pool.release(again));
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		try (ModelPool pool = new ModelPool(1, ModelPoolTest::createModel)){
+			Model replica = pool.acquire();
+			assertNull(pool.acquire(50, TimeUnit.MILLISECONDS));
+
+			JSONObject stats = pool.getStatistics();
+			assertEquals(1, stats.getInt("timeouts"));
+			assertEquals(1, stats.getInt("waits"));
+			assertEquals(1.0, stats.getDouble("utilisation"));
+
+			pool.release(replica);
+			assertNotNull(pool.acquire(50, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void testInvalidateRebuilds() throws Exception {
+		AtomicInteger created = new AtomicInteger();
+		try (ModelPool pool = new ModelPool(1, () -> {
+			created.incrementAndGet();
+			return createModel();
+		})){
+			Model replica = pool.acquire();
+			pool.invalidate(replica);
+			assertEquals(2, created.get());
+
+			Model rebuilt = pool.acquire();
+			assertNotSame(replica, rebuilt);
+			assertEquals(1, pool.getStatistics().getInt("rebuilds"));
+			pool.release(rebuilt);
+		}
+	}
+
+	@Test
+	public void testClosed() throws Exception {
+		ModelPool pool = new ModelPool(1, ModelPoolTest::createModel);
+		pool.close();
+		assertThrows(ModelException.class, () -> pool.acquire());
+	}
+}
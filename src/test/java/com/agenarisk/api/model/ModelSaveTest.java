@@ -0,0 +1,49 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.api.util.JSONUtils;
+import com.agenarisk.test.TestHelper;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class ModelSaveTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static String canonical(Model model) throws Exception {
+		return JSONUtils.toCanonicalString(model.export(Model.ExportFlag.KEEP_OBSERVATIONS, Model.ExportFlag.KEEP_RESULTS, Model.ExportFlag.KEEP_META));
+	}
+
+	@Test
+	public void testSaveLoadFormats() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		model.calculate();
+		String expected = canonical(model);
+
+		for(String name: new String[]{"model.cmpx", "model.xml", "model.cmpx.gz", "model.xml.gz", "model.cmpb.gz"}){
+			Path path = tempDir.resolve(name);
+			model.save(path.toString());
+			assertEquals(expected, canonical(Model.loadModel(path.toString())), name);
+		}
+	}
+
+	@Test
+	public void testSaveCompressed() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		Path path = tempDir.resolve("model.cmpx.gz");
+		model.save(path.toString());
+
+		try (InputStream stream = new GZIPInputStream(Files.newInputStream(path))){
+			assertEquals('{', stream.read());
+		}
+	}
+}
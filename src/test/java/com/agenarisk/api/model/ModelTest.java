@@ -28,4 +28,27 @@ public class ModelTest {
 		Assertions.assertEquals(0, model.getLogicModel().getExtendedBNList().getExtendedBNs().size());
 	}
 	
+	@Test
+	public void testDataSetIndex(){
+		Model model = Model.createModel();
+		DataSet ds1 = model.createDataSet("ds1");
+		DataSet ds2 = model.createDataSet("ds2");
+		DataSet ds3 = model.createDataSet("ds3");
+		
+		Assertions.assertEquals(0, ds1.getDataSetIndex());
+		Assertions.assertEquals(1, ds2.getDataSetIndex());
+		Assertions.assertEquals(2, ds3.getDataSetIndex());
+		
+		model.removeDataSet(ds2);
+		Assertions.assertEquals(0, ds1.getDataSetIndex());
+		Assertions.assertEquals(1, ds3.getDataSetIndex());
+		
+		ds3.setId("renamed");
+		Assertions.assertEquals(1, ds3.getDataSetIndex());
+		
+		DataSet ds4 = model.createDataSet("ds4");
+		Assertions.assertEquals(2, ds4.getDataSetIndex());
+		Assertions.assertEquals(model.getLogicModel().getScenarioList().getScenarios().indexOf(ds4.getLogicScenario()), ds4.getDataSetIndex());
+	}
+	
 }
@@ -0,0 +1,82 @@
+package com.agenarisk.api.model;
+
+import com.agenarisk.test.TestHelper;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class ResultRetentionTest {
+
+	Model model;
+	Network network;
+	Node type;
+	Node heads;
+
+	@BeforeEach
+	public void setupLocal() {
+		model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		network = model.getNetworkList().get(0);
+		type = network.getNode("Type");
+		heads = network.getNode("heads");
+	}
+
+	@Test
+	public void testMonitoredNodes() throws Exception {
+		model.calculate();
+		DataSet dataSet = model.getDataSetList().get(0);
+		double expected = dataSet.getCalculationResult(type).getResultValues().get(0).getValue();
+
+		model.setResultRetention(new ResultRetention().withMonitoredNodes(Arrays.asList(type)));
+		model.calculate();
+
+		for(DataSet ds: model.getDataSetList()){
+			assertNotNull(ds.getCalculationResult(type), ds.getId());
+			assertNull(ds.getCalculationResult(heads), ds.getId());
+		}
+		assertEquals(expected, dataSet.getCalculationResult(type).getResultValues().get(0).getValue(), 1e-9);
+		assertEquals(1, dataSet.getCalculationResults(network).size());
+	}
+
+	@Test
+	public void testClearedResultsStayEmpty() throws Exception {
+		DataSet dataSet = model.getDataSetList().get(0);
+		model.setResultRetention(new ResultRetention().withMonitoredNodes(Arrays.asList(type)));
+		model.calculate(null, Arrays.asList(dataSet));
+		assertNull(dataSet.getCalculationResult(heads), "Released");
+
+		dataSet.clearCalculationResults();
+		assertNotNull(dataSet.getCalculationResult(heads), "Cleared, not released");
+		assertTrue(dataSet.getCalculationResult(heads).getResultValues().isEmpty());
+		assertEquals(network.getNodeList().size(), dataSet.getCalculationResults(network).size());
+
+		model.setResultRetention(null);
+		model.calculate(null, Arrays.asList(dataSet));
+		assertFalse(dataSet.getCalculationResult(heads).getResultValues().isEmpty());
+	}
+
+	@Test
+	public void testReleaseOnConsume() throws Exception {
+		int count = model.getDataSetList().size();
+		DataSet dataSet = model.getDataSetList().get(0);
+		model.calculate(null, Arrays.asList(dataSet));
+
+		assertFalse(model.resultsConsumed(dataSet), "No policy, results are kept");
+		assertNotNull(dataSet.getCalculationResult(heads));
+
+		model.setResultRetention(new ResultRetention().withReleaseOnConsume(true));
+		assertTrue(model.resultsConsumed(dataSet));
+		assertEquals(count - 1, model.getDataSetList().size());
+		assertNull(model.getDataSet(dataSet.getId()));
+
+		assertFalse(model.resultsConsumed(dataSet), "Already released");
+
+		DataSet next = model.getDataSetList().get(0);
+		model.calculate(null, Arrays.asList(next));
+		assertNotNull(next.getCalculationResult(heads));
+	}
+}
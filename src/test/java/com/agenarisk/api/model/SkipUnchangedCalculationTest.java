@@ -0,0 +1,126 @@
+package com.agenarisk.api.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class SkipUnchangedCalculationTest {
+
+	Model model;
+	DataSet ds;
+	Network network1;
+	Network network2;
+	Node nodeA;
+	Node nodeB;
+	Node nodeC;
+
+	@BeforeEach
+	public void setupLocal() throws Exception {
+		model = Model.createModel();
+		ds = model.createDataSet("ds");
+		network1 = model.createNetwork("net1");
+		network2 = model.createNetwork("net2");
+
+		nodeA = network1.createNode("a", Node.Type.Boolean);
+		nodeB = network2.createNode("b", Node.Type.Boolean);
+		nodeC = network2.createNode("c", Node.Type.Boolean);
+		Node.linkNodes(nodeA, nodeB, CrossNetworkLink.Type.Marginals);
+		Node.linkNodes(nodeB, nodeC);
+	}
+
+	private Set<Network> dirty(CalculationTracker tracker){
+		Map.Entry<Set<Network>, Set<DataSet>> selected = tracker.selectDirty(model.getNetworkList(), model.getDataSetList(), "");
+		return selected.getKey();
+	}
+
+	@Test
+	public void testTrackerPropagatesDownstream() throws Exception {
+		CalculationTracker tracker = new CalculationTracker(model);
+		assertEquals(2, dirty(tracker).size(), "Nothing recorded yet");
+
+		tracker.record(model.getNetworkList(), model.getDataSetList(), "");
+		assertTrue(dirty(tracker).isEmpty());
+
+		ds.setObservationHard(nodeC, "True");
+		assertEquals(new java.util.HashSet<>(Arrays.asList(network2)), dirty(tracker), "Only the observed network changed");
+		tracker.record(model.getNetworkList(), model.getDataSetList(), "");
+
+		ds.setObservationHard(nodeA, "True");
+		assertEquals(2, dirty(tracker).size(), "Downstream network is dirty when its parent changes");
+		tracker.record(model.getNetworkList(), model.getDataSetList(), "");
+
+		assertEquals(2, tracker.selectDirty(model.getNetworkList(), model.getDataSetList(), "CALCULATE_LOGPE").getKey().size(), "Different flags");
+
+		tracker.forget(ds);
+		assertEquals(2, dirty(tracker).size());
+	}
+
+	@Test
+	public void testSkipUnchanged() throws Exception {
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		double before = ds.getCalculationResult(nodeC).getResultValue("True").getValue();
+
+		// Nothing changed, results stay as they are
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertEquals(before, ds.getCalculationResult(nodeC).getResultValue("True").getValue());
+
+		ds.setObservationHard(nodeA, "True");
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertEquals(1, ds.getCalculationResult(nodeB).getResultValue("True").getValue(), 1e-9);
+
+		ds.clearCalculationResults();
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertEquals(1, ds.getCalculationResult(nodeB).getResultValue("True").getValue(), 1e-9);
+	}
+
+	@Test
+	public void testReleasedResultsRecalculated() throws Exception {
+		model.setResultRetention(new ResultRetention().withMonitoredNodes(Arrays.asList(nodeA)));
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertNull(ds.getCalculationResult(nodeC), "Released by retention");
+
+		// Results released under the previous policy are needed now
+		model.setResultRetention(null);
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertNotNull(ds.getCalculationResult(nodeC));
+		assertFalse(ds.getCalculationResult(nodeC).getResultValues().isEmpty());
+
+		// Released DataSet is forgotten, a new DataSet with the same ID is calculated
+		assertTrue(model.releaseDataSet(ds));
+		DataSet next = model.createDataSet("ds");
+		model.calculate(null, null, Model.CalculationFlag.SKIP_UNCHANGED);
+		assertFalse(next.getCalculationResult(nodeC).getResultValues().isEmpty());
+	}
+
+	@Test
+	public void testMonitoredNodesMakeDirty() throws Exception {
+		ResultRetention retention = new ResultRetention().withMonitoredNodes(Arrays.asList(nodeA));
+		model.setResultRetention(retention);
+		CalculationTracker tracker = new CalculationTracker(model);
+		tracker.record(model.getNetworkList(), model.getDataSetList(), "");
+		assertTrue(dirty(tracker).isEmpty());
+
+		// Policy modified in place after it was set
+		retention.withMonitoredNodes(Arrays.asList(nodeA, nodeC));
+		assertEquals(2, dirty(tracker).size());
+	}
+
+	@Test
+	public void testNamesDoNotMakeDirty() throws Exception {
+		CalculationTracker tracker = new CalculationTracker(model);
+		tracker.record(model.getNetworkList(), model.getDataSetList(), "");
+
+		nodeC.setName("renamed");
+		assertTrue(dirty(tracker).isEmpty());
+
+		nodeC.setTableColumns(new double[][]{{0.3, 0.7}, {0.6, 0.4}});
+		assertEquals(new java.util.HashSet<>(Arrays.asList(network2)), dirty(tracker), "Table changed");
+	}
+}
@@ -0,0 +1,73 @@
+package com.agenarisk.api.tools.calculator;
+
+import com.agenarisk.test.TestHelper;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class CalculatorTest {
+
+	@TempDir
+	Path tempDir;
+
+	Path pathModel;
+	Path pathData;
+	String networkId;
+
+	@BeforeEach
+	public void setupLocal() throws Exception {
+		String content = TestHelper.readResourceContent("/common/Biased Coin Flip Experiment.cmpx");
+		pathModel = tempDir.resolve("model.cmpx");
+		Files.write(pathModel, content.getBytes(StandardCharsets.UTF_8));
+		pathData = tempDir.resolve("data.json");
+		Files.write(pathData, "[{\"id\": \"ds1\", \"observations\": []}]".getBytes(StandardCharsets.UTF_8));
+		networkId = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx").getNetworkList().get(0).getId();
+	}
+
+	private JSONArray calculate(List<String> outputs, String resultsFile) throws Exception {
+		Path pathOut = tempDir.resolve(resultsFile);
+		new Calculator()
+				.withModel(pathModel.toString())
+				.withData(pathData.toString())
+				.withOutputs(outputs)
+				.withResultCache(tempDir.resolve("cache").toString(), 1024L * 1024)
+				.exitOnError(false)
+				.savingTo(pathOut.toString())
+				.execute();
+		return new JSONArray(new String(Files.readAllBytes(pathOut), StandardCharsets.UTF_8));
+	}
+
+	private String resultNode(JSONArray jResults){
+		assertEquals(1, jResults.length());
+		JSONArray jNodeResults = jResults.getJSONObject(0).getJSONArray("results");
+		assertEquals(1, jNodeResults.length());
+		JSONObject jNodeResult = jNodeResults.getJSONObject(0);
+		assertTrue(jNodeResult.getJSONArray("resultValues").length() > 0, "Result of the output node is retained");
+		return jNodeResult.getString("node");
+	}
+
+	@Test
+	public void testOutputsWithResultCache() throws Exception {
+		JSONArray jHeads = calculate(Arrays.asList(networkId + ".heads"), "heads.json");
+		assertEquals("heads", resultNode(jHeads));
+
+		// Same model and data, but a different projection and monitored set must not be served from cache
+		JSONArray jType = calculate(Arrays.asList(networkId + ".Type"), "type.json");
+		assertEquals("Type", resultNode(jType));
+
+		JSONArray jCached = calculate(Arrays.asList(networkId + ".heads"), "cached.json");
+		assertEquals(jHeads.toString(), jCached.toString());
+	}
+}
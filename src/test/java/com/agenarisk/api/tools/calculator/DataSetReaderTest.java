@@ -0,0 +1,73 @@
+package com.agenarisk.api.tools.calculator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class DataSetReaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	private List<String> readIds(String content) throws Exception {
+		Path path = tempDir.resolve("data.json");
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		List<String> ids = new ArrayList<>();
+		try (DataSetReader reader = new DataSetReader(path)){
+			while(reader.hasNext()){
+				JSONObject jDataSet = reader.next();
+				ids.add(jDataSet.getString("id"));
+			}
+		}
+		return ids;
+	}
+
+	@Test
+	public void testJsonArray() throws Exception {
+		List<String> ids = readIds(" [ {\"id\": \"a\", \"observations\": []},\n{\"id\": \"b\"} ] ");
+		assertEquals(2, ids.size());
+		assertEquals("a", ids.get(0));
+		assertEquals("b", ids.get(1));
+	}
+
+	@Test
+	public void testNdjson() throws Exception {
+		List<String> ids = readIds("{\"id\": \"a\"}\n{\"id\": \"b\"}\n\n{\"id\": \"c\"}");
+		assertEquals(3, ids.size());
+		assertEquals("c", ids.get(2));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertEquals(0, readIds("[]").size());
+		assertEquals(0, readIds("  ").size());
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		assertThrows(JSONException.class, () -> readIds("\"not data\""));
+		assertThrows(JSONException.class, () -> readIds("[{\"id\": \"a\"} {\"id\": \"b\"}]"));
+	}
+
+	@Test
+	public void testLazy() throws Exception {
+		Path path = tempDir.resolve("lazy.json");
+		Files.write(path, "[{\"id\": \"a\"}, broken".getBytes(StandardCharsets.UTF_8));
+		try (DataSetReader reader = new DataSetReader(path)){
+			assertEquals("a", reader.next().getString("id"));
+			assertThrows(JSONException.class, () -> reader.hasNext());
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.agenarisk.api.tools.calculator;
+
+import com.agenarisk.api.model.DataSet;
+import com.agenarisk.api.model.Model;
+import com.agenarisk.test.TestHelper;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Eugene Dementiev
+ */
+public class ResultProjectionTest {
+
+	@Test
+	public void testOutputsAndStatistics() throws Exception {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		String networkId = model.getNetworkList().get(0).getId();
+		DataSet dataSet = model.getDataSetList().get(0);
+		model.calculate(null, Arrays.asList(dataSet));
+
+		ResultProjection projection = new ResultProjection(model, Arrays.asList(networkId + ".Type", networkId + ".heads"), Arrays.asList("mean", "p05"));
+		JSONObject jResult = projection.toJson(dataSet);
+		assertEquals(dataSet.getId(), jResult.getString("id"));
+
+		JSONArray jResults = jResult.getJSONArray("results");
+		assertEquals(2, jResults.length());
+		assertEquals("Type", jResults.getJSONObject(0).getString("node"));
+		assertFalse(jResults.getJSONObject(0).has("summaryStatistics"), "No statistics for labelled nodes");
+
+		JSONObject jHeads = jResults.getJSONObject(1);
+		assertEquals(dataSet.getCalculationResult(model.getNetworkList().get(0).getNode("heads")).getResultValues().size(), jHeads.getJSONArray("resultValues").length());
+		JSONObject jStats = jHeads.getJSONObject("summaryStatistics");
+		assertEquals(2, jStats.length());
+		assertTrue(jStats.has("mean"));
+		assertTrue(jStats.has("p05"));
+
+		JSONObject jNoStats = new ResultProjection(model, Arrays.asList(networkId + ".heads"), null).toJson(dataSet);
+		assertFalse(jNoStats.getJSONArray("results").getJSONObject(0).has("summaryStatistics"));
+	}
+
+	@Test
+	public void testInvalid() {
+		Model model = TestHelper.loadModelFromResource("/common/Biased Coin Flip Experiment.cmpx");
+		String networkId = model.getNetworkList().get(0).getId();
+		assertThrows(CalculatorException.class, () -> new ResultProjection(model, Arrays.asList("heads"), null));
+		assertThrows(CalculatorException.class, () -> new ResultProjection(model, Arrays.asList(networkId + ".missing"), null));
+		assertThrows(CalculatorException.class, () -> new ResultProjection(model, null, Arrays.asList("summaryStatistics")));
+		assertThrows(CalculatorException.class, () -> new ResultProjection(model, null, Arrays.asList("p150")));
+
+		String signature = new ResultProjection(model, Arrays.asList(networkId + ".heads"), null).getSignature();
+		assertNotEquals(signature, new ResultProjection(model, Arrays.asList(networkId + ".heads"), Arrays.asList("mean")).getSignature());
+	}
+}